@@ -0,0 +1,101 @@
+package org.nglr.astar.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmark of {@link AStar#calculateAll()} over the same "worlds"
+ * as {@link AStarBenchmark}: 2D and 3D, from 64x64 to 4096x4096 and from
+ * 32x32x32 to 256x256x256, with 0 to 40% of the nodes blocked and with or
+ * without diagonals.<br>
+ * Each invocation runs the next query of a fixed set between random
+ * passable nodes, built once per trial from a fixed seed. Throughput and
+ * the latency percentiles come from the benchmark modes, the allocation
+ * rate per query from running it with <code>-prof gc</code>.
+ *
+ * @author J
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = "-Xmx4g")
+public class AStarJmhBenchmark {
+
+    /**
+     * The "world" being searched and its queries, one per thread
+     */
+    @State(Scope.Thread)
+    public static class World {
+        /** Nodes per side, 2 of them for 2D "worlds" and 3 for 3D ones */
+        @Param({ "64x64", "256x256", "1024x1024", "4096x4096",
+                 "32x32x32", "64x64x64", "128x128x128", "256x256x256" })
+        public String world;
+
+        @Param({ "0", "0.1", "0.2", "0.4" })
+        public double density;
+
+        @Param({ "true", "false" })
+        public boolean diagonals;
+
+        /** <code>auto</code>, <code>object</code> or <code>compact</code>, see {@link AStarBenchmark} */
+        @Param({ "auto" })
+        public String grid;
+
+        @Param({ "50" })
+        public int queries;
+
+        @Param({ "42" })
+        public long seed;
+
+        private AStar aStar;
+        private int[][] starts;
+        private int[][] goals;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void build() {
+            String[] sides = world.split( "x" );
+            AStarBenchmark.Config config = new AStarBenchmark.Config( sides.length,
+                    Integer.parseInt( sides[0] ), density, diagonals, grid, queries, seed );
+            aStar = config.create();
+            Grid map = aStar.getGrid();
+            int[][] pairs = config.queries( map );
+            starts = new int[pairs.length][];
+            goals = new int[pairs.length][];
+            for (int i = 0; i < pairs.length; i++) {
+                starts[i] = map.toDimIndexes( pairs[i][0] );
+                goals[i] = map.toDimIndexes( pairs[i][1] );
+            }
+        }
+    }
+
+    /**
+     * Run the next query of the "world"
+     *
+     * @param world "world" and queries
+     * @param blackhole sink of the results so the search isn't optimized away
+     */
+    @Benchmark
+    public void calculateAll( World world, Blackhole blackhole ) {
+        int i = world.next;
+        world.next = i + 1 == world.starts.length ? 0 : i + 1;
+        world.aStar.prepare( world.starts[i], world.goals[i] );
+        blackhole.consume( world.aStar.calculateAll() );
+        blackhole.consume( world.aStar.isSolvable() );
+    }
+}
@@ -0,0 +1,248 @@
+package org.nglr.astar.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.twodim.AStar2D;
+import org.nglr.astar.threedim.AStar3D;
+
+/**
+ * Benchmark of {@link AStar#calculateAll()} over 2D and 3D "worlds" of
+ * various sizes, obstacle densities and with or without diagonals.<br>
+ * Each configuration builds a "world" with randomly blocked nodes and a
+ * fixed set of queries between random passable nodes, both from a fixed
+ * seed so runs can be compared. The queries run for some warmup
+ * iterations and then for the measured ones, like JMH does, reporting the
+ * throughput, the latency percentiles and the bytes allocated per query.
+ * Worlds with more than {@link #OBJECT_NODES_LIMIT} nodes use the compact
+ * grids, as a node object per cell wouldn't fit in memory.<br><br>
+ * Arguments are <code>key=value</code> pairs, lists separated by commas:
+ * <code>dims=2,3 sizes2d=64,256,1024,4096 sizes3d=32,64,128,256
+ * densities=0,0.1,0.2,0.4 diagonals=true,false grid=auto|object|compact
+ * queries=50 warmup=3 iterations=5 seed=42</code>
+ *
+ * @author J
+ */
+public class AStarBenchmark {
+    /** Most nodes of a "world" that keeps a node object per cell when <code>grid=auto</code> */
+    public static final int OBJECT_NODES_LIMIT = 1 << 18;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Map<String, String> options;
+
+    /**
+     * Instance a new benchmark with the given options
+     *
+     * @param options <code>key=value</code> options
+     */
+    public AStarBenchmark( Map<String, String> options ) {
+        this.options = options;
+    }
+
+    /**
+     * Run every configuration, printing a line of results for each one
+     */
+    public void run() {
+        int queries = Integer.parseInt( option( "queries", "50" ) );
+        int warmup = Integer.parseInt( option( "warmup", "3" ) );
+        int iterations = Integer.parseInt( option( "iterations", "5" ) );
+        long seed = Long.parseLong( option( "seed", "42" ) );
+        String gridKind = option( "grid", "auto" );
+        System.out.printf( Locale.ROOT, "%-6s %-5s %-9s %-8s %-16s %7s %12s %10s %10s %10s %10s %12s%n",
+                "dims", "size", "density", "diagonal", "grid", "solved", "ops/s", "mean ms",
+                "p50 ms", "p99 ms", "max ms", "bytes/op" );
+        for (int dims : ints( option( "dims", "2,3" ) )) {
+            int[] sizes = ints( option( dims == 2 ? "sizes2d" : "sizes3d",
+                    dims == 2 ? "64,256,1024,4096" : "32,64,128,256" ) );
+            for (int size : sizes) {
+                for (double density : doubles( option( "densities", "0,0.1,0.2,0.4" ) )) {
+                    for (String diagonals : option( "diagonals", "true,false" ).split( "," )) {
+                        Config config = new Config( dims, size, density, Boolean.parseBoolean( diagonals ),
+                                gridKind, queries, seed );
+                        try {
+                            measure( config, warmup, iterations );
+                        } catch (OutOfMemoryError e) {
+                            System.out.printf( Locale.ROOT, "%-6d %-5d %-9.2f %-8b skipped, out of memory%n",
+                                    dims, size, density, config.diagonals );
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the "world" and the queries of a configuration and time them
+     */
+    private void measure( Config config, int warmup, int iterations ) {
+        AStar aStar = config.create();
+        int[][] pairs = config.queries( aStar.getGrid() );
+        for (int i = 0; i < warmup; i++) {
+            runQueries( aStar, pairs, null );
+        }
+        long[] latencies = new long[pairs.length * iterations];
+        long allocated = 0;
+        long elapsed = 0;
+        int solved = 0;
+        for (int i = 0; i < iterations; i++) {
+            long[] iteration = new long[pairs.length];
+            long bytes = allocatedBytes();
+            long begin = System.nanoTime();
+            solved = runQueries( aStar, pairs, iteration );
+            elapsed += System.nanoTime() - begin;
+            allocated += allocatedBytes() - bytes;
+            System.arraycopy( iteration, 0, latencies, i * pairs.length, pairs.length );
+        }
+        Arrays.sort( latencies );
+        int count = latencies.length;
+        double mean = elapsed / 1e6 / count;
+        System.out.printf( Locale.ROOT, "%-6d %-5d %-9.2f %-8b %-16s %7s %12.1f %10.3f %10.3f %10.3f %10.3f %12s%n",
+                config.dims, config.size, config.density, config.diagonals, config.gridName( aStar ),
+                solved + "/" + pairs.length, count / (elapsed / 1e9), mean,
+                latencies[count / 2] / 1e6, latencies[Math.min( count - 1, (int) (count * 0.99) )] / 1e6,
+                latencies[count - 1] / 1e6, allocated < 0 ? "n/a" : String.valueOf( allocated / count ) );
+    }
+
+    /**
+     * Run every query once, keeping the time each one took
+     *
+     * @return amount of queries that reached the goal
+     */
+    private static int runQueries( AStar aStar, int[][] pairs, long[] latencies ) {
+        Grid grid = aStar.getGrid();
+        int solved = 0;
+        for (int i = 0; i < pairs.length; i++) {
+            long begin = System.nanoTime();
+            aStar.prepare( grid.toDimIndexes( pairs[i][0] ), grid.toDimIndexes( pairs[i][1] ) );
+            aStar.calculateAll();
+            if (latencies != null) {
+                latencies[i] = System.nanoTime() - begin;
+            }
+            if (aStar.isSolvable()) {
+                solved ++;
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far or -1 if the
+     * Java virtual machine can't tell
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes( Thread.currentThread().getId() );
+        }
+        return -1;
+    }
+
+    private String option( String key, String fallback ) {
+        String value = options.get( key );
+        return value == null ? fallback : value;
+    }
+
+    private static int[] ints( String list ) {
+        return Arrays.stream( list.split( "," ) ).mapToInt( Integer::parseInt ).toArray();
+    }
+
+    private static double[] doubles( String list ) {
+        return Arrays.stream( list.split( "," ) ).mapToDouble( Double::parseDouble ).toArray();
+    }
+
+    /**
+     * A single "world" to benchmark, also used by the JMH benchmarks
+     */
+    static class Config {
+        private final int dims;
+        private final int size;
+        private final double density;
+        private final boolean diagonals;
+        private final String gridKind;
+        private final int queries;
+        private final long seed;
+
+        Config( int dims, int size, double density, boolean diagonals, String gridKind,
+                int queries, long seed ) {
+            this.dims = dims;
+            this.size = size;
+            this.density = density;
+            this.diagonals = diagonals;
+            this.gridKind = gridKind;
+            this.queries = queries;
+            this.seed = seed;
+        }
+
+        AStar create() {
+            long nodes = dims == 2 ? (long) size * size : (long) size * size * size;
+            boolean compact = gridKind.equals( "compact" )
+                    || (gridKind.equals( "auto" ) && nodes > OBJECT_NODES_LIMIT);
+            AStar aStar;
+            if (dims == 2) {
+                aStar = compact ? AStar2D.createCompact( size, size, diagonals )
+                        : diagonals ? new AStar2D( size, size ) : AStar2D.createNoDiagonals( size, size );
+            } else {
+                aStar = compact ? AStar3D.createCompact( size, size, size, diagonals )
+                        : diagonals ? new AStar3D( size, size, size ) : AStar3D.createNoDiagonals( size, size, size );
+            }
+            Grid grid = aStar.getGrid();
+            Random random = new Random( seed );
+            int count = grid.getNodeCount();
+            int[] blocked = new int[(int) (count * density)];
+            for (int i = 0; i < blocked.length; i++) {
+                blocked[i] = random.nextInt( count );
+            }
+            for (int index : blocked) {
+                grid.setPassable( index, false );
+            }
+            return aStar;
+        }
+
+        /**
+         * Pairs of random passable start and goal nodes
+         */
+        int[][] queries( Grid grid ) {
+            Random random = new Random( seed + 1 );
+            int count = grid.getNodeCount();
+            List<int[]> pairs = new ArrayList<>();
+            while (pairs.size() < queries) {
+                int start = random.nextInt( count );
+                int goal = random.nextInt( count );
+                if (grid.isPassable( start ) && grid.isPassable( goal )) {
+                    pairs.add( new int[] { start, goal } );
+                }
+            }
+            return pairs.toArray( new int[0][] );
+        }
+
+        private String gridName( AStar aStar ) {
+            return aStar.getGrid().getClass().getSimpleName();
+        }
+    }
+
+    /**
+     * Run the benchmark with the given <code>key=value</code> options
+     *
+     * @param args options
+     */
+    public static void main( String[] args ) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf( '=' );
+            if (split < 0) {
+                System.err.println( "Options are key=value pairs, ignoring " + arg );
+                continue;
+            }
+            options.put( arg.substring( 0, split ), arg.substring( split + 1 ) );
+        }
+        new AStarBenchmark( options ).run();
+    }
+}
@@ -0,0 +1,72 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.threedim.Grid3DNoDiagonal;
+import org.nglr.astar.threedim.MortonGrid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2D;
+import org.nglr.astar.twodim.Grid2DNoDiagonal;
+
+/**
+ * Checks that {@link AStar#calculateAll()} finds shortest paths on every
+ * kind of grid, with one <code>AStar</code> reused for all the queries
+ * of a "world" so the reuse of the search state is checked too
+ *
+ * @author J
+ */
+public class AStarCheck extends Check {
+    private static final double[] DENSITIES = {0, 0.2, 0.4};
+    private static final int QUERIES = 40;
+
+    public AStarCheck() {
+        super( "astar" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        check( random, "Grid2D", () -> new Grid2D( 40, 30 ) );
+        check( random, "Grid2DNoDiagonal", () -> new Grid2DNoDiagonal( 40, 30 ) );
+        check( random, "CompactGrid2D", () -> new CompactGrid2D( 40, 30, true ) );
+        check( random, "CompactGrid2D nodiag", () -> new CompactGrid2D( 40, 30, false ) );
+        check( random, "Grid3D", () -> new Grid3D( 12, 10, 8 ) );
+        check( random, "Grid3DNoDiagonal", () -> new Grid3DNoDiagonal( 12, 10, 8 ) );
+        check( random, "MortonGrid3D", () -> new MortonGrid3D( 12, 10, 8, true ) );
+        check( random, "MortonGrid3D nodiag", () -> new MortonGrid3D( 12, 10, 8, false ) );
+    }
+
+    private void check( Random random, String name, Supplier<Grid> worlds ) {
+        for (double density : DENSITIES) {
+            Grid grid = worlds.get();
+            block( grid, random, density );
+            AStar aStar = new AStar( grid );
+            for (int i = 0; i < QUERIES; i++) {
+                int start = randomPassable( grid, random );
+                int goal = randomPassable( grid, random );
+                aStar.prepare( grid.toDimIndexes( start ), grid.toDimIndexes( goal ) );
+                Node[] path = aStar.calculateAll();
+                String what = String.format( "%s density %.1f from %d to %d", name, density, start, goal );
+                double expected = shortestCost( grid, start, goal );
+                expect( aStar.isSolvable() == !Double.isInfinite( expected ), "%s solvable is %b", what,
+                        aStar.isSolvable() );
+                expectCost( expected, aStar.isSolvable() ? pathCost( grid, path ) : Double.POSITIVE_INFINITY, what );
+                if (aStar.isSolvable()) {
+                    expect( ends( path, start, goal ), "%s path doesn't join them", what );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return if the path goes from the start to the goal, in either direction
+     */
+    static boolean ends( Node[] path, int start, int goal ) {
+        int first = path[0].getIndex();
+        int last = path[path.length - 1].getIndex();
+        return (first == start && last == goal) || (first == goal && last == start);
+    }
+}
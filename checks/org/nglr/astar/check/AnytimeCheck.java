@@ -0,0 +1,72 @@
+package org.nglr.astar.check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.nglr.astar.AnytimeAStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2D;
+
+/**
+ * Checks that every path {@link AnytimeAStar} publishes costs what it
+ * says and is within its bound of the shortest one, and that the search
+ * ends with the shortest path, also when it's stopped by a deadline and
+ * continued later
+ *
+ * @author J
+ */
+public class AnytimeCheck extends Check {
+    private static final int QUERIES = 40;
+
+    public AnytimeCheck() {
+        super( "anytime" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        check( random, "Grid2D", new Grid2D( 50, 50 ) );
+        check( random, "CompactGrid2D nodiag", new CompactGrid2D( 50, 50, false ) );
+        check( random, "Grid3D", new Grid3D( 14, 14, 14 ) );
+    }
+
+    private void check( Random random, String name, Grid grid ) {
+        block( grid, random, 0.25 );
+        AnytimeAStar search = new AnytimeAStar( grid );
+        List<Node[]> paths = new ArrayList<>();
+        List<Double> bounds = new ArrayList<>();
+        search.setListener( ( path, bound ) -> {
+            paths.add( path );
+            bounds.add( bound );
+        } );
+        for (int i = 0; i < QUERIES; i++) {
+            int start = randomPassable( grid, random );
+            int goal = randomPassable( grid, random );
+            String what = String.format( "%s from %d to %d", name, start, goal );
+            double expected = shortestCost( grid, start, goal );
+            paths.clear();
+            bounds.clear();
+            search.prepare( start, goal );
+            if (i % 2 == 0) {
+                // Out of time right away, then continued until it's over
+                search.calculateUntil( System.nanoTime() );
+            }
+            search.calculateAll();
+            expect( search.isTested(), "%s isn't over", what );
+            expectCost( expected, search.isSolvable() ? search.getPathCost() : Double.POSITIVE_INFINITY, what );
+            if (search.isSolvable()) {
+                expectCost( expected, pathCost( grid, search.getPath() ), what + " path" );
+                expect( search.getBound() == 1, "%s final bound %.3f", what, search.getBound() );
+            }
+            for (int p = 0; p < paths.size(); p++) {
+                double cost = pathCost( grid, paths.get( p ) );
+                expect( cost >= expected * (1 - COST_TOLERANCE)
+                        && cost <= expected * bounds.get( p ) * (1 + COST_TOLERANCE),
+                        "%s path %d cost %.6f with bound %.3f, shortest %.6f", what, p, cost, bounds.get( p ),
+                        expected );
+            }
+        }
+    }
+}
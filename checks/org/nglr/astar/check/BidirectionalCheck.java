@@ -0,0 +1,66 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2DNoDiagonal;
+
+/**
+ * Checks that bidirectional search, on one thread and on two, finds
+ * paths as cheap as plain A* over many queries that reuse the same
+ * search state, as stale scores of previous queries are what the
+ * parallel search could mistake for a meeting
+ *
+ * @author J
+ */
+public class BidirectionalCheck extends Check {
+    private static final double[] DENSITIES = {0, 0.2, 0.35};
+    private static final int QUERIES = 150;
+
+    public BidirectionalCheck() {
+        super( "bidirectional" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        for (double density : DENSITIES) {
+            check( random, "CompactGrid2D", new CompactGrid2D( 80, 80, true ), density );
+            check( random, "Grid2DNoDiagonal", new Grid2DNoDiagonal( 60, 60 ), density );
+            check( random, "Grid3D", new Grid3D( 16, 16, 16 ), density );
+        }
+    }
+
+    private void check( Random random, String name, Grid grid, double density ) {
+        block( grid, random, density );
+        AStar plain = new AStar( grid );
+        AStar sequential = new AStar( grid );
+        sequential.setBidirectional( true, false );
+        AStar parallel = new AStar( grid );
+        parallel.setBidirectional( true, true );
+        for (int i = 0; i < QUERIES; i++) {
+            int start = randomPassable( grid, random );
+            // Now and then a blocked goal
+            int goal = i % 25 == 0 ? random.nextInt( grid.getNodeCount() ) : randomPassable( grid, random );
+            String what = String.format( "%s density %.2f from %d to %d", name, density, start, goal );
+            double plainCost = cost( plain, grid, start, goal );
+            double sequentialCost = cost( sequential, grid, start, goal );
+            double parallelCost = cost( parallel, grid, start, goal );
+            expectCost( shortestCost( grid, start, goal ), plainCost, "A* " + what );
+            expectCost( plainCost, sequentialCost, "sequential " + what );
+            expectCost( sequentialCost, parallelCost, "parallel " + what );
+        }
+    }
+
+    /**
+     * @return cost of the path found between the nodes or positive
+     * infinity if none was found
+     */
+    private static double cost( AStar aStar, Grid grid, int start, int goal ) {
+        aStar.prepare( grid.toDimIndexes( start ), grid.toDimIndexes( goal ) );
+        Node[] path = aStar.calculateAll();
+        return aStar.isSolvable() ? pathCost( grid, path ) : Double.POSITIVE_INFINITY;
+    }
+}
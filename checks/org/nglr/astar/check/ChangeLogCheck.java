@@ -0,0 +1,68 @@
+package org.nglr.astar.check;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.nglr.astar.DirtyRegion;
+import org.nglr.astar.Grid;
+import org.nglr.astar.twodim.CompactGrid2D;
+
+/**
+ * Checks that a thread reading the version of a grid while another one
+ * changes it always finds every change up to that version in the log
+ * of changes, or is told they're no longer known
+ *
+ * @author J
+ */
+public class ChangeLogCheck extends Check {
+    private static final int CHANGES = 200000;
+
+    public ChangeLogCheck() {
+        super( "changelog" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        Grid grid = new CompactGrid2D( 64, 64, true );
+        grid.setChangeLogSize( 16 );
+        long seed = random.nextLong();
+        AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread( () -> {
+            Random changes = new Random( seed );
+            for (int i = 0; i < CHANGES; i++) {
+                int index = changes.nextInt( grid.getNodeCount() );
+                grid.setPassable( index, !grid.isPassable( index ) );
+            }
+            done.set( true );
+        } );
+        writer.start();
+        long known = grid.getVersion();
+        int missing = 0;
+        int reads = 0;
+        while (!done.get()) {
+            long current = grid.getVersion();
+            List<DirtyRegion> changes = grid.getChangesSince( known );
+            reads ++;
+            if (changes != null) {
+                // Every version up to the one read has to be there, in order
+                long expected = known + 1;
+                for (DirtyRegion region : changes) {
+                    if (region.getVersion() == expected) {
+                        expected ++;
+                    }
+                }
+                if (expected <= current) {
+                    missing ++;
+                }
+            }
+            known = current;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        expect( missing == 0, "%d of %d reads missed logged changes", missing, reads );
+        expect( grid.getVersion() > 0, "the version never changed" );
+    }
+}
@@ -0,0 +1,245 @@
+package org.nglr.astar.check;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Random;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+
+/**
+ * Base of the self-checking harnesses.<br>
+ * Each check runs an engine over "worlds" with randomly blocked nodes
+ * and compares what it finds with {@link #shortestCost(Grid, int, int)},
+ * a plain Dijkstra search written here so the checks don't depend on the
+ * code they check. The "worlds" and queries come from a seeded
+ * {@link Random} so a failure can be repeated.
+ *
+ * @author J
+ * @see CheckAll
+ */
+public abstract class Check {
+    /** Relative difference two path costs can have and still be equal */
+    public static final double COST_TOLERANCE = 1e-9;
+    /** Most failures printed by a check, the rest are only counted */
+    private static final int PRINTED_FAILURES = 10;
+
+    private final String name;
+    private int checks;
+    private int failures;
+
+    /**
+     * @param name name printed with the results of the check
+     */
+    protected Check( String name ) {
+        this.name = name;
+    }
+
+    /**
+     * Run the check, reporting each result through the <code>expect</code>
+     * methods
+     *
+     * @param random source of the "worlds" and the queries
+     */
+    protected abstract void run( Random random );
+
+    /**
+     * Run the check and print how many of its expectations failed
+     *
+     * @param seed seed of the "worlds" and the queries
+     * @return if every expectation held
+     */
+    public boolean check( long seed ) {
+        checks = 0;
+        failures = 0;
+        long begin = System.nanoTime();
+        try {
+            run( new Random( seed ) );
+        } catch (RuntimeException | AssertionError e) {
+            failures ++;
+            System.out.println( name + ": " + e );
+            e.printStackTrace( System.out );
+        }
+        System.out.printf( Locale.ROOT, "%-20s %6d checks %4d failures %8.1f ms%n", name, checks, failures,
+                (System.nanoTime() - begin) / 1e6 );
+        return failures == 0;
+    }
+
+    /**
+     * Count an expectation, printing the message if it doesn't hold
+     *
+     * @param condition if the expectation holds
+     * @param format message format, as in {@link String#format(String, Object...)}
+     * @param args message arguments
+     */
+    protected void expect( boolean condition, String format, Object... args ) {
+        checks ++;
+        if (!condition) {
+            failures ++;
+            if (failures <= PRINTED_FAILURES) {
+                System.out.println( name + ": " + String.format( Locale.ROOT, format, args ) );
+            }
+        }
+    }
+
+    /**
+     * Count an expectation that two path costs are equal, both being
+     * infinite when there is no path
+     *
+     * @param expected cost of the shortest path
+     * @param actual cost that was found
+     * @param what what found the cost and for which query
+     */
+    protected void expectCost( double expected, double actual, String what ) {
+        expect( sameCost( expected, actual ), "%s cost %.9f, expected %.9f", what, actual, expected );
+    }
+
+    /**
+     * @return if both costs are infinite or differ less than {@link #COST_TOLERANCE}
+     */
+    public static boolean sameCost( double expected, double actual ) {
+        if (Double.isInfinite( expected ) || Double.isInfinite( actual )) {
+            return expected == actual;
+        }
+        return Math.abs( expected - actual ) <= COST_TOLERANCE * Math.max( 1, expected );
+    }
+
+    /**
+     * Cost of the shortest path between two nodes following the neighbors
+     * and the distances of the grid
+     *
+     * @param grid the "world"
+     * @param start start node index
+     * @param goal goal node index
+     * @return cost of the shortest path or positive infinity if there is none
+     */
+    public static double shortestCost( Grid grid, int start, int goal ) {
+        if (!grid.isPassable( start ) || !grid.isPassable( goal )) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return dijkstra( grid, start, goal )[goal];
+    }
+
+    /**
+     * Cost of the shortest paths from a node to every other one following
+     * the neighbors and the distances of the grid
+     *
+     * @param grid the "world"
+     * @param start start node index
+     * @return cost of the shortest path to each node, positive infinity
+     * for the ones that can't be reached
+     */
+    public static double[] shortestCosts( Grid grid, int start ) {
+        return dijkstra( grid, start, -1 );
+    }
+
+    /**
+     * Dijkstra search from the start until the goal is expanded, or
+     * until every reachable node is if the goal is -1
+     *
+     * @return cost of the shortest path to each expanded node
+     */
+    private static double[] dijkstra( Grid grid, int start, int goal ) {
+        double[] costs = new double[grid.getNodeCount()];
+        Arrays.fill( costs, Double.POSITIVE_INFINITY );
+        PriorityQueue<double[]> open = new PriorityQueue<>( ( a, b ) -> Double.compare( a[0], b[0] ) );
+        int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+        costs[start] = 0;
+        open.add( new double[] {0, start} );
+        while (!open.isEmpty()) {
+            double[] entry = open.poll();
+            int cur = (int) entry[1];
+            if (entry[0] > costs[cur]) {
+                continue;
+            }
+            if (cur == goal) {
+                break;
+            }
+            int count = grid.getNeighbors( cur, neighbors );
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (!grid.isPassable( neighbor )) {
+                    continue;
+                }
+                double cost = entry[0] + grid.getDistance( cur, neighbor );
+                if (cost < costs[neighbor]) {
+                    costs[neighbor] = cost;
+                    open.add( new double[] {cost, neighbor} );
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Cost of a path following the distances of the grid, checking that
+     * each node is a passable neighbor of the one before
+     *
+     * @param grid the "world"
+     * @param path nodes of the path, in any direction
+     * @return cost of the path, positive infinity if there is no path or
+     * it isn't a valid one
+     */
+    public static double pathCost( Grid grid, Node[] path ) {
+        if (path == null || path.length == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+        double cost = 0;
+        for (int i = 0; i < path.length; i++) {
+            int index = path[i].getIndex();
+            if (!grid.isPassable( index )) {
+                return Double.POSITIVE_INFINITY;
+            }
+            if (i == 0) {
+                continue;
+            }
+            int previous = path[i - 1].getIndex();
+            int count = grid.getNeighbors( previous, neighbors );
+            boolean adjacent = false;
+            for (int j = 0; j < count && !adjacent; j++) {
+                adjacent = neighbors[j] == index;
+            }
+            if (!adjacent) {
+                return Double.POSITIVE_INFINITY;
+            }
+            cost += grid.getDistance( previous, index );
+        }
+        return cost;
+    }
+
+    /**
+     * Block randomly chosen nodes of the grid
+     *
+     * @param grid the "world"
+     * @param random source of the nodes to block
+     * @param density share of the nodes to block, some may be chosen twice
+     */
+    public static void block( Grid grid, Random random, double density ) {
+        int count = grid.getNodeCount();
+        for (int i = (int) (count * density); i > 0; i--) {
+            grid.setPassable( random.nextInt( count ), false );
+        }
+    }
+
+    /**
+     * @param grid the "world"
+     * @param random source of the node
+     * @return index of a randomly chosen passable node
+     */
+    public static int randomPassable( Grid grid, Random random ) {
+        int count = grid.getNodeCount();
+        int index;
+        do {
+            index = random.nextInt( count );
+        } while (!grid.isPassable( index ));
+        return index;
+    }
+
+    /**
+     * @return name printed with the results of the check
+     */
+    public String getName() {
+        return name;
+    }
+}
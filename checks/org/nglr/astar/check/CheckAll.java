@@ -0,0 +1,67 @@
+package org.nglr.astar.check;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the self-checking harnesses and exits with status 1 if any of
+ * them failed.<br><br>
+ * Arguments are the names of the checks to run, all of them if there
+ * are none, and <code>seed=value</code> for the seed of the "worlds"
+ * and the queries
+ *
+ * @author J
+ * @see Check
+ */
+public class CheckAll {
+
+    /**
+     * @return every check, in the order they run
+     */
+    public static List<Check> getChecks() {
+        return Arrays.asList(
+                new HeapCheck(),
+                new AStarCheck(),
+                new SearchContextCheck(),
+                new JumpPointSearchCheck(),
+                new BidirectionalCheck(),
+                new HierarchicalCheck(),
+                new PathCacheCheck(),
+                new DStarLiteCheck(),
+                new ChangeLogCheck(),
+                new WeightedCheck(),
+                new AnytimeCheck(),
+                new SchedulerCheck(),
+                new FlowFieldCheck(),
+                new LandmarkCheck(),
+                new ChunkedCheck() );
+    }
+
+    /**
+     * Run the checks with the given arguments
+     *
+     * @param args names of the checks to run and <code>seed=value</code>
+     */
+    public static void main( String[] args ) {
+        long seed = 42;
+        List<String> names = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith( "seed=" )) {
+                seed = Long.parseLong( arg.substring( 5 ) );
+            } else {
+                names.add( arg );
+            }
+        }
+        boolean passed = true;
+        for (Check check : getChecks()) {
+            if (names.isEmpty() || names.contains( check.getName() )) {
+                passed &= check.check( seed );
+            }
+        }
+        if (!passed) {
+            System.out.println( "Some checks failed" );
+            System.exit( 1 );
+        }
+    }
+}
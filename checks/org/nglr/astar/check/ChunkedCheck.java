@@ -0,0 +1,144 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.ChunkedGrid3D;
+import org.nglr.astar.threedim.MortonGrid3D;
+
+/**
+ * Checks that searches over a {@link ChunkedGrid3D} with a budget of a
+ * few chunks, which keeps dropping and loading them again, find paths as
+ * cheap as the shortest ones over a {@link MortonGrid3D} with the same
+ * voxels, also with several threads searching at once while no chunk is
+ * loaded by two of them at the same time, and that the map holds the
+ * voxels of the loaded chunks
+ *
+ * @author J
+ */
+public class ChunkedCheck extends Check {
+    private static final int QUERIES = 24;
+    private static final int THREADS = 4;
+    private static final int BUDGET_CHUNKS = 4;
+    private static final int CHUNK_VOXELS = ChunkedGrid3D.CHUNK_SIZE * ChunkedGrid3D.CHUNK_SIZE
+            * ChunkedGrid3D.CHUNK_SIZE;
+
+    public ChunkedCheck() {
+        super( "chunked" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        // Sizes that aren't a multiple of the chunk size, to have border chunks
+        check( random, "diagonals", 45, 37, 29, true );
+        check( random, "nodiag", 45, 37, 29, false );
+    }
+
+    private void check( Random random, String name, int width, int height, int depth, boolean diagonals ) {
+        MortonGrid3D reference = new MortonGrid3D( width, height, depth, diagonals );
+        block( reference, random, 0.25 );
+        ConcurrentHashMap<Integer, Boolean> loading = new ConcurrentHashMap<>();
+        AtomicInteger overlaps = new AtomicInteger();
+        ChunkedGrid3D grid = new ChunkedGrid3D( width, height, depth, diagonals, ( x, y, z, blocked ) -> {
+            Integer corner = x + width * (y + height * z);
+            if (loading.putIfAbsent( corner, Boolean.TRUE ) != null) {
+                overlaps.incrementAndGet();
+            }
+            Thread.yield();
+            for (int dz = 0; dz < ChunkedGrid3D.CHUNK_SIZE && z + dz < depth; dz++) {
+                for (int dy = 0; dy < ChunkedGrid3D.CHUNK_SIZE && y + dy < height; dy++) {
+                    for (int dx = 0; dx < ChunkedGrid3D.CHUNK_SIZE && x + dx < width; dx++) {
+                        if (!reference.isPassable( x + dx, y + dy, z + dz )) {
+                            blocked.set( dx + ChunkedGrid3D.CHUNK_SIZE * (dy + ChunkedGrid3D.CHUNK_SIZE * dz) );
+                        }
+                    }
+                }
+            }
+            loading.remove( corner );
+        }, BUDGET_CHUNKS * (long) ChunkedGrid3D.CHUNK_BYTES );
+        search( random, name, reference, grid );
+        expect( grid.getEvictionCount() > 0, "%s no chunk was dropped", name );
+        checkMap( name, reference, grid );
+
+        // Changed voxels are kept over the drops
+        for (int i = 0; i < 200; i++) {
+            int[] position = reference.toDimIndexes( random.nextInt( reference.getNodeCount() ) );
+            if (position[0] < width && position[1] < height && position[2] < depth) {
+                boolean passable = random.nextBoolean();
+                reference.setPassable( reference.toIndex( position ), passable );
+                grid.setPassable( grid.toIndex( position ), passable );
+            }
+        }
+        search( random, name + " changed", reference, grid );
+        searchInParallel( random, name, reference, grid );
+        expect( overlaps.get() == 0, "%s %d chunks were loaded by two threads at once", name, overlaps.get() );
+    }
+
+    private void search( Random random, String name, Grid reference, Grid grid ) {
+        AStar aStar = new AStar( grid );
+        for (int i = 0; i < QUERIES; i++) {
+            int start = randomPassable( reference, random );
+            int goal = randomPassable( reference, random );
+            expectCost( shortestCost( reference, start, goal ), cost( aStar, reference, grid, start, goal ),
+                    String.format( "%s from %d to %d", name, start, goal ) );
+        }
+    }
+
+    private void searchInParallel( Random random, String name, Grid reference, Grid grid ) {
+        int[][] queries = new int[THREADS * QUERIES / 2][];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new int[] {randomPassable( reference, random ), randomPassable( reference, random )};
+        }
+        double[] costs = new double[queries.length];
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int first = t;
+            threads[t] = new Thread( () -> {
+                AStar aStar = new AStar( grid );
+                for (int i = first; i < queries.length; i += THREADS) {
+                    costs[i] = cost( aStar, reference, grid, queries[i][0], queries[i][1] );
+                }
+            } );
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException( e );
+            }
+        }
+        for (int i = 0; i < queries.length; i++) {
+            expectCost( shortestCost( reference, queries[i][0], queries[i][1] ), costs[i],
+                    String.format( "%s parallel from %d to %d", name, queries[i][0], queries[i][1] ) );
+        }
+    }
+
+    private void checkMap( String name, Grid reference, ChunkedGrid3D grid ) {
+        Node[] map = grid.getMap();
+        expect( map.length > 0 && map.length <= grid.getLoadedChunkCount() * CHUNK_VOXELS,
+                "%s map of %d nodes for %d chunks", name, map.length, grid.getLoadedChunkCount() );
+        int wrong = 0;
+        for (Node node : map) {
+            int[] position = grid.toDimIndexes( node.getIndex() );
+            if (node.isPassable() != reference.isPassable( reference.toIndex( position ) )) {
+                wrong ++;
+            }
+        }
+        expect( wrong == 0, "%s %d map nodes with the wrong passability", name, wrong );
+    }
+
+    /**
+     * @return cost of the path found over the chunked grid between the
+     * nodes of the reference one or positive infinity if none was found
+     */
+    private static double cost( AStar aStar, Grid reference, Grid grid, int start, int goal ) {
+        aStar.prepare( reference.toDimIndexes( start ), reference.toDimIndexes( goal ) );
+        Node[] path = aStar.calculateAll();
+        return aStar.isSolvable() ? pathCost( grid, path ) : Double.POSITIVE_INFINITY;
+    }
+}
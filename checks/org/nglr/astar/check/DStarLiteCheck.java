@@ -0,0 +1,73 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.DStarLite;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2D;
+
+/**
+ * Checks that {@link DStarLite} keeps finding shortest paths while its
+ * start walks along the path and nodes change their passability, told
+ * either through {@link DStarLite#update(int...)} or picked up from the
+ * change log of the grid by {@link DStarLite#refresh()}
+ *
+ * @author J
+ */
+public class DStarLiteCheck extends Check {
+    private static final int WALKS = 15;
+    private static final int CHANGES = 6;
+
+    public DStarLiteCheck() {
+        super( "dstar" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        for (boolean refresh : new boolean[] {false, true}) {
+            check( random, "Grid2D", new Grid2D( 40, 40 ), refresh );
+            check( random, "CompactGrid2D nodiag", new CompactGrid2D( 40, 40, false ), refresh );
+            check( random, "Grid3D", new Grid3D( 12, 12, 12 ), refresh );
+        }
+    }
+
+    private void check( Random random, String name, Grid grid, boolean refresh ) {
+        block( grid, random, 0.2 );
+        name += refresh ? " refresh" : " update";
+        DStarLite planner = new DStarLite( grid );
+        for (int walk = 0; walk < WALKS; walk++) {
+            int start = randomPassable( grid, random );
+            int goal = randomPassable( grid, random );
+            planner.prepare( start, goal );
+            while (true) {
+                Node[] path = planner.calculateAll();
+                String what = String.format( "%s walk %d from %d to %d", name, walk, start, goal );
+                double expected = shortestCost( grid, start, goal );
+                expectCost( expected, planner.getCost(), what );
+                if (!planner.isSolvable() || path.length < 2) {
+                    break;
+                }
+                expectCost( expected, pathCost( grid, path ), what + " path" );
+                // Take a step and change some nodes away from the start and the goal
+                start = path[path.length - 2].getIndex();
+                planner.moveStart( start );
+                int[] changed = new int[CHANGES];
+                for (int i = 0; i < CHANGES; i++) {
+                    int node;
+                    do {
+                        node = random.nextInt( grid.getNodeCount() );
+                    } while (node == start || node == goal);
+                    grid.setPassable( node, !grid.isPassable( node ) );
+                    changed[i] = node;
+                }
+                if (refresh) {
+                    planner.refresh();
+                } else {
+                    planner.update( changed );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.FlowField;
+import org.nglr.astar.Grid;
+import org.nglr.astar.threedim.MortonGrid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+
+/**
+ * Checks that the sequential and the parallel {@link FlowField} of a
+ * goal hold the same distances, bit for bit, that those are the shortest
+ * ones rounded to <code>float</code>, and that following the next nodes
+ * from any node gives a shortest path
+ *
+ * @author J
+ */
+public class FlowFieldCheck extends Check {
+    /** Relative difference of a distance rounded to <code>float</code> */
+    private static final double FLOAT_TOLERANCE = 1e-6;
+    private static final int GOALS = 3;
+    private static final int PATHS = 30;
+
+    public FlowFieldCheck() {
+        super( "flowfield" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        // Big enough for the wavefront to run in parallel
+        check( random, "CompactGrid2D", new CompactGrid2D( 400, 400, true ) );
+        check( random, "CompactGrid2D nodiag", new CompactGrid2D( 400, 400, false ) );
+        check( random, "MortonGrid3D", new MortonGrid3D( 48, 48, 48, true ) );
+    }
+
+    private void check( Random random, String name, Grid grid ) {
+        block( grid, random, 0.25 );
+        for (int g = 0; g < GOALS; g++) {
+            int goal = randomPassable( grid, random );
+            String what = name + " goal " + goal;
+            FlowField sequential = new FlowField( grid, goal, false );
+            FlowField parallel = new FlowField( grid, goal, true );
+            double[] expected = shortestCosts( grid, goal );
+            int different = 0;
+            int wrong = 0;
+            for (int i = 0; i < expected.length; i++) {
+                double distance = sequential.getDistance( i );
+                if (Double.doubleToLongBits( distance ) != Double.doubleToLongBits( parallel.getDistance( i ) )) {
+                    different ++;
+                }
+                if (Double.isInfinite( expected[i] ) ? !Double.isInfinite( distance )
+                        : Math.abs( distance - expected[i] ) > FLOAT_TOLERANCE * Math.max( 1, expected[i] )) {
+                    wrong ++;
+                }
+            }
+            expect( different == 0, "%s %d distances differ between the modes", what, different );
+            expect( wrong == 0, "%s %d distances aren't the shortest", what, wrong );
+            for (int p = 0; p < PATHS; p++) {
+                int start = randomPassable( grid, random );
+                for (FlowField field : new FlowField[] {sequential, parallel}) {
+                    double cost = field.isReachable( start ) ? pathCost( grid, field.getPath( start ) )
+                            : Double.POSITIVE_INFINITY;
+                    expectCost( expected[start], cost, String.format( "%s %s path from %d", what,
+                            field == parallel ? "parallel" : "sequential", start ) );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.IndexedMinHeap;
+
+/**
+ * Runs random adds, updates, removes and polls on an {@link IndexedMinHeap}
+ * and the same ones on an array of keys scanned for the lowest one,
+ * checking that both agree after every operation
+ *
+ * @author J
+ */
+public class HeapCheck extends Check {
+    private static final int CAPACITY = 200;
+    private static final int OPERATIONS = 20000;
+
+    public HeapCheck() {
+        super( "heap" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        for (boolean secondKeys : new boolean[] {false, true}) {
+            IndexedMinHeap heap = new IndexedMinHeap( CAPACITY / 2 );
+            heap.ensureCapacity( CAPACITY );
+            double[] keys = new double[CAPACITY];
+            double[] ties = new double[CAPACITY];
+            boolean[] in = new boolean[CAPACITY];
+            int size = 0;
+            for (int op = 0; op < OPERATIONS; op++) {
+                int index = random.nextInt( CAPACITY );
+                // Few distinct keys so there are plenty of ties
+                double key = random.nextInt( 50 );
+                double tie = secondKeys ? random.nextInt( 5 ) : 0;
+                switch (random.nextInt( 4 )) {
+                    case 0:
+                    case 1:
+                        if (!in[index]) {
+                            size ++;
+                        }
+                        if (secondKeys) {
+                            heap.add( index, key, tie );
+                        } else {
+                            heap.add( index, key );
+                        }
+                        in[index] = true;
+                        keys[index] = key;
+                        ties[index] = tie;
+                        break;
+                    case 2:
+                        expect( heap.remove( index ) == in[index], "remove(%d) of %b", index, in[index] );
+                        if (in[index]) {
+                            size --;
+                        }
+                        in[index] = false;
+                        break;
+                    default:
+                        if (size == 0) {
+                            expect( heap.isEmpty(), "heap isn't empty" );
+                            break;
+                        }
+                        double lowest = lowest( keys, ties, in );
+                        int polled = heap.poll();
+                        expect( in[polled] && keys[polled] * 8 + ties[polled] == lowest,
+                                "polled %d with key %.0f, lowest is %.0f", polled, keys[polled], lowest );
+                        in[polled] = false;
+                        size --;
+                }
+                expect( heap.size() == size, "size %d, expected %d", heap.size(), size );
+                expect( heap.contains( index ) == in[index], "contains(%d) is %b", index, !in[index] );
+            }
+            int count = heap.size();
+            heap.clear();
+            expect( heap.isEmpty() && !heap.contains( random.nextInt( CAPACITY ) ), "clear of %d indexes", count );
+        }
+    }
+
+    /**
+     * @return lowest order among the indexes in the heap, which is the
+     * key and then the second key
+     */
+    private static double lowest( double[] keys, double[] ties, boolean[] in ) {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < keys.length; i++) {
+            if (in[i]) {
+                lowest = Math.min( lowest, keys[i] * 8 + ties[i] );
+            }
+        }
+        return lowest;
+    }
+}
@@ -0,0 +1,92 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.Grid;
+import org.nglr.astar.HierarchicalPathfinder;
+import org.nglr.astar.PathResult;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+
+/**
+ * Checks that HPA* finds a path whenever there is one and that its
+ * paths are valid and close to the shortest ones, also after nodes
+ * change their passability and only the clusters around them are
+ * rebuilt.<br>
+ * HPA* paths have to go through the entrances of the clusters, which on
+ * short queries can make a path cost twice the shortest one or more, so
+ * only the mean cost over all the queries of a "world" is checked. It's
+ * about 2-5% over the shortest one on these 2D "worlds" and about 18% on
+ * the 3D ones, whose clusters are smaller
+ *
+ * @author J
+ */
+public class HierarchicalCheck extends Check {
+    /** Most the paths of a 2D "world" can cost over the shortest ones, on average */
+    private static final double MAX_MEAN_RATIO_2D = 1.1;
+    /** Most the paths of a 3D "world" can cost over the shortest ones, on average */
+    private static final double MAX_MEAN_RATIO_3D = 1.3;
+    private static final double[] DENSITIES = {0, 0.1, 0.25};
+    private static final int QUERIES = 60;
+
+    public HierarchicalCheck() {
+        super( "hpa" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        for (double density : DENSITIES) {
+            check( random, "CompactGrid2D", new CompactGrid2D( 96, 80, true ), 16, density, MAX_MEAN_RATIO_2D );
+            check( random, "CompactGrid2D nodiag", new CompactGrid2D( 96, 80, false ), 16, density,
+                    MAX_MEAN_RATIO_2D );
+            check( random, "Grid3D", new Grid3D( 24, 20, 16 ), 8, density, MAX_MEAN_RATIO_3D );
+        }
+    }
+
+    private void check( Random random, String name, Grid grid, int clusterSize, double density,
+            double maxMeanRatio ) {
+        block( grid, random, density );
+        name += " density " + density;
+        HierarchicalPathfinder hpa = new HierarchicalPathfinder( grid, clusterSize );
+        double ratio = queries( random, name, grid, hpa );
+        expect( ratio <= maxMeanRatio, "%s mean cost %.3f times the shortest", name, ratio );
+        // Flip some nodes and rebuild only the clusters around them
+        int[] changed = new int[20];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = random.nextInt( grid.getNodeCount() );
+            grid.setPassable( changed[i], !grid.isPassable( changed[i] ) );
+        }
+        hpa.update( changed );
+        ratio = queries( random, name + " updated", grid, hpa );
+        expect( ratio <= maxMeanRatio, "%s updated mean cost %.3f times the shortest", name, ratio );
+    }
+
+    /**
+     * Run random queries, checking each path found
+     *
+     * @return mean of the costs of the paths divided by the shortest ones
+     */
+    private double queries( Random random, String name, Grid grid, HierarchicalPathfinder hpa ) {
+        double ratios = 0;
+        int paths = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            int start = randomPassable( grid, random );
+            int goal = randomPassable( grid, random );
+            String what = String.format( "%s from %d to %d", name, start, goal );
+            double expected = shortestCost( grid, start, goal );
+            PathResult result = hpa.find( start, goal );
+            expect( result.isSolvable() == !Double.isInfinite( expected ), "%s solvable is %b", what,
+                    result.isSolvable() );
+            if (!result.isSolvable() || Double.isInfinite( expected )) {
+                continue;
+            }
+            double cost = pathCost( grid, result.getPath() );
+            expect( AStarCheck.ends( result.getPath(), start, goal ), "%s path doesn't join them", what );
+            expect( cost >= expected * (1 - COST_TOLERANCE), "%s cost %.6f, shortest %.6f", what, cost, expected );
+            if (expected > 0) {
+                ratios += cost / expected;
+                paths ++;
+            }
+        }
+        return paths == 0 ? 1 : ratios / paths;
+    }
+}
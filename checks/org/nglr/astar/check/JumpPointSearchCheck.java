@@ -0,0 +1,72 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import java.util.function.Supplier;
+import org.nglr.astar.Node;
+import org.nglr.astar.twodim.AStar2D;
+import org.nglr.astar.twodim.BaseGrid2D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2D;
+import org.nglr.astar.twodim.Grid2DNoDiagonal;
+
+/**
+ * Checks that Jump Point Search and plain A* find paths of the same cost,
+ * the shortest one, on random maps with and without diagonals, and that
+ * a diagonal step costs its straight-line length
+ *
+ * @author J
+ */
+public class JumpPointSearchCheck extends Check {
+    private static final double[] DENSITIES = {0, 0.1, 0.25, 0.4};
+    private static final int QUERIES = 40;
+
+    public JumpPointSearchCheck() {
+        super( "jps" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        Grid2D open = new Grid2D( 3, 3 );
+        double straight = open.getDistance( open.getIndex( 0, 0 ), open.getIndex( 1, 0 ) );
+        expectCost( Math.sqrt( 2 ) * straight, open.getDistance( open.getIndex( 0, 0 ), open.getIndex( 1, 1 ) ),
+                "Grid2D diagonal step" );
+        check( random, "Grid2D", () -> new Grid2D( 50, 40 ) );
+        check( random, "Grid2DNoDiagonal", () -> new Grid2DNoDiagonal( 50, 40 ) );
+        check( random, "CompactGrid2D", () -> new CompactGrid2D( 50, 40, true ) );
+        check( random, "CompactGrid2D nodiag", () -> new CompactGrid2D( 50, 40, false ) );
+    }
+
+    private void check( Random random, String name, Supplier<BaseGrid2D> worlds ) {
+        for (double density : DENSITIES) {
+            BaseGrid2D grid = worlds.get();
+            block( grid, random, density );
+            AStar2D plain = new AStar2D( grid );
+            AStar2D jumps = new AStar2D( grid );
+            jumps.setJumpPointSearch( true );
+            for (int i = 0; i < QUERIES; i++) {
+                int start = randomPassable( grid, random );
+                int goal = randomPassable( grid, random );
+                String what = String.format( "%s density %.2f from %d to %d", name, density, start, goal );
+                double expected = shortestCost( grid, start, goal );
+                double plainCost = cost( plain, grid, start, goal );
+                double jumpCost = cost( jumps, grid, start, goal );
+                expectCost( expected, plainCost, "A* " + what );
+                expectCost( plainCost, jumpCost, "JPS " + what );
+                if (jumps.isSolvable()) {
+                    expect( AStarCheck.ends( jumps.getPath(), start, goal ), "JPS %s path doesn't join them",
+                            what );
+                }
+            }
+        }
+    }
+
+    /**
+     * @return cost of the path found between the nodes or positive
+     * infinity if none was found
+     */
+    private static double cost( AStar2D aStar, BaseGrid2D grid, int start, int goal ) {
+        aStar.prepare( grid.toDimIndexes( start ), grid.toDimIndexes( goal ) );
+        Node[] path = aStar.calculateAll();
+        return aStar.isSolvable() ? pathCost( grid, path ) : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,91 @@
+package org.nglr.astar.check;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.LandmarkHeuristic;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.twodim.AStar2D;
+import org.nglr.astar.twodim.BaseGrid2D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2DNoDiagonal;
+
+/**
+ * Checks that a {@link LandmarkHeuristic} never overestimates, the same
+ * after being saved and loaded, and that plain, Jump Point Search and
+ * bidirectional searches with it, which may reopen closed nodes as the
+ * estimate isn't strictly consistent, still find the shortest paths
+ *
+ * @author J
+ */
+public class LandmarkCheck extends Check {
+    private static final int QUERIES = 60;
+
+    public LandmarkCheck() {
+        super( "landmark" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        check( random, "CompactGrid2D", new CompactGrid2D( 80, 80, true ), 8 );
+        check( random, "Grid2DNoDiagonal", new Grid2DNoDiagonal( 60, 60 ), 4 );
+        check( random, "Grid3D", new Grid3D( 16, 16, 16 ), 6 );
+    }
+
+    private void check( Random random, String name, Grid grid, int landmarkCount ) {
+        block( grid, random, 0.3 );
+        LandmarkHeuristic heuristic = new LandmarkHeuristic( grid, landmarkCount );
+        LandmarkHeuristic loaded = reload( heuristic );
+        AStar plain = new AStar( grid );
+        plain.setHeuristic( heuristic );
+        AStar bidirectional = new AStar( grid );
+        bidirectional.setHeuristic( loaded );
+        bidirectional.setBidirectional( true );
+        AStar2D jumps = null;
+        if (grid instanceof BaseGrid2D) {
+            jumps = new AStar2D( (BaseGrid2D) grid );
+            jumps.setJumpPointSearch( true );
+            jumps.setHeuristic( heuristic );
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            int start = randomPassable( grid, random );
+            int goal = randomPassable( grid, random );
+            String what = String.format( "%s from %d to %d", name, start, goal );
+            double expected = shortestCost( grid, start, goal );
+            double estimate = heuristic.estimate( start, goal );
+            expect( estimate <= expected, "%s estimate %.9f over %.9f", what, estimate, expected );
+            expect( estimate == loaded.estimate( start, goal ), "%s loaded estimate %.9f, expected %.9f", what,
+                    loaded.estimate( start, goal ), estimate );
+            expectCost( expected, cost( plain, grid, start, goal ), "A* " + what );
+            expectCost( expected, cost( bidirectional, grid, start, goal ), "bidirectional " + what );
+            if (jumps != null) {
+                expectCost( expected, cost( jumps, grid, start, goal ), "JPS " + what );
+            }
+        }
+    }
+
+    private static LandmarkHeuristic reload( LandmarkHeuristic heuristic ) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            heuristic.save( out );
+            return LandmarkHeuristic.load( heuristic.getGrid(), new ByteArrayInputStream( out.toByteArray() ) );
+        } catch (IOException e) {
+            throw new UncheckedIOException( e );
+        }
+    }
+
+    /**
+     * @return cost of the path found between the nodes or positive
+     * infinity if none was found
+     */
+    private static double cost( AStar aStar, Grid grid, int start, int goal ) {
+        aStar.prepare( grid.toDimIndexes( start ), grid.toDimIndexes( goal ) );
+        Node[] path = aStar.calculateAll();
+        return aStar.isSolvable() ? pathCost( grid, path ) : Double.POSITIVE_INFINITY;
+    }
+}
@@ -0,0 +1,68 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.PathCache;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2D;
+
+/**
+ * Checks that an {@link AStar} with a {@link PathCache} keeps finding
+ * shortest paths while nodes get blocked and unblocked between the
+ * queries, so cached results the changes affected are never returned,
+ * and that the cache is still used for the ones they didn't
+ *
+ * @author J
+ */
+public class PathCacheCheck extends Check {
+    private static final int PAIRS = 12;
+    private static final int QUERIES = 400;
+
+    public PathCacheCheck() {
+        super( "cache" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        check( random, "Grid2D", new Grid2D( 40, 40 ) );
+        check( random, "CompactGrid2D", new CompactGrid2D( 40, 40, false ) );
+    }
+
+    private void check( Random random, String name, Grid grid ) {
+        block( grid, random, 0.2 );
+        AStar aStar = new AStar( grid );
+        PathCache cache = new PathCache( grid, PAIRS / 2 );
+        aStar.setPathCache( cache );
+        // Few pairs so most queries could come from the cache
+        int[][] pairs = new int[PAIRS][];
+        for (int i = 0; i < PAIRS; i++) {
+            pairs[i] = new int[] {randomPassable( grid, random ), randomPassable( grid, random )};
+        }
+        for (int i = 0; i < QUERIES; i++) {
+            switch (random.nextInt( 6 )) {
+                case 0:
+                    grid.setPassable( random.nextInt( grid.getNodeCount() ), false );
+                    break;
+                case 1:
+                    grid.setPassable( random.nextInt( grid.getNodeCount() ), true );
+                    break;
+                case 2:
+                    int[] corner = grid.toDimIndexes( random.nextInt( grid.getNodeCount() ) );
+                    grid.setPassable( corner, new int[] {3, 2}, random.nextBoolean() );
+                    break;
+                default:
+                    // No change, the cached results stay valid
+            }
+            int[] pair = pairs[random.nextInt( PAIRS )];
+            aStar.prepare( grid.toDimIndexes( pair[0] ), grid.toDimIndexes( pair[1] ) );
+            Node[] path = aStar.calculateAll();
+            String what = String.format( "%s query %d from %d to %d", name, i, pair[0], pair[1] );
+            expectCost( shortestCost( grid, pair[0], pair[1] ),
+                    aStar.isSolvable() ? pathCost( grid, path ) : Double.POSITIVE_INFINITY, what );
+        }
+        expect( cache.getHits() > 0, "%s the cache was never used", name );
+        expect( cache.size() <= cache.getMaxSize(), "%s cache holds %d results", name, cache.size() );
+    }
+}
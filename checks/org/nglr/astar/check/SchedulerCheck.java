@@ -0,0 +1,54 @@
+package org.nglr.astar.check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.nglr.astar.Grid;
+import org.nglr.astar.PathResult;
+import org.nglr.astar.SearchScheduler;
+import org.nglr.astar.twodim.CompactGrid2D;
+
+/**
+ * Checks that a {@link SearchScheduler} with many queries in flight
+ * completes each one with the shortest path, with dense and with sparse
+ * search contexts
+ *
+ * @author J
+ */
+public class SchedulerCheck extends Check {
+    private static final int QUERIES = 120;
+    private static final int FRAME_EXPANSIONS = 2000;
+
+    public SchedulerCheck() {
+        super( "scheduler" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        Grid grid = new CompactGrid2D( 260, 260, true );
+        block( grid, random, 0.2 );
+        expect( new SearchScheduler( grid ).isSparse(), "a %d node world isn't sparse", grid.getNodeCount() );
+        for (boolean sparse : new boolean[] {false, true}) {
+            SearchScheduler scheduler = new SearchScheduler( grid, sparse );
+            int[][] queries = new int[QUERIES][];
+            List<CompletableFuture<PathResult>> futures = new ArrayList<>();
+            for (int i = 0; i < QUERIES; i++) {
+                queries[i] = new int[] {randomPassable( grid, random ), randomPassable( grid, random )};
+                futures.add( scheduler.submit( queries[i][0], queries[i][1], 1 + random.nextInt( 4 ) ) );
+            }
+            int frames = 0;
+            while (scheduler.getPendingCount() > 0) {
+                scheduler.runFrame( FRAME_EXPANSIONS );
+                frames ++;
+            }
+            expect( frames > 1, "sparse %b ran in %d frames", sparse, frames );
+            for (int i = 0; i < QUERIES; i++) {
+                PathResult result = futures.get( i ).join();
+                expectCost( shortestCost( grid, queries[i][0], queries[i][1] ),
+                        result.isSolvable() ? pathCost( grid, result.getPath() ) : Double.POSITIVE_INFINITY,
+                        String.format( "sparse %b from %d to %d", sparse, queries[i][0], queries[i][1] ) );
+            }
+        }
+    }
+}
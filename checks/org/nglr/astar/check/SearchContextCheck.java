@@ -0,0 +1,68 @@
+package org.nglr.astar.check;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.nglr.astar.Grid;
+import org.nglr.astar.SearchContext;
+import org.nglr.astar.twodim.Grid2D;
+
+/**
+ * Checks that {@link SearchContext}s searching one shared grid from
+ * several threads at the same time all find shortest paths
+ *
+ * @author J
+ */
+public class SearchContextCheck extends Check {
+    private static final int THREADS = 4;
+    private static final int QUERIES = 60;
+
+    public SearchContextCheck() {
+        super( "context" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        Grid grid = new Grid2D( 60, 60 );
+        block( grid, random, 0.3 );
+        int[][] queries = new int[THREADS * QUERIES][];
+        double[] expected = new double[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = new int[] {randomPassable( grid, random ), randomPassable( grid, random )};
+            expected[i] = shortestCost( grid, queries[i][0], queries[i][1] );
+        }
+        ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+        try {
+            List<Future<double[]>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int first = t * QUERIES;
+                results.add( executor.submit( () -> {
+                    SearchContext context = new SearchContext( grid );
+                    double[] costs = new double[QUERIES];
+                    for (int i = 0; i < QUERIES; i++) {
+                        context.prepare( queries[first + i][0], queries[first + i][1] );
+                        context.run();
+                        costs[i] = context.isSolvable() ? pathCost( grid, context.getPath() )
+                                : Double.POSITIVE_INFINITY;
+                    }
+                    return costs;
+                } ) );
+            }
+            for (int t = 0; t < THREADS; t++) {
+                double[] costs = results.get( t ).get();
+                for (int i = 0; i < QUERIES; i++) {
+                    int q = t * QUERIES + i;
+                    expectCost( expected[q], costs[i], "thread " + t + " from " + queries[q][0] + " to "
+                            + queries[q][1] );
+                }
+            }
+        } catch (Exception e) {
+            expect( false, "%s", e );
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
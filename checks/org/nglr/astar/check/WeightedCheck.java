@@ -0,0 +1,60 @@
+package org.nglr.astar.check;
+
+import java.util.Random;
+import org.nglr.astar.AStar;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.threedim.Grid3D;
+import org.nglr.astar.twodim.CompactGrid2D;
+import org.nglr.astar.twodim.Grid2D;
+
+/**
+ * Checks that weighted A* finds a path whenever there is one and that
+ * its cost is within <code>1 + epsilon</code> times the shortest one,
+ * searching from one side and from both
+ *
+ * @author J
+ */
+public class WeightedCheck extends Check {
+    private static final double[] EPSILONS = {0.1, 0.5, 2};
+    private static final int QUERIES = 40;
+
+    public WeightedCheck() {
+        super( "weighted" );
+    }
+
+    @Override
+    protected void run( Random random ) {
+        for (boolean bidirectional : new boolean[] {false, true}) {
+            check( random, "Grid2D", new Grid2D( 50, 50 ), bidirectional );
+            check( random, "CompactGrid2D nodiag", new CompactGrid2D( 50, 50, false ), bidirectional );
+            check( random, "Grid3D", new Grid3D( 14, 14, 14 ), bidirectional );
+        }
+    }
+
+    private void check( Random random, String name, Grid grid, boolean bidirectional ) {
+        block( grid, random, 0.25 );
+        AStar aStar = new AStar( grid );
+        aStar.setBidirectional( bidirectional );
+        for (int i = 0; i < QUERIES; i++) {
+            int start = randomPassable( grid, random );
+            int goal = randomPassable( grid, random );
+            double expected = shortestCost( grid, start, goal );
+            for (double epsilon : EPSILONS) {
+                String what = String.format( "%s%s epsilon %.1f from %d to %d", name,
+                        bidirectional ? " bidirectional" : "", epsilon, start, goal );
+                aStar.prepare( grid.toDimIndexes( start ), grid.toDimIndexes( goal ), epsilon );
+                Node[] path = aStar.calculateAll();
+                expect( aStar.isSolvable() == !Double.isInfinite( expected ), "%s solvable is %b", what,
+                        aStar.isSolvable() );
+                if (!aStar.isSolvable() || Double.isInfinite( expected )) {
+                    continue;
+                }
+                double cost = pathCost( grid, path );
+                expect( cost >= expected * (1 - COST_TOLERANCE)
+                        && cost <= expected * (1 + epsilon) * (1 + COST_TOLERANCE),
+                        "%s cost %.6f, shortest %.6f", what, cost, expected );
+            }
+        }
+    }
+}
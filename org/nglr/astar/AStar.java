@@ -1,12 +1,6 @@
 
 package org.nglr.astar;
 
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
-import java.util.function.Consumer;
-
 /**
  * Basic A* algorithm master class.<br>
  * Holds the calculation methods that use a
@@ -20,18 +14,17 @@ import java.util.function.Consumer;
  * @see AStar2D
  * @see Node
  * @see Grid
+ * @see SearchContext
+ * @see AnytimeAStar
  */
 public class AStar {
     private Grid grid;
-    private Node[] path, bestTry;
-    private Node cur;
-    private boolean tested;
-    private boolean solvable;
-    private boolean calculating;
-    
-    private Map<Node, Double> fScore = null;
-    private Map<Node, Double> gScore = null;
-    private Queue<Node> openSet = null;
+    private SearchContext context;
+    private PathCache cache;
+    private double epsilon;
+    private Heuristic heuristic;
+    private SearchListener listener;
+    private boolean timed;
     
     /**
      * Instance <code>AStar</code> passing in a <code>Grid</code>
@@ -45,11 +38,7 @@ public class AStar {
             throw new IllegalArgumentException("The \"grid\" can't be null");
         }
         this.grid = grid;
-        path = null;
-        bestTry = null;
-        tested = false;
-        solvable = true;
-        calculating = false;
+        context = new SearchContext( grid );
     }
     
     /**
@@ -59,42 +48,125 @@ public class AStar {
      * actually the index of each dimension.<br><br>
      * <b>Values use:</b><br><br>
      * <code>Node startNode = map[ start[0] ][ start[1] ];</code><br>
-     * <code>Node endNode = map[ end[0] ][ end[1] ];</code>
+     * <code>Node endNode = map[ end[0] ][ end[1] ];</code><br><br>
+     * The points are kept by this <code>AStar</code> and not set in
+     * the <code>Grid</code>, so various <code>AStar</code> instances
+     * can search the same <code>Grid</code> at the same time
      * 
      * @param start dimensional indexes for start position
      * @param end dimensional indexes for end position
      */
     public void prepare(int[] start, int[] end ) {
-        grid.setup( start, end );
-        setupForCalculation();
-    }
-    
-    private void setupForCalculation() {
-        tested = false;
-        path = null;
-        bestTry = null;
-        path = null;
-        solvable = false;
-        calculating = false;
-        if (openSet == null) {
-            openSet = new LinkedList<>();
-        } else {
-            openSet.clear();
+        prepare( start, end, epsilon );
+    }
+    
+    /**
+     * Setup the start and end points like {@link #prepare(int[], int[])}
+     * with the epsilon to use only for this query instead of the one
+     * set with {@link #setEpsilon(double)}
+     * 
+     * @param start dimensional indexes for start position
+     * @param end dimensional indexes for end position
+     * @param epsilon how much more than the optimal cost the path can cost, 0 for the optimal path
+     * @throws IllegalArgumentException if <code>epsilon</code> is negative
+     */
+    public void prepare(int[] start, int[] end, double epsilon ) {
+        context.prepare( grid.toIndex( start ), grid.toIndex( end ), epsilon );
+    }
+    
+    /**
+     * Search the following queries as weighted A*, which inflates the
+     * heuristics by <code>1 + epsilon</code>. Fewer nodes are expanded
+     * and the found paths cost at most <code>1 + epsilon</code> times the
+     * optimal cost, 0 by default to find the optimal paths
+     * 
+     * @param epsilon how much more than the optimal cost the paths can cost
+     * @throws IllegalArgumentException if <code>epsilon</code> is negative or not a number
+     */
+    public void setEpsilon( double epsilon ) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("The epsilon can't be negative");
         }
-        gScore = new HashMap<>();
-        fScore = new HashMap<>();
-        grid.forAllNodes(new Consumer<Node>() {
-            @Override
-            public void accept( Node n ) {
-                gScore.put( n, Double.POSITIVE_INFINITY );
-                fScore.put( n, Double.POSITIVE_INFINITY );
-            }
-        });
-        Node start = grid.getStart();
-        openSet.add( start );
-        gScore.replace( start, 0.0 );
-        fScore.replace( start, grid.getHeuristics(start ) );
-        cur = null;
+        this.epsilon = epsilon;
+    }
+    
+    /**
+     * @return how much more than the optimal cost the paths of the
+     * following queries can cost
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+    
+    /**
+     * Guide the following queries with the given estimate instead of
+     * the heuristics of the <code>Grid</code>
+     * 
+     * @param heuristic estimate of the cost to the goal or <code>null</code>
+     * to use the one of the <code>Grid</code>
+     * @see LandmarkHeuristic
+     */
+    public void setHeuristic( Heuristic heuristic ) {
+        this.heuristic = heuristic;
+        context.setHeuristic( heuristic );
+    }
+    
+    /**
+     * @return estimate that guides the queries or <code>null</code> if
+     * the one of the <code>Grid</code> is used
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+    
+    /**
+     * Set who follows the searches of the following queries, called on
+     * every node expanded by {@link #calculateStep()} or
+     * {@link #calculateAll()}. Keep it quick, it runs inside the search
+     * 
+     * @param listener listener of the searches or <code>null</code> for none
+     */
+    public void setSearchListener( SearchListener listener ) {
+        this.listener = listener;
+        context.setSearchListener( listener );
+    }
+    
+    /**
+     * @return listener of the searches or <code>null</code> if none
+     */
+    public SearchListener getSearchListener() {
+        return listener;
+    }
+    
+    /**
+     * Choose if the following queries measure the time spent estimating
+     * the heuristics and in the open set, which slows them down
+     * 
+     * @param timed if the time is measured
+     * @see SearchStatistics
+     */
+    public void setTimed( boolean timed ) {
+        this.timed = timed;
+        context.setTimed( timed );
+    }
+    
+    /**
+     * @return if the time spent estimating the heuristics and in the
+     * open set is measured
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+    
+    /**
+     * Get the work done by the search of the current settings, like the
+     * amount of expanded nodes. A result taken from the path cache did
+     * no work
+     * 
+     * @return statistics of the current query
+     */
+    public SearchStatistics getStatistics() {
+        return context.getStatistics();
     }
     
     /**
@@ -107,39 +179,7 @@ public class AStar {
      * @throws NullPointerException if start and end points not defined
      */
     public void calculateStep() {
-        if (!openSet.isEmpty() && !tested) {
-            calculating = true;
-            cur = lowestFScore();
-            if ( cur == grid.getGoal() ) {
-                path = cur.getPath();
-                bestTry = cur.getPath();
-                tested = true;
-                solvable = true;
-                calculating = false;
-                return;
-            }
-
-            openSet.remove( cur );
-            for (Node neighbor : cur.getNeighbors()) {
-                if ( neighbor == null || !neighbor.isPassable() ) {
-                    continue;
-                }
-                double tentativeScore = gScore.get( cur ) + grid.getDistance(cur, neighbor );
-                if ( tentativeScore < gScore.get( neighbor ) ) {
-                    neighbor.setParent( cur );
-                    gScore.replace( neighbor, tentativeScore );
-                    fScore.replace( neighbor, gScore.get( neighbor ) + grid.getHeuristics(neighbor ) );
-                    if (  ! openSet.contains( neighbor ) ) {
-                        openSet.add( neighbor );
-                    }
-                }
-            }
-        } else if (!tested) {
-            bestTry = lowestFScore().getPath();
-            tested = true;
-            solvable = false;
-            calculating = false;
-        }
+        context.step();
     }
     
     /**
@@ -151,28 +191,154 @@ public class AStar {
      * @throws NullPointerException if there's no start and/or goal set
      */
     public Node[] calculateAll() {
-        calculating = true;
-        tested = false;
-        while (calculating && !tested) {
-            calculateStep();
-        }
-        if (solvable) {
-            return path;
+        return calculateAll( SearchBudget.UNLIMITED );
+    }
+
+    /**
+     * Calculate the best path to the desired point from the set start
+     * until it's found or the given budget runs out. Once stopped,
+     * {@link #getStatus()} tells why and the best try is returned.<br>
+     * Each call records an <code>org.nglr.astar.PathQuery</code> Flight
+     * Recorder event when it's enabled
+     *
+     * @param budget limits of the search
+     * @return best path
+     * @throws NullPointerException if there's no start and/or goal set
+     * @throws IllegalArgumentException if <code>budget</code> is null
+     */
+    public Node[] calculateAll( SearchBudget budget ) {
+        PathQueryEvent event = new PathQueryEvent();
+        event.begin();
+        boolean cached = false;
+        Node[] found;
+        // Cached paths are optimal, so only optimal queries can use them
+        if (cache == null || context.isTested() || context.getEpsilon() != 0) {
+            found = context.run( budget );
         } else {
-            return bestTry;
+            PathResult result = cache.get( context.getStart(), context.getGoal() );
+            if (result != null) {
+                context.restore( result );
+                found = result.getPath();
+                cached = true;
+            } else {
+                long version = grid.getVersion();
+                found = context.run( budget );
+                if (context.getStatus().isConclusive()) {
+                    cache.put( context.getStart(), context.getGoal(),
+                            new PathResult( found, context.getStatus() ), version );
+                }
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.set( context, cached );
+            event.commit();
         }
+        return found;
     }
     
-    private Node lowestFScore() {
-        Node min = null;
-        for (Node n : openSet) {
-            if ( min == null ) {
-                min = n;
-            } else if ( fScore.get( n ) < fScore.get( min ) ) {
-                min = n;
+    /**
+     * Keep the results of the queries in the given cache and take them
+     * from it when the same query is calculated again in the same
+     * version of the "world". Only {@link #calculateAll()} uses the cache
+     * and only for queries searching the optimal path
+     * 
+     * @param cache cache of the results or <code>null</code> to not use one
+     * @throws IllegalArgumentException if the cache is for another <code>Grid</code>
+     */
+    public void setPathCache( PathCache cache ) {
+        if (cache != null && cache.getGrid() != grid) {
+            throw new IllegalArgumentException("The path cache must be for the same grid");
+        }
+        this.cache = cache;
+    }
+    
+    /**
+     * @return cache of the results or <code>null</code> if none is used
+     */
+    public PathCache getPathCache() {
+        return cache;
+    }
+    
+    /**
+     * Get the state of the current query, which holds the scores
+     * and parent links of the search
+     * 
+     * @return the search state
+     */
+    public SearchContext getSearchContext() {
+        return context;
+    }
+    
+    /**
+     * Choose if the following queries search from both the start and
+     * the goal at the same time, which expands fewer nodes on long paths
+     * 
+     * @param enabled if the search is bidirectional
+     * @see BidirectionalSearchContext
+     */
+    public void setBidirectional( boolean enabled ) {
+        setBidirectional( enabled, false );
+    }
+    
+    /**
+     * Choose if the following queries search from both the start and
+     * the goal at the same time and if both directions run on their
+     * own thread
+     * 
+     * @param enabled if the search is bidirectional
+     * @param parallel if both directions run at the same time
+     * @see BidirectionalSearchContext
+     */
+    public void setBidirectional( boolean enabled, boolean parallel ) {
+        if (!enabled) {
+            if (isBidirectional()) {
+                setSearchContext( new SearchContext( grid ) );
             }
+            return;
+        }
+        if (!isBidirectional()) {
+            setSearchContext( new BidirectionalSearchContext( grid ) );
+        }
+        ((BidirectionalSearchContext) context).setParallel( parallel );
+    }
+    
+    /**
+     * @return if the queries search from both the start and the goal
+     */
+    public boolean isBidirectional() {
+        return context instanceof BidirectionalSearchContext;
+    }
+    
+    /**
+     * Change the search state used by the following queries, allowing
+     * subclasses to use a different way of searching
+     * 
+     * @param context new search state
+     * @throws IllegalArgumentException if the context searches another <code>Grid</code>
+     */
+    protected void setSearchContext( SearchContext context ) {
+        if (context == null || context.getGrid() != grid) {
+            throw new IllegalArgumentException("The search context must search the same grid");
         }
-        return min;
+        context.setHeuristic( heuristic );
+        context.setSearchListener( listener );
+        context.setTimed( timed );
+        this.context = context;
+    }
+    
+    /**
+     * @return the start point of the current query
+     */
+    public Node getStart() {
+        return context.getStart() == -1 ? null : grid.getNode( context.getStart() );
+    }
+    
+    /**
+     * @return the end point of the current query
+     */
+    public Node getGoal() {
+        return context.getGoal() == -1 ? null : grid.getNode( context.getGoal() );
     }
 
     /**
@@ -200,7 +366,7 @@ public class AStar {
      * @return <code>null</code> if the path has not been calculated or is unsolvable
      */
     public Node[] getPath() {
-        return path;
+        return context.getPath();
     }
     
     /**
@@ -210,7 +376,7 @@ public class AStar {
      * @return <code>null</code> if the path has not been calculated
      */
     public Node[] getBestTry() {
-        return bestTry;
+        return context.getBestTry();
     }
     
     /**
@@ -221,7 +387,7 @@ public class AStar {
      * @return 
      */
     public boolean isTested() {
-        return tested;
+        return context.isTested();
     }
     
     /**
@@ -233,6 +399,16 @@ public class AStar {
      * @return 
      */
     public boolean isSolvable() {
-        return solvable;
+        return context.isSolvable();
+    }
+    
+    /**
+     * Check how the search of the current settings ended, like if it
+     * ran out of budget before reaching the end point
+     * 
+     * @return status of the search
+     */
+    public SearchStatus getStatus() {
+        return context.getStatus();
     }
 }
@@ -0,0 +1,413 @@
+package org.nglr.astar;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjDoubleConsumer;
+
+/**
+ * Anytime A* (ARA*) over a {@link Grid}, which finds a path quickly and
+ * keeps improving it while there's time left.<br>
+ * The first path is searched as weighted A* with a large epsilon, then
+ * the epsilon is lowered step by step down to 0, where the path is the
+ * optimal one. Each step reuses the scores of the previous ones and only
+ * expands again the nodes whose scores improved, instead of starting over.
+ * Every found path comes with a bound: its cost is at most the bound times
+ * the optimal cost. The search runs until a deadline and can be continued
+ * by later calls, so it fits in a fixed time budget per tick. Instances are
+ * not thread-safe.
+ *
+ * @author J
+ * @see AStar
+ * @see SearchContext#prepare(int, int, double)
+ */
+public class AnytimeAStar {
+    /** Expansions between checks of the deadline */
+    private static final int DEADLINE_CHECK = 64;
+
+    private final Grid grid;
+    private final int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+    private double initialEpsilon = 2;
+    private double epsilonStep = 0.5;
+    private ObjDoubleConsumer<Node[]> listener;
+
+    private double[] gScore = null;
+    private int[] parents = null;
+    /** Generation in which each node's scores were last written */
+    private int[] stamps = null;
+    private int generation = 0;
+    /** Iteration in which each node was last expanded or put in the inconsistent list */
+    private int[] closed = null;
+    private int[] inconsistent = null;
+    private int iteration = 0;
+    private IndexedMinHeap openSet = null;
+    /** Nodes that improved after being expanded in the current iteration */
+    private int[] incons = new int[16];
+    private int inconsCount;
+
+    private int startIndex = -1, goalIndex = -1;
+    private double epsilon;
+    private double weight;
+    private Node[] path;
+    private double pathCost;
+    private double bound;
+    private boolean tested;
+    private long expanded;
+
+    /**
+     * Instance a new <code>AnytimeAStar</code> to search in the given "world"
+     *
+     * @param grid the "world" to search in
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public AnytimeAStar( Grid grid ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        this.grid = grid;
+    }
+
+    /**
+     * @return the "world" being searched
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Set the epsilon of the first search of the following queries,
+     * 2 by default
+     *
+     * @param epsilon epsilon of the first search
+     * @throws IllegalArgumentException if <code>epsilon</code> is negative or not a number
+     */
+    public void setInitialEpsilon( double epsilon ) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("The epsilon can't be negative");
+        }
+        initialEpsilon = epsilon;
+    }
+
+    /**
+     * @return epsilon of the first search of the queries
+     */
+    public double getInitialEpsilon() {
+        return initialEpsilon;
+    }
+
+    /**
+     * Set how much the epsilon is lowered after each found path,
+     * 0.5 by default
+     *
+     * @param step amount to lower the epsilon by
+     * @throws IllegalArgumentException if <code>step</code> isn't positive
+     */
+    public void setEpsilonStep( double step ) {
+        if (!(step > 0)) {
+            throw new IllegalArgumentException("The epsilon step must be positive");
+        }
+        epsilonStep = step;
+    }
+
+    /**
+     * @return amount the epsilon is lowered by after each found path
+     */
+    public double getEpsilonStep() {
+        return epsilonStep;
+    }
+
+    /**
+     * Set an action to do every time a better path is found, which
+     * receives the path and its bound
+     *
+     * @param listener action to do with the better paths or <code>null</code> for none
+     */
+    public void setListener( ObjDoubleConsumer<Node[]> listener ) {
+        this.listener = listener;
+    }
+
+    /**
+     * Setup a new query between the points at the given dimensional indexes
+     *
+     * @param start dimensional indexes for start position
+     * @param goal dimensional indexes for end position
+     */
+    public void prepare( int[] start, int[] goal ) {
+        prepare( grid.toIndex( start ), grid.toIndex( goal ) );
+    }
+
+    /**
+     * Setup a new query between the nodes at the given indexes of the map
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     */
+    public void prepare( int start, int goal ) {
+        int count = grid.getNodeCount();
+        if (openSet == null || openSet.capacity() != count) {
+            openSet = new IndexedMinHeap( count );
+            gScore = new double[count];
+            parents = new int[count];
+            stamps = new int[count];
+            closed = new int[count];
+            inconsistent = new int[count];
+            generation = 0;
+            iteration = 0;
+        } else {
+            openSet.clear();
+        }
+        generation ++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill( stamps, 0 );
+            generation = 1;
+        }
+        nextIteration();
+        startIndex = start;
+        goalIndex = goal;
+        epsilon = initialEpsilon;
+        weight = 1 + epsilon;
+        path = null;
+        pathCost = Double.POSITIVE_INFINITY;
+        bound = Double.POSITIVE_INFINITY;
+        tested = false;
+        expanded = 0;
+        touch( startIndex );
+        gScore[startIndex] = 0;
+        openSet.add( startIndex, key( startIndex ) );
+    }
+
+    /**
+     * Keep improving the path of the current query for the given time
+     *
+     * @param timeout most time to search for
+     * @param unit unit of the timeout
+     * @return the best path found so far, from the goal back to the
+     * start, or <code>null</code> if none has been found
+     * @throws NullPointerException if no query has been prepared
+     */
+    public Node[] calculate( long timeout, TimeUnit unit ) {
+        return calculateUntil( System.nanoTime() + unit.toNanos( timeout ) );
+    }
+
+    /**
+     * Keep improving the path of the current query until the given
+     * deadline or until the optimal path is found. Later calls continue
+     * where the search stopped
+     *
+     * @param deadline value of {@link System#nanoTime()} to stop at
+     * @return the best path found so far, from the goal back to the
+     * start, or <code>null</code> if none has been found
+     * @throws NullPointerException if no query has been prepared
+     */
+    public Node[] calculateUntil( long deadline ) {
+        while (!tested) {
+            if (!improvePath( deadline )) {
+                break;
+            }
+            publish();
+            if (epsilon == 0 || (openSet.isEmpty() && inconsCount == 0)) {
+                tested = true;
+                bound = path == null ? Double.POSITIVE_INFINITY : 1;
+                break;
+            }
+            epsilon = Math.max( epsilon - epsilonStep, 0 );
+            weight = 1 + epsilon;
+            reopen();
+        }
+        return path;
+    }
+
+    /**
+     * Calculate until the optimal path is found, with no deadline
+     *
+     * @return the optimal path, from the goal back to the start, or
+     * <code>null</code> if the goal can't be reached
+     */
+    public Node[] calculateAll() {
+        return calculateUntil( Long.MAX_VALUE );
+    }
+
+    /**
+     * Expand nodes until no node can lead to a path cheaper than the
+     * current bound allows or until the deadline passes
+     *
+     * @return if the search with the current epsilon is over
+     */
+    private boolean improvePath( long deadline ) {
+        int checks = 0;
+        while (!openSet.isEmpty() && goalScore() > openSet.peekKey()) {
+            if (++checks == DEADLINE_CHECK) {
+                checks = 0;
+                if (System.nanoTime() - deadline >= 0) {
+                    return false;
+                }
+            }
+            int cur = openSet.poll();
+            closed[cur] = iteration;
+            expanded ++;
+            int count = grid.getNeighbors( cur, neighbors );
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (!grid.isPassable( neighbor )) {
+                    continue;
+                }
+                if (stamps[neighbor] != generation) {
+                    touch( neighbor );
+                }
+                double tentative = gScore[cur] + grid.getDistance( cur, neighbor );
+                if (tentative < gScore[neighbor]) {
+                    gScore[neighbor] = tentative;
+                    parents[neighbor] = cur;
+                    if (closed[neighbor] != iteration) {
+                        openSet.add( neighbor, key( neighbor ) );
+                    } else if (inconsistent[neighbor] != iteration) {
+                        // Already expanded, it's expanded again in the next iteration
+                        inconsistent[neighbor] = iteration;
+                        if (inconsCount == incons.length) {
+                            incons = Arrays.copyOf( incons, inconsCount * 2 );
+                        }
+                        incons[inconsCount ++] = neighbor;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep the path to the goal if it's better than the last one and
+     * calculate its bound
+     */
+    private void publish() {
+        double cost = goalScore();
+        if (cost == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        // The optimal cost is at least the lowest unweighted score left
+        double lowest = cost;
+        for (int index : openSet.toArray()) {
+            lowest = Math.min( lowest, gScore[index] + grid.getHeuristics( index, goalIndex ) );
+        }
+        for (int i = 0; i < inconsCount; i++) {
+            int index = incons[i];
+            lowest = Math.min( lowest, gScore[index] + grid.getHeuristics( index, goalIndex ) );
+        }
+        double newBound = Math.min( weight, lowest > 0 ? cost / lowest : 1 );
+        if (cost < pathCost || newBound < bound) {
+            if (cost < pathCost) {
+                path = buildPath();
+                pathCost = cost;
+            }
+            bound = newBound;
+            if (listener != null) {
+                listener.accept( path, bound );
+            }
+        }
+    }
+
+    /**
+     * Put the inconsistent nodes back in the open set and update the
+     * scores of the open set to the new epsilon
+     */
+    private void reopen() {
+        for (int i = 0; i < inconsCount; i++) {
+            openSet.add( incons[i], 0 );
+        }
+        inconsCount = 0;
+        for (int index : openSet.toArray()) {
+            openSet.update( index, key( index ) );
+        }
+        nextIteration();
+    }
+
+    private void nextIteration() {
+        iteration ++;
+        if (iteration == Integer.MAX_VALUE) {
+            Arrays.fill( closed, 0 );
+            Arrays.fill( inconsistent, 0 );
+            iteration = 1;
+        }
+        inconsCount = 0;
+    }
+
+    private double goalScore() {
+        return stamps[goalIndex] == generation ? gScore[goalIndex] : Double.POSITIVE_INFINITY;
+    }
+
+    private double key( int index ) {
+        return gScore[index] + weight * grid.getHeuristics( index, goalIndex );
+    }
+
+    private void touch( int index ) {
+        stamps[index] = generation;
+        gScore[index] = Double.POSITIVE_INFINITY;
+        parents[index] = -1;
+    }
+
+    private Node[] buildPath() {
+        int length = 0;
+        for (int i = goalIndex; i != -1; i = parents[i]) {
+            length ++;
+        }
+        Node[] nodes = new Node[length];
+        length = 0;
+        for (int i = goalIndex; i != -1; i = parents[i]) {
+            nodes[length] = grid.getNode( i );
+            length ++;
+        }
+        return nodes;
+    }
+
+    /**
+     * @return the best path found so far, from the goal back to the
+     * start, or <code>null</code> if none has been found
+     */
+    public Node[] getPath() {
+        return path;
+    }
+
+    /**
+     * @return cost of the best path found so far or positive infinity if none
+     */
+    public double getPathCost() {
+        return pathCost;
+    }
+
+    /**
+     * Get how far from the optimal the best path found so far can be,
+     * its cost is at most this times the optimal cost
+     *
+     * @return bound of the path, 1 if it's optimal, or positive infinity if none has been found
+     */
+    public double getBound() {
+        return bound;
+    }
+
+    /**
+     * @return epsilon of the search being calculated
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @return if the search is over, either with the optimal path or
+     * knowing the goal can't be reached
+     */
+    public boolean isTested() {
+        return tested;
+    }
+
+    /**
+     * @return if a path to the goal has been found
+     */
+    public boolean isSolvable() {
+        return path != null;
+    }
+
+    /**
+     * @return amount of nodes expanded in the current query
+     */
+    public long getExpandedCount() {
+        return expanded;
+    }
+}
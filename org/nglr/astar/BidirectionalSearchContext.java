@@ -0,0 +1,387 @@
+package org.nglr.astar;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SearchContext} that searches forward from the start and
+ * backward from the goal at the same time, which on long paths expands
+ * far fewer nodes than a single search from the start.<br>
+ * The forward search is the state of this context and the backward search
+ * is kept in a second context. Every time one of them finds a cheaper path
+ * to a node the other one has already reached, the combined path becomes
+ * the best known one. The search ends once the lowest score in one of the
+ * open sets isn't lower than the cost of the best known path, as then no
+ * cheaper path can be left. Like the forward search it relies on the
+ * heuristics never overestimating the distance and the "world" having the
+ * same costs in both directions. With an epsilon both directions inflate
+ * their heuristics, and as the lowest scores of the open sets then are at
+ * most <code>1 + epsilon</code> times the optimal cost, stopping on them
+ * keeps the same bound.<br><br>
+ * Optionally both directions can run in parallel on two threads. Each
+ * thread only reads the scores of the other direction to detect where
+ * they meet, but it can read them while the other thread is writing
+ * them, missing a meeting or seeing one with a stale score left by a
+ * previous query. The meetings found that way only decide when the
+ * threads stop: once both are done the calling thread drops them, finds
+ * them again from every node reached by both directions and keeps
+ * searching on its own until no cheaper path can be left, so the result
+ * costs the same as searching both directions one after the other. Sparse
+ * searches always run both directions on the calling thread.
+ *
+ * @author J
+ * @see AStar#setBidirectional(boolean, boolean)
+ */
+public class BidirectionalSearchContext extends SearchContext {
+    private final SearchContext backward;
+    private final Object meetLock = new Object();
+    private volatile double bestCost;
+    private int meeting;
+    private boolean parallel;
+    private Executor executor;
+    private volatile boolean stopped;
+    /** Why the parallel search ran out of budget, <code>null</code> if it didn't */
+    private volatile SearchStatus limit;
+    /** If the nodes each thread reaches are kept, while searching in parallel */
+    private boolean recording;
+    private int[] forwardReached = new int[64], backwardReached = new int[64];
+    private int forwardCount, backwardCount;
+    private boolean forwardTurn;
+
+    /**
+     * Instance a new <code>BidirectionalSearchContext</code> to search
+     * in the given "world"
+     *
+     * @param grid the "world" to search in
+     */
+    public BidirectionalSearchContext( Grid grid ) {
+        super( grid );
+        final BidirectionalSearchContext forward = this;
+        backward = new SearchContext( grid ) {
+            @Override
+            protected void onImproved( int index, double gScore ) {
+                if (forward.recording) {
+                    forward.backwardReached = add( forward.backwardReached, forward.backwardCount ++, index );
+                }
+                forward.meet( index, forward.getGScore( index ), gScore );
+            }
+        };
+        bestCost = Double.POSITIVE_INFINITY;
+        executor = ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Choose if the directions are searched on two threads
+     *
+     * @param parallel if both directions run at the same time
+     */
+    public void setParallel( boolean parallel ) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * @return if both directions run at the same time
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Set where the backward search runs when searching in parallel,
+     * by default it's the common fork-join pool
+     *
+     * @param executor executor for the backward search
+     */
+    public void setExecutor( Executor executor ) {
+        this.executor = executor == null ? ForkJoinPool.commonPool() : executor;
+    }
+
+    /**
+     * @return the search from the goal towards the start
+     */
+    public SearchContext getBackward() {
+        return backward;
+    }
+
+    @Override
+    public void prepare( int start, int goal, double epsilon ) {
+        super.prepare( start, goal, epsilon );
+        backward.prepare( goal, start, epsilon );
+        bestCost = Double.POSITIVE_INFINITY;
+        meeting = -1;
+        stopped = false;
+        forwardTurn = true;
+        // Like the forward search, only reach the goal if it's passable
+        if (goal != start && !getGrid().isPassable( goal )) {
+            finish( null );
+        }
+    }
+
+    @Override
+    public void setHeuristic( Heuristic heuristic ) {
+        super.setHeuristic( heuristic );
+        backward.setHeuristic( heuristic );
+    }
+
+    /**
+     * The listener follows the expansions of both directions, telling
+     * them apart by the context it's given, and is told once when the
+     * search is over. When searching in parallel the expansions of the
+     * backward search are reported from its own thread
+     */
+    @Override
+    public void setSearchListener( SearchListener listener ) {
+        super.setSearchListener( listener );
+        backward.setSearchListener( listener == null ? null : listener::onExpand );
+    }
+
+    @Override
+    public void setTimed( boolean timed ) {
+        super.setTimed( timed );
+        backward.setTimed( timed );
+    }
+
+    /**
+     * @return statistics of both directions added together
+     */
+    @Override
+    public SearchStatistics getStatistics() {
+        return super.getStatistics().plus( backward.getStatistics() );
+    }
+
+    @Override
+    protected void onImproved( int index, double gScore ) {
+        if (recording) {
+            forwardReached = add( forwardReached, forwardCount ++, index );
+        }
+        meet( index, gScore, backward.getGScore( index ) );
+    }
+
+    private static int[] add( int[] list, int size, int value ) {
+        if (size == list.length) {
+            list = Arrays.copyOf( list, size * 2 );
+        }
+        list[size] = value;
+        return list;
+    }
+
+    /**
+     * Keep the cheapest path that goes through a node reached by both
+     * directions
+     */
+    private void meet( int index, double forwardScore, double backwardScore ) {
+        double cost = forwardScore + backwardScore;
+        if (cost < bestCost) {
+            synchronized (meetLock) {
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    meeting = index;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void step() {
+        if (isTested()) {
+            return;
+        }
+        // Expand the direction with the smaller frontier
+        boolean forwardStep = getOpenSetSize() < backward.getOpenSetSize()
+                || (getOpenSetSize() == backward.getOpenSetSize() && forwardTurn);
+        forwardTurn = !forwardTurn;
+        if (forwardStep) {
+            super.step();
+            if (isTested()) {
+                return;
+            }
+        } else {
+            backward.step();
+            if (backward.isTested()) {
+                finishBackward();
+                return;
+            }
+        }
+        checkMeeting();
+    }
+
+    /**
+     * When searching in parallel the expansions of both threads count
+     * against the same budget. Sparse searches grow their state while
+     * searching, so the other thread can't read it safely and both
+     * directions run on the calling thread instead
+     */
+    @Override
+    public Node[] run( SearchBudget budget ) {
+        if (budget == null) {
+            throw new IllegalArgumentException("The \"budget\" can't be null");
+        }
+        if (parallel && !isTested() && !isSparse()) {
+            budget = runParallel( budget );
+        }
+        return super.run( budget );
+    }
+
+    /**
+     * Run each direction in its own thread until one of them can tell
+     * the search is over or the budget runs out
+     *
+     * @param budget limits of the search
+     * @return what is left of the budget
+     */
+    private SearchBudget runParallel( SearchBudget budget ) {
+        final AtomicLong expansions = new AtomicLong();
+        final long begin = System.nanoTime();
+        // Meetings found before, while searching on a single thread
+        double sequentialCost = bestCost;
+        int sequentialMeeting = meeting;
+        limit = null;
+        forwardCount = 0;
+        backwardCount = 0;
+        recording = true;
+        CompletableFuture<Void> task = CompletableFuture.runAsync(() -> {
+            while (!stopped) {
+                if (outOfBudget( budget, expansions, begin )) {
+                    break;
+                }
+                backward.step();
+                if (backward.isTested() || backward.getLowestScore() >= bestCost) {
+                    stopped = true;
+                }
+            }
+        }, executor);
+        while (!stopped) {
+            if (outOfBudget( budget, expansions, begin )) {
+                break;
+            }
+            super.step();
+            if (isTested() || getLowestScore() >= bestCost) {
+                stopped = true;
+            }
+        }
+        task.join();
+        recording = false;
+        // Both threads are done, so the scores can be read safely. The
+        // meetings found while they ran may have used stale scores, so
+        // they're found again from scratch
+        bestCost = sequentialCost;
+        meeting = sequentialMeeting;
+        remeet();
+        if (!isTested()) {
+            if (backward.isTested()) {
+                finishBackward();
+            } else {
+                checkMeeting();
+                if (!isTested() && limit != null) {
+                    stop( limit );
+                }
+            }
+        }
+        if (budget.isUnlimited()) {
+            return budget;
+        }
+        long maxExpansions = budget.getMaxExpansions();
+        long maxNanos = budget.getMaxNanos();
+        return new SearchBudget(
+                maxExpansions == Long.MAX_VALUE ? maxExpansions : Math.max( 0, maxExpansions - expansions.get() ),
+                maxNanos == Long.MAX_VALUE ? maxNanos : Math.max( 0, maxNanos - (System.nanoTime() - begin) ),
+                budget.getToken() );
+    }
+
+    /**
+     * Count an expansion of either thread, stopping both of them once
+     * the budget runs out
+     *
+     * @return if the budget ran out
+     */
+    private boolean outOfBudget( SearchBudget budget, AtomicLong expansions, long begin ) {
+        if (budget.isUnlimited()) {
+            return false;
+        }
+        long count = expansions.getAndIncrement();
+        SearchStatus reason = null;
+        if (count >= budget.getMaxExpansions()) {
+            reason = SearchStatus.EXPANSION_LIMIT;
+        } else if (count % BUDGET_CHECK == 0) {
+            CancellationToken token = budget.getToken();
+            if (token != null && token.isCancelled()) {
+                reason = SearchStatus.CANCELLED;
+            } else if (budget.getMaxNanos() != Long.MAX_VALUE
+                    && System.nanoTime() - begin >= budget.getMaxNanos()) {
+                reason = SearchStatus.TIMEOUT;
+            }
+        }
+        if (reason == null) {
+            return false;
+        }
+        expansions.decrementAndGet();
+        limit = reason;
+        stopped = true;
+        return true;
+    }
+
+    /**
+     * Check again every node reached by both threads, as they may have
+     * missed where they met or seen a meeting with stale scores while
+     * the other one was writing them
+     */
+    private void remeet() {
+        int[] reached = forwardCount < backwardCount ? forwardReached : backwardReached;
+        int count = Math.min( forwardCount, backwardCount );
+        for (int i = 0; i < count; i++) {
+            int index = reached[i];
+            meet( index, getGScore( index ), backward.getGScore( index ) );
+        }
+    }
+
+    /**
+     * Finish if no cheaper path than the best known one can be found
+     */
+    private void checkMeeting() {
+        if (bestCost == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        if (getLowestScore() >= bestCost || backward.getLowestScore() >= bestCost) {
+            finish( joinPaths( meeting ) );
+        }
+    }
+
+    /**
+     * Finish with the result of the backward search which ended on its own
+     */
+    private void finishBackward() {
+        if (backward.isSolvable()) {
+            finish( reverse( backward.getPath() ) );
+        } else {
+            finish( null );
+        }
+    }
+
+    /**
+     * Join the forward path to the node with the backward one from it
+     *
+     * @param index node where the directions meet
+     * @return path from the goal back to the start
+     */
+    private Node[] joinPaths( int index ) {
+        Node[] toStart = getPath( index );
+        Node[] toGoal = backward.getPath( index );
+        Node[] joined = new Node[toStart.length + toGoal.length - 1];
+        for (int i = 0; i < toGoal.length; i++) {
+            joined[i] = toGoal[toGoal.length - 1 - i];
+        }
+        System.arraycopy( toStart, 1, joined, toGoal.length, toStart.length - 1 );
+        return joined;
+    }
+
+    private static Node[] reverse( Node[] nodes ) {
+        Node[] reversed = new Node[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            reversed[i] = nodes[nodes.length - 1 - i];
+        }
+        return reversed;
+    }
+}
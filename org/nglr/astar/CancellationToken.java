@@ -0,0 +1,28 @@
+package org.nglr.astar;
+
+/**
+ * Flag to stop running searches from another thread.<br>
+ * The searches check it every few expansions, so they stop soon after
+ * {@link #cancel()} is called but not right away. A token can be shared
+ * by any amount of searches and can't be reset once cancelled.
+ *
+ * @author J
+ * @see SearchBudget#withToken(CancellationToken)
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Ask the searches using this token to stop
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return if the searches using this token were asked to stop
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
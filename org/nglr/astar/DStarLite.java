@@ -0,0 +1,393 @@
+package org.nglr.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Incremental planner (D* Lite) that keeps its search between queries
+ * over a {@link Grid} whose nodes change their passability.<br>
+ * The search goes from the goal towards the start, so once the path is
+ * found the start can move along it with {@link #moveStart(int)} and,
+ * when nodes change, {@link #update(int...)} only repairs the costs that
+ * depended on them, or {@link #refresh()} does it for the changes logged
+ * by the <code>Grid</code>. Replanning after a change then expands a number of
+ * nodes that depends on how much the change affects the path and not on
+ * the size of the "world", while the found path is as short as the one
+ * {@link AStar} finds. Like <code>AStar</code> it relies on the heuristics
+ * never overestimating the distance. Instances are not thread-safe.
+ *
+ * @author J
+ * @see AStar
+ * @see Grid
+ */
+public class DStarLite {
+    private final Grid grid;
+    private final int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+    private final int[] around = new int[Grid.MAX_NEIGHBORS];
+
+    private double[] gScore = null;
+    /** Lookahead cost of each node, from the best of its neighbors */
+    private double[] rhs = null;
+    /** Generation in which each node's scores were last written */
+    private int[] stamps = null;
+    private int generation = 0;
+    private IndexedMinHeap openSet = null;
+    private int startIndex = -1, goalIndex = -1;
+    /** Start when the keys in the open set were last calculated */
+    private int lastStart;
+    /** How much the keys in the open set are behind since the start moved */
+    private double keyModifier;
+    private int expanded;
+    private Node[] path;
+    /** Version of the "world" the costs are up to date with */
+    private long version;
+
+    /**
+     * Instance a new <code>DStarLite</code> to plan in the given "world"
+     *
+     * @param grid the "world" to plan in
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public DStarLite( Grid grid ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        this.grid = grid;
+    }
+
+    /**
+     * @return the "world" being searched
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Setup a new query between the points at the given dimensional
+     * indexes, dropping the search of the previous one
+     *
+     * @param start dimensional indexes for start position
+     * @param goal dimensional indexes for end position
+     */
+    public void prepare( int[] start, int[] goal ) {
+        prepare( grid.toIndex( start ), grid.toIndex( goal ) );
+    }
+
+    /**
+     * Setup a new query between the nodes at the given indexes of the
+     * map, dropping the search of the previous one
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     */
+    public void prepare( int start, int goal ) {
+        int count = grid.getNodeCount();
+        if (openSet == null || openSet.capacity() != count) {
+            openSet = new IndexedMinHeap( count );
+            gScore = new double[count];
+            rhs = new double[count];
+            stamps = new int[count];
+            generation = 0;
+        } else {
+            openSet.clear();
+        }
+        generation ++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill( stamps, 0 );
+            generation = 1;
+        }
+        startIndex = start;
+        goalIndex = goal;
+        lastStart = start;
+        keyModifier = 0;
+        path = null;
+        version = grid.getVersion();
+        touch( goalIndex );
+        rhs[goalIndex] = 0;
+        openSet.add( goalIndex, grid.getHeuristics( startIndex, goalIndex ), 0 );
+    }
+
+    /**
+     * Move the start of the current query to the node at the given
+     * dimensional indexes, usually the next node of the path
+     *
+     * @param start dimensional indexes for the new start position
+     */
+    public void moveStart( int[] start ) {
+        moveStart( grid.toIndex( start ) );
+    }
+
+    /**
+     * Move the start of the current query to the node at the given
+     * index, usually the next node of the path. The search is kept
+     *
+     * @param start index of the new start node
+     */
+    public void moveStart( int start ) {
+        if (start == startIndex) {
+            return;
+        }
+        startIndex = start;
+        path = null;
+    }
+
+    /**
+     * Tell that the passability or the distances of the nodes at the
+     * given indexes changed, so the costs that depend on them are
+     * repaired by the next {@link #calculateAll()}
+     *
+     * @param nodes indexes of the changed nodes
+     */
+    public void update( int... nodes ) {
+        version = grid.getVersion();
+        followStart();
+        for (int node : nodes) {
+            updateNode( node );
+            int count = grid.getNeighbors( node, around );
+            for (int i = 0; i < count; i++) {
+                updateNode( around[i] );
+            }
+        }
+        path = null;
+    }
+
+    /**
+     * Repair the costs that depend on the nodes whose passability
+     * changed since the costs were last updated, or start the search
+     * over if the changes are no longer known
+     *
+     * @see Grid#getChangesSince(long)
+     */
+    public void refresh() {
+        if (version == grid.getVersion()) {
+            return;
+        }
+        List<DirtyRegion> changes = grid.getChangesSince( version );
+        if (changes == null) {
+            prepare( startIndex, goalIndex );
+            return;
+        }
+        for (DirtyRegion region : changes) {
+            update( region.getNodes() );
+        }
+    }
+
+    /**
+     * Calculate the path from the start to the goal, only expanding the
+     * nodes whose costs aren't up to date
+     *
+     * @return the path from the goal back to the start, or only the
+     * start if the goal can't be reached
+     * @throws NullPointerException if no query has been prepared
+     */
+    public Node[] calculateAll() {
+        if (path != null) {
+            expanded = 0;
+            return path;
+        }
+        computeShortestPath();
+        path = buildPath();
+        return path;
+    }
+
+    /**
+     * Account for the moves of the start since the keys in the open set
+     * were calculated, so they stay lower bounds of the current ones
+     */
+    private void followStart() {
+        if (lastStart != startIndex) {
+            keyModifier += grid.getHeuristics( lastStart, startIndex );
+            lastStart = startIndex;
+        }
+    }
+
+    private void computeShortestPath() {
+        expanded = 0;
+        followStart();
+        reach( startIndex );
+        while (!openSet.isEmpty() && (isBefore( openSet.peekKey(), openSet.peekSecondKey(),
+                key( startIndex ), secondKey( startIndex ) )
+                || rhs[startIndex] != gScore[startIndex])) {
+            int cur = openSet.peek();
+            double oldKey = openSet.peekKey();
+            double oldSecondKey = openSet.peekSecondKey();
+            double newKey = key( cur );
+            double newSecondKey = secondKey( cur );
+            if (isBefore( oldKey, oldSecondKey, newKey, newSecondKey )) {
+                // Queued before the start moved
+                openSet.update( cur, newKey, newSecondKey );
+                continue;
+            }
+            expanded ++;
+            openSet.poll();
+            int count = grid.getNeighbors( cur, neighbors );
+            if (gScore[cur] > rhs[cur]) {
+                gScore[cur] = rhs[cur];
+                for (int i = 0; i < count; i++) {
+                    int neighbor = neighbors[i];
+                    if (neighbor != goalIndex) {
+                        reach( neighbor );
+                        double cost = cost( neighbor, cur ) + gScore[cur];
+                        if (cost < rhs[neighbor]) {
+                            rhs[neighbor] = cost;
+                            queue( neighbor );
+                        }
+                    }
+                }
+            } else {
+                gScore[cur] = Double.POSITIVE_INFINITY;
+                updateNode( cur );
+                for (int i = 0; i < count; i++) {
+                    updateNode( neighbors[i] );
+                }
+            }
+        }
+    }
+
+    /**
+     * Recalculate the lookahead cost of a node from its neighbors and
+     * queue it if it differs from its cost
+     */
+    private void updateNode( int index ) {
+        reach( index );
+        if (index != goalIndex) {
+            double best = Double.POSITIVE_INFINITY;
+            int count = grid.getNeighbors( index, around );
+            for (int i = 0; i < count; i++) {
+                int neighbor = around[i];
+                if (stamps[neighbor] == generation) {
+                    best = Math.min( best, cost( index, neighbor ) + gScore[neighbor] );
+                }
+            }
+            rhs[index] = best;
+        }
+        queue( index );
+    }
+
+    private void queue( int index ) {
+        if (gScore[index] != rhs[index]) {
+            openSet.add( index, key( index ), secondKey( index ) );
+        } else {
+            openSet.remove( index );
+        }
+    }
+
+    /**
+     * Follow the cheapest neighbors from the start to the goal
+     */
+    private Node[] buildPath() {
+        if (gScore[startIndex] == Double.POSITIVE_INFINITY) {
+            return new Node[] { grid.getNode( startIndex ) };
+        }
+        ArrayList<Node> nodes = new ArrayList<>();
+        int cur = startIndex;
+        nodes.add( grid.getNode( cur ) );
+        while (cur != goalIndex) {
+            int next = -1;
+            double best = Double.POSITIVE_INFINITY;
+            int count = grid.getNeighbors( cur, neighbors );
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (stamps[neighbor] == generation) {
+                    double cost = cost( cur, neighbor ) + gScore[neighbor];
+                    if (cost < best) {
+                        best = cost;
+                        next = neighbor;
+                    }
+                }
+            }
+            cur = next;
+            nodes.add( grid.getNode( cur ) );
+        }
+        Node[] result = new Node[nodes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = nodes.get( result.length - 1 - i );
+        }
+        return result;
+    }
+
+    private double cost( int from, int to ) {
+        if (!grid.isPassable( from ) || !grid.isPassable( to )) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return grid.getDistance( from, to );
+    }
+
+    private double key( int index ) {
+        return Math.min( gScore[index], rhs[index] )
+                + grid.getHeuristics( startIndex, index ) + keyModifier;
+    }
+
+    private double secondKey( int index ) {
+        return Math.min( gScore[index], rhs[index] );
+    }
+
+    private static boolean isBefore( double key, double secondKey, double otherKey, double otherSecondKey ) {
+        return key < otherKey || (key == otherKey && secondKey < otherSecondKey);
+    }
+
+    /**
+     * Reset the scores of a node that hasn't been reached in the
+     * current query
+     */
+    private void reach( int index ) {
+        if (stamps[index] != generation) {
+            touch( index );
+        }
+    }
+
+    private void touch( int index ) {
+        stamps[index] = generation;
+        gScore[index] = Double.POSITIVE_INFINITY;
+        rhs[index] = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return the start point of the current query
+     */
+    public Node getStart() {
+        return startIndex == -1 ? null : grid.getNode( startIndex );
+    }
+
+    /**
+     * @return the end point of the current query
+     */
+    public Node getGoal() {
+        return goalIndex == -1 ? null : grid.getNode( goalIndex );
+    }
+
+    /**
+     * @return the path found by the last {@link #calculateAll()} or
+     * <code>null</code> if it has to be calculated again
+     */
+    public Node[] getPath() {
+        return path;
+    }
+
+    /**
+     * @return cost of the path from the start to the goal or positive
+     * infinity if it can't be reached
+     */
+    public double getCost() {
+        return stamps != null && stamps[startIndex] == generation
+                ? gScore[startIndex] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Use after {@link #calculateAll()} to check if the goal can be
+     * reached from the start in the current "world"
+     *
+     * @return if the goal can be reached
+     */
+    public boolean isSolvable() {
+        return getCost() != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return amount of nodes expanded by the last {@link #calculateAll()}
+     */
+    public int getExpandedCount() {
+        return expanded;
+    }
+}
@@ -0,0 +1,92 @@
+package org.nglr.astar;
+
+import java.io.Serializable;
+
+/**
+ * Record of a single change of passability of a {@link Grid}, holding
+ * the nodes that changed and the box around them.<br>
+ * All the nodes of a change were set to the same passability, so caches
+ * can tell if the change only blocked nodes, which can't make any path
+ * through other nodes cheaper, or if it opened some.
+ *
+ * @author J
+ * @see Grid#getChangesSince(long)
+ */
+public class DirtyRegion implements Serializable {
+    private final long version;
+    private final int[] min;
+    private final int[] max;
+    private final boolean passable;
+    private final int[] nodes;
+
+    /**
+     * Instance a new record of a change
+     *
+     * @param version version of the "world" after the change
+     * @param min lowest dimensional indexes of the changed nodes
+     * @param max highest dimensional indexes of the changed nodes
+     * @param passable passability the nodes were set to
+     * @param nodes indexes of the changed nodes
+     */
+    public DirtyRegion( long version, int[] min, int[] max, boolean passable, int[] nodes ) {
+        this.version = version;
+        this.min = min.clone();
+        this.max = max.clone();
+        this.passable = passable;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return version of the "world" after the change
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return lowest dimensional indexes of the changed nodes
+     */
+    public int[] getMin() {
+        return min.clone();
+    }
+
+    /**
+     * @return highest dimensional indexes of the changed nodes
+     */
+    public int[] getMax() {
+        return max.clone();
+    }
+
+    /**
+     * @return passability the nodes were set to
+     */
+    public boolean isPassable() {
+        return passable;
+    }
+
+    /**
+     * Get the indexes of the nodes whose passability changed, the
+     * array is shared and must not be modified
+     *
+     * @return indexes of the changed nodes
+     */
+    public int[] getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Check if the given dimensional indexes are inside of the box
+     * around the changed nodes
+     *
+     * @param dimIndexes dimensional indexes
+     * @return if the position is inside of the box
+     */
+    public boolean contains( int... dimIndexes ) {
+        for (int d = 0; d < min.length; d++) {
+            if (dimIndexes[d] < min[d] || dimIndexes[d] > max[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
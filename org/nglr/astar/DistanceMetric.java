@@ -0,0 +1,160 @@
+package org.nglr.astar;
+
+/**
+ * Ways of measuring the distance between two points, with kernels for
+ * 2 and 3 dimensions that take the differences of the coordinates so
+ * they don't allocate anything.<br>
+ * <code>EUCLIDEAN</code> is the straight-line length, <code>MANHATTAN</code>
+ * the length moving only along the axes, <code>OCTILE</code> the length
+ * moving along the axes and diagonals where a diagonal step costs its
+ * straight-line length, and <code>CHEBYSHEV</code> the length where any
+ * step to a neighbor costs the same. As heuristics, <code>MANHATTAN</code>
+ * is the exact cost of a "world" without diagonals and <code>OCTILE</code>
+ * the exact cost of an open "world" with diagonals, so they're tighter
+ * than <code>EUCLIDEAN</code> for those.
+ *
+ * @author J
+ * @see Grid#getDistanceMetric()
+ * @see Grid#setHeuristicMetric(DistanceMetric)
+ */
+public enum DistanceMetric {
+    EUCLIDEAN {
+        @Override
+        public double distance( double dx, double dy ) {
+            return Math.sqrt( dx * dx + dy * dy );
+        }
+
+        @Override
+        public double distance( double dx, double dy, double dz ) {
+            return Math.sqrt( dx * dx + dy * dy + dz * dz );
+        }
+
+        @Override
+        public double distance( double[] p, double[] q ) {
+            double sum = 0;
+            for (int i = 0; i < p.length; i++) {
+                double d = q[i] - p[i];
+                sum += d * d;
+            }
+            return Math.sqrt( sum );
+        }
+    },
+    MANHATTAN {
+        @Override
+        public double distance( double dx, double dy ) {
+            return Math.abs( dx ) + Math.abs( dy );
+        }
+
+        @Override
+        public double distance( double dx, double dy, double dz ) {
+            return Math.abs( dx ) + Math.abs( dy ) + Math.abs( dz );
+        }
+
+        @Override
+        public double distance( double[] p, double[] q ) {
+            double sum = 0;
+            for (int i = 0; i < p.length; i++) {
+                sum += Math.abs( q[i] - p[i] );
+            }
+            return sum;
+        }
+    },
+    OCTILE {
+        @Override
+        public double distance( double dx, double dy ) {
+            dx = Math.abs( dx );
+            dy = Math.abs( dy );
+            return dx > dy ? dx + SQRT2_MINUS_1 * dy : dy + SQRT2_MINUS_1 * dx;
+        }
+
+        @Override
+        public double distance( double dx, double dy, double dz ) {
+            dx = Math.abs( dx );
+            dy = Math.abs( dy );
+            dz = Math.abs( dz );
+            double max = Math.max( dx, Math.max( dy, dz ) );
+            double min = Math.min( dx, Math.min( dy, dz ) );
+            double mid = dx + dy + dz - max - min;
+            return max + SQRT2_MINUS_1 * mid + SQRT3_MINUS_SQRT2 * min;
+        }
+
+        /**
+         * The k-th largest difference is weighted by
+         * <code>sqrt(k) - sqrt(k - 1)</code>, found by picking the
+         * largest of the ones not picked yet
+         */
+        @Override
+        public double distance( double[] p, double[] q ) {
+            if (p.length > Long.SIZE) {
+                throw new IllegalArgumentException("Points can't have more than " + Long.SIZE + " dimensions");
+            }
+            double sum = 0;
+            long picked = 0;
+            for (int k = 1; k <= p.length; k++) {
+                int largest = -1;
+                double most = -1;
+                for (int i = 0; i < p.length; i++) {
+                    double d = Math.abs( q[i] - p[i] );
+                    if ((picked & (1L << i)) == 0 && d > most) {
+                        most = d;
+                        largest = i;
+                    }
+                }
+                picked |= 1L << largest;
+                sum += (Math.sqrt( k ) - Math.sqrt( k - 1 )) * most;
+            }
+            return sum;
+        }
+    },
+    CHEBYSHEV {
+        @Override
+        public double distance( double dx, double dy ) {
+            return Math.max( Math.abs( dx ), Math.abs( dy ) );
+        }
+
+        @Override
+        public double distance( double dx, double dy, double dz ) {
+            return Math.max( Math.abs( dx ), Math.max( Math.abs( dy ), Math.abs( dz ) ) );
+        }
+
+        @Override
+        public double distance( double[] p, double[] q ) {
+            double max = 0;
+            for (int i = 0; i < p.length; i++) {
+                max = Math.max( max, Math.abs( q[i] - p[i] ) );
+            }
+            return max;
+        }
+    };
+
+    private static final double SQRT2_MINUS_1 = Math.sqrt( 2 ) - 1;
+    private static final double SQRT3_MINUS_SQRT2 = Math.sqrt( 3 ) - Math.sqrt( 2 );
+
+    /**
+     * Distance between two points of 2 dimensions
+     *
+     * @param dx difference of the X-positions
+     * @param dy difference of the Y-positions
+     * @return distance between the points
+     */
+    public abstract double distance( double dx, double dy );
+
+    /**
+     * Distance between two points of 3 dimensions
+     *
+     * @param dx difference of the X-positions
+     * @param dy difference of the Y-positions
+     * @param dz difference of the Z-positions
+     * @return distance between the points
+     */
+    public abstract double distance( double dx, double dy, double dz );
+
+    /**
+     * Distance between two points of any amount of dimensions
+     *
+     * @param p first point
+     * @param q second point, of the same dimensions
+     * @return distance between the points
+     */
+    public abstract double distance( double[] p, double[] q );
+}
@@ -0,0 +1,305 @@
+package org.nglr.astar;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.IntStream;
+
+/**
+ * Distances from every node of a {@link Grid} to a single goal, with the
+ * next node to move to from each of them.<br>
+ * The field is built once with a search from the goal that spreads over
+ * every reachable node, after which any amount of agents heading to the
+ * goal read their next step in constant time instead of each one running
+ * its own query. Following the next nodes from anywhere gives a path as
+ * short as the one {@link AStar} finds. The field can be built in
+ * parallel as a wavefront, where every node of the front is relaxed at
+ * the same time and the nodes that improved form the next front.<br>
+ * The field is for the version of the "world" it was built in, once
+ * {@link #isStale()} it has to be built again. Instances are immutable
+ * once built and can be read by any amount of threads.
+ *
+ * @author J
+ * @see Grid
+ */
+public class FlowField {
+    /** Smallest front the wavefront relaxes in parallel */
+    private static final int PARALLEL_FRONT = 1024;
+
+    private final Grid grid;
+    private final int goalIndex;
+    private final long version;
+    private final float[] distances;
+    private final int[] next;
+
+    /**
+     * Build the field towards the point at the given dimensional indexes
+     *
+     * @param grid the "world" to build the field in
+     * @param goal dimensional indexes for the goal position
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public FlowField( Grid grid, int[] goal ) {
+        this( grid, grid == null ? -1 : grid.toIndex( goal ), false );
+    }
+
+    /**
+     * Build the field towards the node at the given index of the map
+     *
+     * @param grid the "world" to build the field in
+     * @param goal index of the goal node
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public FlowField( Grid grid, int goal ) {
+        this( grid, goal, false );
+    }
+
+    /**
+     * Build the field towards the node at the given index of the map,
+     * optionally spreading it as a parallel wavefront, which is worth
+     * it on large "worlds" with several processors
+     *
+     * @param grid the "world" to build the field in
+     * @param goal index of the goal node
+     * @param parallel if the field is built as a parallel wavefront
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public FlowField( Grid grid, int goal, boolean parallel ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        this.grid = grid;
+        goalIndex = goal;
+        version = grid.getVersion();
+        int count = grid.getNodeCount();
+        distances = new float[count];
+        next = new int[count];
+        Arrays.fill( distances, Float.POSITIVE_INFINITY );
+        Arrays.fill( next, -1 );
+        if (grid.isPassable( goal )) {
+            if (parallel) {
+                spreadParallel();
+            } else {
+                spread();
+            }
+        }
+    }
+
+    /**
+     * Search from the goal until every reachable node is expanded,
+     * pointing each node to the one it was reached from
+     */
+    private void spread() {
+        IndexedMinHeap openSet = new IndexedMinHeap( distances.length );
+        double[] gScore = new double[distances.length];
+        Arrays.fill( gScore, Double.POSITIVE_INFINITY );
+        int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+        gScore[goalIndex] = 0;
+        openSet.add( goalIndex, 0 );
+        while (!openSet.isEmpty()) {
+            int cur = openSet.poll();
+            distances[cur] = (float) gScore[cur];
+            int count = grid.getNeighbors( cur, neighbors );
+            for (int i = 0; i < count; i++) {
+                int neighbor = neighbors[i];
+                if (!grid.isPassable( neighbor )) {
+                    continue;
+                }
+                // Moving from the neighbor to the node being expanded
+                double tentative = gScore[cur] + grid.getDistance( neighbor, cur );
+                if (tentative < gScore[neighbor]) {
+                    gScore[neighbor] = tentative;
+                    next[neighbor] = cur;
+                    openSet.add( neighbor, tentative );
+                }
+            }
+        }
+    }
+
+    /**
+     * Relax every node of the front at the same time until no node
+     * improves, then point each node to its cheapest neighbor. The
+     * distances are kept as the bits of doubles, whose order matches the
+     * one of the longs for positive values, so they can be lowered with
+     * compare and set. They are added up in double like {@link #spread()}
+     * does and rounded to float once at the end, so both give the same
+     * distances
+     */
+    private void spreadParallel() {
+        final int count = distances.length;
+        final AtomicLongArray bits = new AtomicLongArray( count );
+        final long infinity = Double.doubleToLongBits( Double.POSITIVE_INFINITY );
+        for (int i = 0; i < count; i++) {
+            bits.set( i, infinity );
+        }
+        bits.set( goalIndex, Double.doubleToLongBits( 0 ) );
+        // Round in which each node was last put in the next front
+        final AtomicIntegerArray queued = new AtomicIntegerArray( count );
+        final ThreadLocal<int[]> buffers = ThreadLocal.withInitial( () -> new int[Grid.MAX_NEIGHBORS] );
+        int[] front = new int[count];
+        int[] nextFront = new int[count];
+        front[0] = goalIndex;
+        int frontSize = 1;
+        int round = 0;
+        while (frontSize > 0) {
+            final int currentRound = ++ round;
+            final int[] source = front;
+            final int[] target = nextFront;
+            final AtomicInteger targetSize = new AtomicInteger();
+            IntStream range = IntStream.range( 0, frontSize );
+            if (frontSize >= PARALLEL_FRONT) {
+                range = range.parallel();
+            }
+            range.forEach( k -> {
+                int cur = source[k];
+                int[] neighbors = buffers.get();
+                double distance = Double.longBitsToDouble( bits.get( cur ) );
+                int n = grid.getNeighbors( cur, neighbors );
+                for (int i = 0; i < n; i++) {
+                    int neighbor = neighbors[i];
+                    if (!grid.isPassable( neighbor )) {
+                        continue;
+                    }
+                    double tentative = distance + grid.getDistance( neighbor, cur );
+                    long old = bits.get( neighbor );
+                    while (tentative < Double.longBitsToDouble( old )) {
+                        if (bits.compareAndSet( neighbor, old, Double.doubleToLongBits( tentative ) )) {
+                            if (queued.getAndSet( neighbor, currentRound ) != currentRound) {
+                                target[targetSize.getAndIncrement()] = neighbor;
+                            }
+                            break;
+                        }
+                        old = bits.get( neighbor );
+                    }
+                }
+            });
+            front = target;
+            nextFront = source;
+            frontSize = targetSize.get();
+        }
+        final double[] exact = new double[count];
+        for (int i = 0; i < count; i++) {
+            exact[i] = Double.longBitsToDouble( bits.get( i ) );
+            distances[i] = (float) exact[i];
+        }
+        IntStream.range( 0, count ).parallel().forEach( i -> {
+            if (i == goalIndex || exact[i] == Double.POSITIVE_INFINITY) {
+                return;
+            }
+            int[] neighbors = buffers.get();
+            int best = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            int n = grid.getNeighbors( i, neighbors );
+            for (int j = 0; j < n; j++) {
+                int neighbor = neighbors[j];
+                // Only downhill, so following the next nodes can't loop
+                if (exact[neighbor] < exact[i] && grid.isPassable( neighbor )) {
+                    double cost = exact[neighbor] + grid.getDistance( i, neighbor );
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        best = neighbor;
+                    }
+                }
+            }
+            next[i] = best;
+        });
+    }
+
+    /**
+     * Get the node to move to from the node at the given index to get
+     * closer to the goal
+     *
+     * @param index node index
+     * @return index of the next node or -1 if the node is the goal or
+     * can't reach it
+     */
+    public int getNext( int index ) {
+        return next[index];
+    }
+
+    /**
+     * Get the node to move to from the given node to get closer to the goal
+     *
+     * @param node node of the "world" of the field
+     * @return the next node or <code>null</code> if the node is the goal
+     * or can't reach it
+     */
+    public Node getNext( Node node ) {
+        int index = next[node.getIndex()];
+        return index == -1 ? null : grid.getNode( index );
+    }
+
+    /**
+     * Get the cost of the path from the node at the given index to the goal
+     *
+     * @param index node index
+     * @return cost or positive infinity if the goal can't be reached
+     */
+    public double getDistance( int index ) {
+        return distances[index];
+    }
+
+    /**
+     * @param index node index
+     * @return if the goal can be reached from the node at the given index
+     */
+    public boolean isReachable( int index ) {
+        return distances[index] != Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Build the path from the node at the given index by following the
+     * next nodes. Like {@link AStar#calculateAll()} the path goes from
+     * the goal back to the start
+     *
+     * @param start index of the start node
+     * @return path from the goal back to the start or <code>null</code>
+     * if the goal can't be reached
+     */
+    public Node[] getPath( int start ) {
+        if (!isReachable( start )) {
+            return null;
+        }
+        int length = 1;
+        for (int i = start; i != goalIndex; i = next[i]) {
+            length ++;
+        }
+        Node[] nodes = new Node[length];
+        int i = start;
+        for (int k = length - 1; k >= 0; k--) {
+            nodes[k] = grid.getNode( i );
+            i = next[i];
+        }
+        return nodes;
+    }
+
+    /**
+     * @return index of the goal node
+     */
+    public int getGoal() {
+        return goalIndex;
+    }
+
+    /**
+     * @return the "world" of the field
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return version of the "world" the field was built in
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return if the "world" changed since the field was built, so the
+     * field may lead through blocked nodes or miss shorter paths
+     */
+    public boolean isStale() {
+        return version != grid.getVersion();
+    }
+}
@@ -1,7 +1,13 @@
 package org.nglr.astar;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 import org.nglr.astar.twodim.Grid2D;
 import org.nglr.astar.twodim.Grid2DNoDiagonal;
 
@@ -18,6 +24,19 @@ import org.nglr.astar.twodim.Grid2DNoDiagonal;
  */
 public abstract class Grid<E extends Node> implements Serializable {
 
+    /**
+     * Most neighbors a single node can have, useful to size
+     * the buffers passed to {@link #getNeighbors(int, int[])}
+     */
+    public static final int MAX_NEIGHBORS = Node.Neighborings.values().length;
+
+    /**
+     * Fewest nodes a "world" must have for its nodes and neighbors to be
+     * generated in parallel, below it splitting the work costs more than
+     * it saves
+     */
+    public static final int PARALLEL_BUILD_NODES = 1 << 16;
+
     /**
      * <code>Node[]</code> that represents the "world"
      */
@@ -28,6 +47,15 @@ public abstract class Grid<E extends Node> implements Serializable {
     protected Node goal;
     /** Way to convert Node indexes to greater positions  */
     protected NodeIndexPosConverter nipc;
+    /** Times the passability of the "world" has changed */
+    private volatile long version;
+    /** Latest changes of passability, oldest first, guarded by itself */
+    private final ArrayDeque<DirtyRegion> changes = new ArrayDeque<>();
+    /** Every change after this version is in the log of changes, guarded by <code>changes</code> */
+    private long loggedSince;
+    private int changeLogSize = 64;
+    /** Metric of the heuristics, <code>null</code> for the distance metric */
+    private DistanceMetric heuristicMetric;
     
     /**
      * @return nipc in use
@@ -76,8 +104,8 @@ public abstract class Grid<E extends Node> implements Serializable {
      * @param j end node's index
      */
     public void setup(int i, int j) {
-        start = map[i];
-        goal = map[j];
+        start = getNode( i );
+        goal = getNode( j );
     }
     
     /**
@@ -96,18 +124,24 @@ public abstract class Grid<E extends Node> implements Serializable {
     }
     
     /**
-     * If a start is set then it returns it else it returns null
+     * Get the start given to {@link #setup(int, int)}. <code>AStar</code>
+     * keeps the start of each query in its {@link SearchContext} and
+     * doesn't set it here, so this is null unless it was set by hand,
+     * use {@link AStar#getStart()} for the start of a search
      * 
-     * @return 
+     * @return the start or null if none was set
      */
     public E getStart() {
         return (E) start;
     }
     
     /**
-     * If a goal is set then it returns it else it returns null
+     * Get the goal given to {@link #setup(int, int)}. <code>AStar</code>
+     * keeps the goal of each query in its {@link SearchContext} and
+     * doesn't set it here, so this is null unless it was set by hand,
+     * use {@link AStar#getGoal()} for the goal of a search
      * 
-     * @return the goal
+     * @return the goal or null if none was set
      */
     public E getGoal() {
         return (E) goal;
@@ -116,11 +150,355 @@ public abstract class Grid<E extends Node> implements Serializable {
     /**
      * Generates the map and the nodes' neighbors by calling 
      * the function <code>generateMap()</code> followed by
-     * <code>generateNeighbors()</code>
+     * <code>indexNodes()</code> and <code>generateNeighbors()</code>,
+     * recording an <code>org.nglr.astar.GridBuild</code> Flight Recorder
+     * event when it's enabled
      */
     protected final void generateGrid() {
+        GridBuildEvent event = new GridBuildEvent();
+        event.begin();
         generateMap();
+        indexNodes();
         generateNeighbors();
+        event.end();
+        if (event.shouldCommit()) {
+            event.set( this );
+            event.commit();
+        }
+    }
+    
+    /**
+     * Run the given action for each slice of the "world", like its rows
+     * or slabs, splitting them among the threads of the common fork-join
+     * pool when the "world" has at least {@link #PARALLEL_BUILD_NODES}
+     * nodes. Each slice must only write its own nodes, so the result is
+     * the same as building them one after the other
+     *
+     * @param slices amount of slices
+     * @param action builds the slice with the given number
+     */
+    protected void forEachSlice( int slices, IntConsumer action ) {
+        IntStream range = IntStream.range( 0, slices );
+        if (map.length >= PARALLEL_BUILD_NODES) {
+            range = range.parallel();
+        }
+        range.forEach( action );
+    }
+
+    /**
+     * Get the version of the "world", which changes every time the
+     * passability of its nodes changes, so results calculated for
+     * one version can be told apart from the ones of another
+     * 
+     * @return current version
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Mark the "world" as changed in a way the log of changes can't
+     * describe, like a change of the distances between nodes. Changes
+     * of passability are marked by {@link #setPassable(int, boolean)}
+     */
+    protected void changed() {
+        long next = version + 1;
+        synchronized (changes) {
+            changes.clear();
+            loggedSince = next;
+        }
+        version = next;
+    }
+    
+    /**
+     * Set if the node at the given index can be walked through,
+     * changing the version of the "world" if it wasn't already
+     * 
+     * @param index node index
+     * @param passable if the node is passable
+     * @return if the passability of the node changed
+     */
+    public boolean setPassable(int index, boolean passable) {
+        if (isPassable( index ) == passable) {
+            return false;
+        }
+        storePassable( index, passable );
+        int[] dims = toDimIndexes( index );
+        record( dims, dims, passable, new int[] { index } );
+        return true;
+    }
+    
+    /**
+     * Set if the nodes inside of a box can be walked through, changing
+     * the version of the "world" once for all of them
+     * 
+     * @param corner lowest dimensional indexes of the box
+     * @param extent amount of nodes of the box in each dimension
+     * @param passable if the nodes are passable
+     * @return amount of nodes whose passability changed
+     */
+    public int setPassable(int[] corner, int[] extent, boolean passable) {
+        int[] size = getSize();
+        int[] from = new int[size.length];
+        int[] to = new int[size.length];
+        for (int d = 0; d < size.length; d++) {
+            from[d] = Math.max( corner[d], 0 );
+            to[d] = Math.min( corner[d] + extent[d], size[d] );
+            if (from[d] >= to[d]) {
+                return 0;
+            }
+        }
+        int[] changed = new int[16];
+        int count = 0;
+        int[] min = null;
+        int[] max = null;
+        int[] dims = from.clone();
+        while (true) {
+            int index = toIndex( dims );
+            if (isPassable( index ) != passable) {
+                storePassable( index, passable );
+                if (count == changed.length) {
+                    changed = Arrays.copyOf( changed, count * 2 );
+                }
+                changed[count ++] = index;
+                if (min == null) {
+                    min = dims.clone();
+                    max = dims.clone();
+                }
+                for (int d = 0; d < dims.length; d++) {
+                    min[d] = Math.min( min[d], dims[d] );
+                    max[d] = Math.max( max[d], dims[d] );
+                }
+            }
+            int d = 0;
+            while (d < dims.length) {
+                dims[d] ++;
+                if (dims[d] < to[d]) {
+                    break;
+                }
+                dims[d] = from[d];
+                d ++;
+            }
+            if (d == dims.length) {
+                break;
+            }
+        }
+        if (count > 0) {
+            record( min, max, passable, Arrays.copyOf( changed, count ) );
+        }
+        return count;
+    }
+    
+    /**
+     * Store the passability of the node at the given index, without
+     * marking the "world" as changed. By default it's set in the node
+     * 
+     * @param index node index
+     * @param passable if the node is passable
+     */
+    protected void storePassable(int index, boolean passable) {
+        map[index].setPassable( passable );
+    }
+    
+    /**
+     * Log the change and then change the version, so whoever reads the
+     * new version from another thread also finds the change in the log
+     */
+    private void record(int[] min, int[] max, boolean passable, int[] nodes) {
+        long next = version + 1;
+        DirtyRegion region = new DirtyRegion( next, min, max, passable, nodes );
+        synchronized (changes) {
+            changes.addLast( region );
+            trimChanges();
+        }
+        version = next;
+    }
+    
+    /**
+     * Drop the oldest changes over the size of the log, holding the lock
+     * of the log
+     */
+    private void trimChanges() {
+        while (changes.size() > changeLogSize) {
+            loggedSince = changes.removeFirst().getVersion();
+        }
+    }
+    
+    /**
+     * Get the changes of passability after the given version, oldest
+     * first, so caches can only drop what the changes affect. It can be
+     * called from other threads while the "world" changes: every change
+     * up to the last version read with {@link #getVersion()} is in the
+     * result, which can also hold newer ones
+     * 
+     * @param version version of the "world" to get the changes after
+     * @return the changes or <code>null</code> if they're no longer
+     * known, in which case anything could have changed
+     */
+    public List<DirtyRegion> getChangesSince(long version) {
+        synchronized (changes) {
+            if (version < loggedSince) {
+                return null;
+            }
+            List<DirtyRegion> result = new ArrayList<>();
+            for (DirtyRegion region : changes) {
+                if (region.getVersion() > version) {
+                    result.add( region );
+                }
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Set how many changes are kept to be returned by
+     * {@link #getChangesSince(long)}, 64 by default
+     * 
+     * @param size most changes to keep
+     */
+    public void setChangeLogSize(int size) {
+        synchronized (changes) {
+            changeLogSize = Math.max( size, 0 );
+            trimChanges();
+        }
+    }
+    
+    /**
+     * @return most changes kept to be returned by {@link #getChangesSince(long)}
+     */
+    public int getChangeLogSize() {
+        return changeLogSize;
+    }
+    
+    /**
+     * Give every node in the map its index in the map so
+     * the nodes can be numbered densely from 0 to
+     * <code>getNodeCount() - 1</code>
+     */
+    protected void indexNodes() {
+        for (int i = 0; i < map.length; i++) {
+            map[i].setIndex( i );
+        }
+    }
+    
+    /**
+     * @return amount of nodes in the "world", every node index is lower than it
+     */
+    public int getNodeCount() {
+        return map.length;
+    }
+    
+    /**
+     * Get the node that's at the given index of the map
+     * 
+     * @param index node index
+     * @return node at the index
+     */
+    public Node getNode(int index) {
+        return map[index];
+    }
+    
+    /**
+     * Check if the node at the given index can be walked through
+     * 
+     * @param index node index
+     * @return if the node is passable
+     */
+    public boolean isPassable(int index) {
+        return map[index].isPassable();
+    }
+    
+    /**
+     * Write the indexes of the neighbors of the node at the given index
+     * into <code>out</code>, which should be able to hold at least
+     * {@link #MAX_NEIGHBORS} values
+     * 
+     * @param index node index
+     * @param out array to write the neighbor indexes to
+     * @return amount of neighbors written
+     */
+    public int getNeighbors(int index, int[] out) {
+        int count = 0;
+        for (Node n : map[index].getNeighbors()) {
+            if (n != null) {
+                out[count] = n.getIndex();
+                count ++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the distance between the nodes at the given indexes
+     * 
+     * @param p index of the node to find distance from
+     * @param q index of the node to find distance to
+     * @return distance between both nodes
+     */
+    public double getDistance(int p, int q) {
+        return getDistance( map[p], map[q] );
+    }
+    
+    /**
+     * Calculates the heuristics of the node at the given index
+     * towards the node at the index <code>goal</code>
+     * 
+     * @param index node index
+     * @param goal goal node index
+     * @return heuristics of the node
+     */
+    public double getHeuristics(int index, int goal) {
+        return getHeuristics( map[index], map[goal] );
+    }
+    
+    /**
+     * Get the metric of the cost of moving between nodes, which
+     * depends on the neighbors of the nodes. Euclidean by default
+     * 
+     * @return metric of the distances
+     */
+    public DistanceMetric getDistanceMetric() {
+        return DistanceMetric.EUCLIDEAN;
+    }
+    
+    /**
+     * Set the metric of the heuristics, which must never be higher than
+     * the distance metric moving through the neighbors for the searches
+     * to find the optimal paths. <code>OCTILE</code> is tighter than
+     * <code>EUCLIDEAN</code> for "worlds" with diagonals
+     * 
+     * @param metric metric of the heuristics or <code>null</code> to use
+     * the distance metric
+     */
+    public void setHeuristicMetric(DistanceMetric metric) {
+        heuristicMetric = metric;
+    }
+    
+    /**
+     * @return metric of the heuristics
+     */
+    public DistanceMetric getHeuristicMetric() {
+        return heuristicMetric == null ? getDistanceMetric() : heuristicMetric;
+    }
+    
+    /**
+     * Get the dimensional indexes of the node at the given index,
+     * the inverse of {@link #toIndex(int...)}
+     * 
+     * @param index node index
+     * @return dimensional indexes
+     */
+    public abstract int[] toDimIndexes(int index);
+    
+    /**
+     * Get the index in the map of the node at the given
+     * dimensional indexes
+     * 
+     * @param dimIndexes dimensional indexes
+     * @return node index
+     */
+    public int toIndex(int... dimIndexes) {
+        return getIndex( dimIndexes );
     }
     
     /**
@@ -165,12 +543,32 @@ public abstract class Grid<E extends Node> implements Serializable {
      * Calculates and returns the heuristics for the given
      * <code>Node</code><br>
      * Heuristics is gotten from getting the distance of the
-     * given Node to the goal
+     * given Node to the goal set with {@link #setup(int, int)}
+     * 
+     * @param node <code>Node</code> to calculate heuristics of
+     * @return Heuristics of given <code>Node</code> instance
+     * @throws IllegalStateException if no goal was set
+     * @deprecated <code>AStar</code> no longer sets the goal of the
+     * <code>Grid</code>, use {@link #getHeuristics(Node, Node)} or
+     * {@link #getHeuristics(int, int)} with the goal of the search
+     */
+    @Deprecated
+    public double getHeuristics(Node node) {
+        if (goal == null) {
+            throw new IllegalStateException("No goal was set, use getHeuristics(node, goal)");
+        }
+        return getHeuristics( node, goal );
+    }
+    /**
+     * Calculates and returns the heuristics for the given
+     * <code>Node</code> towards the given goal, without depending
+     * on the goal set in this <code>Grid</code>
      * 
      * @param node <code>Node</code> to calculate heuristics of
+     * @param goal <code>Node</code> that wants to be reached
      * @return Heuristics of given <code>Node</code> instance
      */
-    public abstract double getHeuristics(Node node);
+    public abstract double getHeuristics(Node node, Node goal);
     
     /**
      * Get the 1 dimensional index of the dimensional indexes
@@ -250,22 +648,6 @@ public abstract class Grid<E extends Node> implements Serializable {
         }
     }
     
-    /**
-     * Add all the given values together
-     * 
-     * @param values values to add
-     * @return sum of values
-     */
-    private static double add(double ...values) {
-        if (values == null) {
-            return 0;
-        }
-        double sum = 0;
-        for(double val : values) {
-            sum += val;
-        }
-        return sum;
-    }
     /**
      * Formula for calculating the eucledian distance between two points.
      * Figuring the distance to the second point from the first point
@@ -278,11 +660,7 @@ public abstract class Grid<E extends Node> implements Serializable {
     public static double EucledianDist(double[] p, double[] q) {
         if (p.length == 0 || q.length == 0) throw new IllegalArgumentException("Points can't be of 0 dimensions");
         if (p.length != q.length) throw new IllegalArgumentException("Points can't be of different dimensions");
-        double[] difs = new double[p.length];
-        for(int i = 0; i < p.length; i++) {
-            difs[i] = Math.pow( q[i] - p[i], 2);
-        }
-        return Math.sqrt( add(difs) );
+        return DistanceMetric.EUCLIDEAN.distance( p, q );
     }
     /**
      * Formula for calculating the manhattan distance between two points.
@@ -296,10 +674,6 @@ public abstract class Grid<E extends Node> implements Serializable {
      */
     public static double ManhattanDist(double[] p, double[] q) {
         if (p.length != q.length) throw new IllegalArgumentException("Points can't be of different dimensions");
-        double[] difs = new double[p.length];
-        for(int i = 0; i < p.length; i++) {
-            difs[i] = Math.abs( p[i] - q[i]);
-        }
-        return add(difs);
+        return DistanceMetric.MANHATTAN.distance( p, q );
     }
 }
@@ -0,0 +1,46 @@
+package org.nglr.astar;
+
+import java.util.Arrays;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of the generation of the nodes and neighbors of
+ * a {@link Grid}.<br>
+ * Disabled by default, enable it in the recording settings with
+ * <code>org.nglr.astar.GridBuild#enabled=true</code>.
+ *
+ * @author J
+ * @see PathQueryEvent
+ */
+@Name("org.nglr.astar.GridBuild")
+@Label("Grid Build")
+@Category("Pathfinding")
+@Description("Generation of the nodes and neighbors of a \"world\"")
+@Enabled(false)
+@StackTrace(false)
+final class GridBuildEvent extends Event {
+    @Label("Grid")
+    Class<?> gridClass;
+
+    @Label("Size")
+    @Description("Amount of nodes along each dimension of the \"world\"")
+    String size;
+
+    @Label("Node Count")
+    int nodeCount;
+
+    /**
+     * Fill the fields with the given "world"
+     */
+    void set( Grid grid ) {
+        gridClass = grid.getClass();
+        size = Arrays.toString( grid.getSize() );
+        nodeCount = grid.getNodeCount();
+    }
+}
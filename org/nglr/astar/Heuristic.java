@@ -0,0 +1,29 @@
+package org.nglr.astar;
+
+/**
+ * Estimate of the cost of the path between two nodes of a {@link Grid},
+ * used to guide the searches instead of
+ * {@link Grid#getHeuristics(int, int)}.<br>
+ * For the searches to find the optimal path the estimate must never
+ * be higher than the cost of the cheapest path (admissible), and for
+ * them to not expand a node twice it must not drop by more than the
+ * distance moved between neighbors (consistent). The estimate must also
+ * be the same in both directions so it works for the backward search of
+ * a {@link BidirectionalSearchContext}. Implementations are read by the
+ * searches of many threads at the same time, so they must be thread-safe.
+ *
+ * @author J
+ * @see SearchContext#setHeuristic(Heuristic)
+ * @see LandmarkHeuristic
+ */
+public interface Heuristic {
+    /**
+     * Estimate the cost of the path between the nodes at the given
+     * indexes of the map
+     *
+     * @param index index of the node to estimate from
+     * @param goal index of the goal node
+     * @return estimated cost, never higher than the real one
+     */
+    double estimate( int index, int goal );
+}
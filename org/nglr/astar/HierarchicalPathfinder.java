@@ -0,0 +1,951 @@
+package org.nglr.astar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Hierarchical pathfinding (HPA*) over a 2D or 3D {@link Grid}.<br>
+ * The "world" is split in square (or cubic) clusters. Where two clusters
+ * touch, every connected stretch of passable border gets an entrance in
+ * its middle, or one at each end if it's long, and the costs between the
+ * entrances of each cluster, and the paths between them, are calculated up
+ * front. A query searches the graph of entrances together with the nodes of
+ * the start and goal clusters, which are only looked through as far as the
+ * search needs, so long queries don't have to look through every node in
+ * between. Only the stored paths used by the found path are turned into nodes.<br><br>
+ * The paths found are close to optimal but not always optimal, as they
+ * have to go through the chosen entrances. On a 2048x2048 "world" with
+ * diagonals and clusters of 32 nodes per side, random long queries take about
+ * 0.6-0.8 ms with no obstacles, 1.6-2 ms with 5% of the nodes blocked and
+ * 4-6 ms with 20% blocked, so the sub-millisecond target is only met on open
+ * "worlds": scattered obstacles split the borders in many entrances (about
+ * 16k, 55k and 113k) and searching the graph of entrances takes most of the
+ * time. Building takes 4-5 s, 10-11 s and 18-24 s and keeps 50, 90 and 190 MB.
+ * Bigger clusters give fewer entrances but slower builds.<br><br>
+ * When some nodes change their passability {@link #update(int...)} rebuilds
+ * only the clusters around them, and {@link #refresh()} does it for the
+ * changes logged by the <code>Grid</code>.
+ * Instances are not thread-safe.
+ *
+ * @author J
+ * @see AStar
+ * @see Grid
+ */
+public class HierarchicalPathfinder {
+    /** Stretches of border with at least this many nodes get an entrance at each end */
+    private static final int LONG_STRETCH = 6;
+    /** Most nodes a cluster can have, so the stored paths fit a <code>char</code> per node */
+    public static final int MAX_CLUSTER_NODES = 1 << 16;
+
+    private final Grid grid;
+    private final int clusterSize;
+    private final int[] size;
+    private final int[] clusterCounts;
+    private final int clusterTotal;
+    private final int clusterCapacity;
+    private final int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+
+    /** Cluster of each node */
+    private int[] clusterOf;
+    /** Index of each node inside of its cluster */
+    private int[] localOf;
+    private Cluster[] clusters;
+    /** Version of the "world" the hierarchy was last built for */
+    private long version;
+    /** Crossings between clusters, as pairs of nodes with the node of the lower cluster first */
+    private final Map<Long, int[]> transitions = new HashMap<>();
+
+    /** Node of each entrance of the abstract graph */
+    private int[] abstractCells;
+    /** Entrance of each node or -1 if the node isn't one */
+    private int[] abstractOf;
+    /** Position of each entrance in the entrances of its cluster */
+    private int[] entranceSlot;
+    /** Edges of the abstract graph, the ones of entrance <code>i</code> are in <code>[edgeStart[i], edgeStart[i + 1])</code> */
+    private int[] edgeStart;
+    /** First edge of each entrance that crosses to another cluster, the ones before stay in its cluster */
+    private int[] crossingStart;
+    private int[] edgeTo;
+    private double[] edgeCost;
+
+    private final LocalSearch local;
+    private final LocalSearch goalLocal;
+    private double[] g;
+    private int[] from;
+    private int[] stamps;
+    private int generation;
+    private IndexedMinHeap open;
+
+    /**
+     * Build the hierarchy of the given "world" using clusters with the
+     * given amount of nodes per side
+     *
+     * @param grid the "world" to search in
+     * @param clusterSize nodes per side of each cluster
+     * @throws IllegalArgumentException if <code>grid</code> is null, the cluster size is lower than 2
+     * or a cluster would have more than {@value #MAX_CLUSTER_NODES} nodes
+     */
+    public HierarchicalPathfinder( Grid grid, int clusterSize ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Clusters must have at least 2 nodes per side");
+        }
+        this.grid = grid;
+        this.clusterSize = clusterSize;
+        size = grid.getSize();
+        clusterCounts = new int[size.length];
+        int total = 1;
+        long capacity = 1;
+        for (int d = 0; d < size.length; d++) {
+            clusterCounts[d] = (size[d] + clusterSize - 1) / clusterSize;
+            total *= clusterCounts[d];
+            capacity *= Math.min( clusterSize, size[d] );
+        }
+        if (capacity > MAX_CLUSTER_NODES) {
+            throw new IllegalArgumentException("Clusters can't have more than " + MAX_CLUSTER_NODES + " nodes");
+        }
+        clusterTotal = total;
+        clusterCapacity = (int) capacity;
+        local = new LocalSearch();
+        goalLocal = new LocalSearch();
+        build();
+    }
+
+    /**
+     * @return the "world" being searched
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return nodes per side of each cluster
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * @return amount of entrances in the abstract graph
+     */
+    public int getEntranceCount() {
+        return abstractCells.length;
+    }
+
+    /**
+     * Rebuild the whole hierarchy, use {@link #update(int...)} if only
+     * a few nodes changed. The clusters are built in parallel
+     */
+    public final void build() {
+        version = grid.getVersion();
+        clusterOf = new int[grid.getNodeCount()];
+        localOf = new int[grid.getNodeCount()];
+        clusters = new Cluster[clusterTotal];
+        for (int c = 0; c < clusterTotal; c++) {
+            final int cluster = c;
+            final int[] count = { 0 };
+            forEachNode( cluster, new IntConsumer() {
+                @Override
+                public void accept( int node ) {
+                    clusterOf[node] = cluster;
+                    localOf[node] = count[0];
+                    count[0] ++;
+                }
+            });
+        }
+        transitions.clear();
+        for (int c = 0; c < clusterTotal; c++) {
+            findTransitions( c, true );
+        }
+        final ThreadLocal<LocalSearch> searches = ThreadLocal.withInitial( LocalSearch::new );
+        IntStream.range( 0, clusterTotal ).parallel()
+                .forEach( c -> buildCluster( c, searches.get() ) );
+        buildAbstractGraph();
+    }
+
+    /**
+     * Rebuild the clusters affected by the changes of passability of the
+     * "world" since the hierarchy was last built, or the whole hierarchy
+     * if the changes are no longer known
+     *
+     * @see Grid#getChangesSince(long)
+     */
+    public void refresh() {
+        if (version == grid.getVersion()) {
+            return;
+        }
+        List<DirtyRegion> changes = grid.getChangesSince( version );
+        if (changes == null) {
+            build();
+            return;
+        }
+        int count = 0;
+        for (DirtyRegion region : changes) {
+            count += region.getNodes().length;
+        }
+        int[] nodes = new int[count];
+        count = 0;
+        for (DirtyRegion region : changes) {
+            System.arraycopy( region.getNodes(), 0, nodes, count, region.getNodes().length );
+            count += region.getNodes().length;
+        }
+        update( nodes );
+    }
+
+    /**
+     * Rebuild the clusters affected by a change of passability of the
+     * nodes at the given indexes
+     *
+     * @param nodes indexes of the changed nodes
+     */
+    public void update( int... nodes ) {
+        version = grid.getVersion();
+        Set<Integer> changed = new LinkedHashSet<>();
+        for (int node : nodes) {
+            changed.add( clusterOf[node] );
+            int count = grid.getNeighbors( node, neighbors );
+            for (int i = 0; i < count; i++) {
+                changed.add( clusterOf[neighbors[i]] );
+            }
+        }
+        Set<Integer> rebuild = new LinkedHashSet<>( changed );
+        for (int cluster : changed) {
+            for (int other : getNeighborClusters( cluster )) {
+                transitions.remove( pairKey( cluster, other ) );
+                rebuild.add( other );
+            }
+            findTransitions( cluster, false );
+        }
+        for (int cluster : rebuild) {
+            buildCluster( cluster, local );
+        }
+        buildAbstractGraph();
+    }
+
+    /**
+     * Find a path between the nodes at the given dimensional indexes
+     *
+     * @param start dimensional indexes for start position
+     * @param goal dimensional indexes for end position
+     * @return the found path
+     */
+    public PathResult find( int[] start, int[] goal ) {
+        return find( grid.toIndex( start ), grid.toIndex( goal ) );
+    }
+
+    /**
+     * Find a path between the nodes at the given indexes of the map.
+     * If the goal can't be reached the path only holds the start
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @return the found path, from the goal back to the start
+     */
+    public PathResult find( int start, int goal ) {
+        if (start == goal) {
+            return new PathResult( new Node[] { grid.getNode( start ) }, true );
+        }
+        if (!grid.isPassable( start ) || !grid.isPassable( goal )) {
+            return new PathResult( new Node[] { grid.getNode( start ) }, false );
+        }
+        int startNode = abstractCells.length;
+        int startCluster = clusterOf[start];
+        int goalCluster = clusterOf[goal];
+        // The start and goal clusters are searched node by node only as far
+        // as needed, in the same order as the entrances, instead of connecting
+        // them to every entrance of their clusters up front
+        LocalSearch startSide = local;
+        LocalSearch goalSide = startCluster == goalCluster ? local : goalLocal;
+        startSide.begin( startCluster, goal );
+        if (goalSide != startSide) {
+            goalSide.begin( goalCluster, goal );
+        }
+        startSide.seed( start, 0, startNode );
+
+        // A* over the entrances
+        nextGeneration( startNode + 1 );
+        touch( startNode );
+        g[startNode] = 0;
+        boolean found = false;
+        while (true) {
+            double abstractKey = open.isEmpty() ? Double.POSITIVE_INFINITY : open.peekKey();
+            LocalSearch side = startSide;
+            if (side.isEmpty() || (!goalSide.isEmpty() && goalSide.peekKey() < side.peekKey())) {
+                side = goalSide;
+            }
+            if (!side.isEmpty() && side.peekKey() <= abstractKey) {
+                int node = side.expand();
+                if (node == goal && side == goalSide) {
+                    found = true;
+                    break;
+                }
+                // Entrances reached from the start enter the abstract graph
+                int entrance = abstractOf[node];
+                if (side == startSide && entrance != -1 && side.getRoot( node ) == startNode) {
+                    relax( startNode, entrance, side.getCost( node ), goal );
+                }
+                continue;
+            }
+            if (open.isEmpty()) {
+                break;
+            }
+            int cur = open.poll();
+            // The costs inside of a cluster are already the lowest ones, and
+            // so are the ones found from the start, so an entrance reached
+            // from its own cluster only has to leave it
+            int prev = from[cur];
+            int cell = abstractCells[cur];
+            boolean inside = prev == startNode || clusterOf[abstractCells[prev]] == clusterOf[cell];
+            for (int e = inside ? crossingStart[cur] : edgeStart[cur]; e < edgeStart[cur + 1]; e++) {
+                relax( cur, edgeTo[e], edgeCost[e], goal );
+            }
+            if (clusterOf[cell] == goalCluster) {
+                goalSide.seed( cell, g[cur], cur );
+            }
+        }
+        if (!found) {
+            return new PathResult( new Node[] { grid.getNode( start ) }, false );
+        }
+
+        // Refine the used edges into nodes, from the goal back to the start
+        ArrayList<Node> path = new ArrayList<>();
+        int last = goalSide.addPath( path, goal );
+        if (last != startNode) {
+            for (int cur = last; from[cur] != startNode; cur = from[cur]) {
+                int prev = from[cur];
+                int cell = abstractCells[cur];
+                if (clusterOf[cell] != clusterOf[abstractCells[prev]]) {
+                    path.add( grid.getNode( cell ) );
+                } else {
+                    addSegment( path, clusters[clusterOf[cell]], entranceSlot[prev], entranceSlot[cur] );
+                }
+                last = prev;
+            }
+            startSide.addPath( path, abstractCells[last] );
+        }
+        path.add( grid.getNode( start ) );
+        return new PathResult( path.toArray( new Node[path.size()] ), true );
+    }
+
+    /**
+     * Lower the cost of reaching an abstract node through another one
+     */
+    private void relax( int cur, int next, double cost, int goal ) {
+        if (stamps[next] != generation) {
+            touch( next );
+        }
+        double tentative = g[cur] + cost;
+        if (tentative < g[next]) {
+            g[next] = tentative;
+            from[next] = cur;
+            open.add( next, tentative + grid.getHeuristics( abstractCells[next], goal ) );
+        }
+    }
+
+    /**
+     * Add the nodes of the stored path between two entrances of a cluster
+     * to the end of the list, from the second entrance back to the first
+     * one and skipping the first one
+     *
+     * @param first position of the first entrance in the cluster
+     * @param second position of the second entrance in the cluster
+     */
+    private void addSegment( List<Node> list, Cluster cluster, int first, int second ) {
+        int k = cluster.entrances.length;
+        int pair = Math.min( first, second ) * k + Math.max( first, second );
+        int begin = cluster.pathStart[pair];
+        int end = cluster.pathStart[pair + 1];
+        // Paths are stored going from the lower entrance to the higher one
+        if (first < second) {
+            for (int i = end - 1; i > begin; i--) {
+                list.add( grid.getNode( cluster.getNode( cluster.steps[i] ) ) );
+            }
+        } else {
+            for (int i = begin; i < end - 1; i++) {
+                list.add( grid.getNode( cluster.getNode( cluster.steps[i] ) ) );
+            }
+        }
+    }
+
+    /**
+     * Start a new query generation over the abstract graph, making the
+     * scores of previous queries count as unset
+     *
+     * @param count amount of abstract nodes including the start
+     */
+    private void nextGeneration( int count ) {
+        if (open == null || open.capacity() != count) {
+            g = new double[count];
+            from = new int[count];
+            stamps = new int[count];
+            open = new IndexedMinHeap( count );
+            generation = 0;
+        } else {
+            open.clear();
+        }
+        generation ++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill( stamps, 0 );
+            generation = 1;
+        }
+    }
+
+    private void touch( int node ) {
+        stamps[node] = generation;
+        g[node] = Double.POSITIVE_INFINITY;
+        from[node] = -1;
+    }
+
+    /**
+     * Find the crossings between the given cluster and its neighbors
+     * and keep one per connected stretch of border
+     *
+     * @param cluster cluster index
+     * @param onlyHigher only look at neighbors with a higher index
+     */
+    private void findTransitions( final int cluster, final boolean onlyHigher ) {
+        final Map<Integer, List<int[]>> crossings = new LinkedHashMap<>();
+        forEachNode( cluster, new IntConsumer() {
+            @Override
+            public void accept( int node ) {
+                if (!grid.isPassable( node )) {
+                    return;
+                }
+                int count = grid.getNeighbors( node, neighbors );
+                for (int i = 0; i < count; i++) {
+                    int other = clusterOf[neighbors[i]];
+                    if (other == cluster || (onlyHigher && other < cluster)
+                            || !grid.isPassable( neighbors[i] )) {
+                        continue;
+                    }
+                    List<int[]> list = crossings.get( other );
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        crossings.put( other, list );
+                    }
+                    list.add( new int[] { node, neighbors[i] } );
+                }
+            }
+        });
+        for (Map.Entry<Integer, List<int[]>> entry : crossings.entrySet()) {
+            int other = entry.getKey();
+            int[] picked = pickTransitions( entry.getValue() );
+            if (other < cluster) {
+                // Keep the node of the lower cluster first
+                for (int i = 0; i < picked.length; i += 2) {
+                    int temp = picked[i];
+                    picked[i] = picked[i + 1];
+                    picked[i + 1] = temp;
+                }
+            }
+            transitions.put( pairKey( cluster, other ), picked );
+        }
+    }
+
+    /**
+     * Group the crossings by connected stretches of border and take the
+     * middle crossing of each short stretch and both ends of long ones
+     *
+     * @param crossings pairs of nodes from one cluster to another
+     * @return chosen pairs flattened into one array
+     */
+    private int[] pickTransitions( List<int[]> crossings ) {
+        Map<Integer, Integer> borderIndex = new LinkedHashMap<>();
+        List<int[]> firstCrossing = new ArrayList<>();
+        for (int[] crossing : crossings) {
+            if (!borderIndex.containsKey( crossing[0] )) {
+                borderIndex.put( crossing[0], borderIndex.size() );
+                firstCrossing.add( crossing );
+            }
+        }
+        int[] roots = new int[borderIndex.size()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = i;
+        }
+        for (Map.Entry<Integer, Integer> entry : borderIndex.entrySet()) {
+            int count = grid.getNeighbors( entry.getKey(), neighbors );
+            for (int i = 0; i < count; i++) {
+                Integer other = borderIndex.get( neighbors[i] );
+                if (other != null) {
+                    roots[findRoot( roots, entry.getValue() )] = findRoot( roots, other );
+                }
+            }
+        }
+        Map<Integer, List<Integer>> stretches = new LinkedHashMap<>();
+        for (int i = 0; i < roots.length; i++) {
+            int root = findRoot( roots, i );
+            List<Integer> members = stretches.get( root );
+            if (members == null) {
+                members = new ArrayList<>();
+                stretches.put( root, members );
+            }
+            members.add( i );
+        }
+        List<int[]> picked = new ArrayList<>();
+        for (List<Integer> members : stretches.values()) {
+            if (members.size() >= LONG_STRETCH) {
+                picked.add( firstCrossing.get( members.get( 0 ) ) );
+                picked.add( firstCrossing.get( members.get( members.size() - 1 ) ) );
+            } else {
+                picked.add( firstCrossing.get( members.get( members.size() / 2 ) ) );
+            }
+        }
+        int[] pairs = new int[picked.size() * 2];
+        for (int i = 0; i < picked.size(); i++) {
+            pairs[i * 2] = picked.get( i )[0];
+            pairs[i * 2 + 1] = picked.get( i )[1];
+        }
+        return pairs;
+    }
+
+    private static int findRoot( int[] roots, int i ) {
+        while (roots[i] != i) {
+            roots[i] = roots[roots[i]];
+            i = roots[i];
+        }
+        return i;
+    }
+
+    /**
+     * Collect the entrances of the cluster and calculate the costs and
+     * the paths between them
+     *
+     * @param cluster cluster index
+     * @param search buffers to search the cluster with
+     */
+    private void buildCluster( int cluster, LocalSearch search ) {
+        Set<Integer> entrances = new LinkedHashSet<>();
+        for (int other : getNeighborClusters( cluster )) {
+            int[] pairs = transitions.get( pairKey( cluster, other ) );
+            if (pairs == null) {
+                continue;
+            }
+            for (int i = 0; i < pairs.length; i += 2) {
+                entrances.add( clusterOf[pairs[i]] == cluster ? pairs[i] : pairs[i + 1] );
+            }
+        }
+        Cluster data = new Cluster( entrances.size() );
+        getBounds( cluster, data.origin, data.extent );
+        int i = 0;
+        for (int entrance : entrances) {
+            data.entrances[i] = entrance;
+            i ++;
+        }
+        int k = data.entrances.length;
+        Arrays.fill( data.costs, Double.POSITIVE_INFINITY );
+        char[] steps = new char[Math.max( k * clusterSize, 1 )];
+        int used = 0;
+        for (i = 0; i < k; i++) {
+            // The costs are the same both ways, so only the later entrances are needed
+            if (i < k - 1) {
+                search.search( cluster, data.entrances[i], data.entrances, i + 1 );
+            }
+            for (int j = 0; j < k; j++) {
+                data.pathStart[i * k + j] = used;
+                if (j <= i) {
+                    continue;
+                }
+                double cost = search.getCost( data.entrances[j] );
+                data.costs[i * k + j] = cost;
+                data.costs[j * k + i] = cost;
+                if (cost != Double.POSITIVE_INFINITY) {
+                    int length = search.getLength( data.entrances[j] );
+                    if (used + length > steps.length) {
+                        steps = Arrays.copyOf( steps, Math.max( steps.length * 2, used + length ) );
+                    }
+                    used += length;
+                    search.getLocalPath( data.entrances[j], steps, used );
+                }
+            }
+        }
+        data.pathStart[k * k] = used;
+        data.steps = Arrays.copyOf( steps, used );
+        clusters[cluster] = data;
+    }
+
+    /**
+     * Number the entrances of all clusters and connect them with the
+     * costs inside of the clusters and the crossings between them
+     */
+    private void buildAbstractGraph() {
+        int count = 0;
+        for (Cluster cluster : clusters) {
+            count += cluster.entrances.length;
+        }
+        abstractCells = new int[count];
+        entranceSlot = new int[count];
+        if (abstractOf == null || abstractOf.length != grid.getNodeCount()) {
+            abstractOf = new int[grid.getNodeCount()];
+        }
+        Arrays.fill( abstractOf, -1 );
+        count = 0;
+        for (Cluster cluster : clusters) {
+            for (int i = 0; i < cluster.entrances.length; i++) {
+                abstractOf[cluster.entrances[i]] = count;
+                abstractCells[count] = cluster.entrances[i];
+                entranceSlot[count] = i;
+                count ++;
+            }
+        }
+        // Count the edges of each entrance, then fill them in place
+        edgeStart = new int[count + 1];
+        for (Cluster cluster : clusters) {
+            int k = cluster.entrances.length;
+            for (int i = 0; i < k; i++) {
+                for (int j = 0; j < k; j++) {
+                    if (cluster.costs[i * k + j] != Double.POSITIVE_INFINITY) {
+                        edgeStart[abstractOf[cluster.entrances[i]] + 1] ++;
+                    }
+                }
+            }
+        }
+        for (int[] pairs : transitions.values()) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                edgeStart[abstractOf[pairs[i]] + 1] ++;
+                edgeStart[abstractOf[pairs[i + 1]] + 1] ++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            edgeStart[i + 1] += edgeStart[i];
+        }
+        edgeTo = new int[edgeStart[count]];
+        edgeCost = new double[edgeStart[count]];
+        int[] next = Arrays.copyOf( edgeStart, count );
+        crossingStart = new int[count];
+        for (Cluster cluster : clusters) {
+            int k = cluster.entrances.length;
+            for (int i = 0; i < k; i++) {
+                int a = abstractOf[cluster.entrances[i]];
+                for (int j = 0; j < k; j++) {
+                    if (cluster.costs[i * k + j] != Double.POSITIVE_INFINITY) {
+                        edgeTo[next[a]] = abstractOf[cluster.entrances[j]];
+                        edgeCost[next[a]] = cluster.costs[i * k + j];
+                        next[a] ++;
+                    }
+                }
+                crossingStart[a] = next[a];
+            }
+        }
+        for (int[] pairs : transitions.values()) {
+            for (int i = 0; i < pairs.length; i += 2) {
+                int a = abstractOf[pairs[i]];
+                int b = abstractOf[pairs[i + 1]];
+                double cost = grid.getDistance( pairs[i], pairs[i + 1] );
+                edgeTo[next[a]] = b;
+                edgeCost[next[a]] = cost;
+                next[a] ++;
+                edgeTo[next[b]] = a;
+                edgeCost[next[b]] = cost;
+                next[b] ++;
+            }
+        }
+    }
+
+    /**
+     * Do an action with every node of the cluster
+     */
+    private void forEachNode( int cluster, IntConsumer action ) {
+        int[] origin = new int[size.length];
+        int[] extent = new int[size.length];
+        getBounds( cluster, origin, extent );
+        int[] dims = origin.clone();
+        while (true) {
+            action.accept( grid.toIndex( dims ) );
+            int d = 0;
+            while (d < dims.length) {
+                dims[d] ++;
+                if (dims[d] < origin[d] + extent[d]) {
+                    break;
+                }
+                dims[d] = origin[d];
+                d ++;
+            }
+            if (d == dims.length) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the dimensional indexes of the first node of the cluster and
+     * its amount of nodes along each dimension
+     */
+    private void getBounds( int cluster, int[] origin, int[] extent ) {
+        int rest = cluster;
+        for (int d = 0; d < size.length; d++) {
+            origin[d] = (rest % clusterCounts[d]) * clusterSize;
+            extent[d] = Math.min( clusterSize, size[d] - origin[d] );
+            rest /= clusterCounts[d];
+        }
+    }
+
+    /**
+     * @return clusters that touch the given one, including diagonally
+     */
+    private List<Integer> getNeighborClusters( int cluster ) {
+        int[] coords = new int[size.length];
+        int rest = cluster;
+        for (int d = 0; d < size.length; d++) {
+            coords[d] = rest % clusterCounts[d];
+            rest /= clusterCounts[d];
+        }
+        List<Integer> result = new ArrayList<>();
+        int combinations = 1;
+        for (int d = 0; d < size.length; d++) {
+            combinations *= 3;
+        }
+        for (int k = 0; k < combinations; k++) {
+            int index = 0;
+            int stride = 1;
+            int offsets = k;
+            boolean valid = k != (combinations - 1) / 2;
+            for (int d = 0; d < size.length && valid; d++) {
+                int c = coords[d] + offsets % 3 - 1;
+                offsets /= 3;
+                if (c < 0 || c >= clusterCounts[d]) {
+                    valid = false;
+                }
+                index += c * stride;
+                stride *= clusterCounts[d];
+            }
+            if (valid) {
+                result.add( index );
+            }
+        }
+        return result;
+    }
+
+    private long pairKey( int a, int b ) {
+        return (long) Math.min( a, b ) * clusterTotal + Math.max( a, b );
+    }
+
+    /**
+     * Search buffers for searches that don't leave a cluster, sized for a
+     * single cluster and reused between searches
+     */
+    private final class LocalSearch {
+        private final double[] dist = new double[clusterCapacity];
+        private final int[] parent = new int[clusterCapacity];
+        private final int[] cell = new int[clusterCapacity];
+        private final int[] root = new int[clusterCapacity];
+        private final int[] stamp = new int[clusterCapacity];
+        private final int[] target = new int[clusterCapacity];
+        private final int[] buffer = new int[Grid.MAX_NEIGHBORS];
+        private final IndexedMinHeap heap = new IndexedMinHeap( clusterCapacity );
+        private int generation;
+        private int cluster;
+        private int toward;
+
+        /**
+         * Search from the given node without leaving its cluster until
+         * the costs of all the targets are known
+         *
+         * @param cluster cluster to search in
+         * @param source node to search from
+         * @param targets nodes to find the cost of
+         * @param from first of the targets to look for
+         */
+        void search( int cluster, int source, int[] targets, int from ) {
+            begin( cluster, -1 );
+            int remaining = 0;
+            for (int i = from; i < targets.length; i++) {
+                remaining += mark( localOf[targets[i]] );
+            }
+            seed( source, 0, -1 );
+            while (remaining > 0 && !heap.isEmpty()) {
+                if (target[localOf[expand()]] == generation) {
+                    remaining --;
+                }
+            }
+            // Nodes still in the heap don't have their final cost
+            while (!heap.isEmpty()) {
+                stamp[heap.poll()] = 0;
+            }
+        }
+
+        /**
+         * Start a new search in the given cluster, forgetting the last one
+         *
+         * @param cluster cluster to search in
+         * @param toward node to aim the search at or -1 to search evenly
+         */
+        void begin( int cluster, int toward ) {
+            this.cluster = cluster;
+            this.toward = toward;
+            generation ++;
+            if (generation == Integer.MAX_VALUE) {
+                Arrays.fill( stamp, 0 );
+                Arrays.fill( target, 0 );
+                generation = 1;
+            }
+            heap.clear();
+        }
+
+        /**
+         * Start searching from the given node too, if it wasn't reached
+         * with a lower cost yet
+         *
+         * @param node node of the cluster to search from
+         * @param cost cost of reaching the node
+         * @param from what the node was reached from, kept by the nodes reached through it
+         */
+        void seed( int node, double cost, int from ) {
+            int index = localOf[node];
+            if (stamp[index] != generation || cost < dist[index]) {
+                stamp[index] = generation;
+                dist[index] = cost;
+                parent[index] = -1;
+                cell[index] = node;
+                root[index] = from;
+                heap.add( index, toward == -1 ? cost : cost + grid.getHeuristics( node, toward ) );
+            }
+        }
+
+        boolean isEmpty() {
+            return heap.isEmpty();
+        }
+
+        /**
+         * @return lowest key of the nodes still to expand
+         */
+        double peekKey() {
+            return heap.peekKey();
+        }
+
+        /**
+         * Expand the next node, reaching its neighbors in the cluster
+         *
+         * @return the expanded node, whose cost is final
+         */
+        int expand() {
+            int cur = heap.poll();
+            int node = cell[cur];
+            int count = grid.getNeighbors( node, buffer );
+            for (int i = 0; i < count; i++) {
+                int next = buffer[i];
+                if (clusterOf[next] != cluster || !grid.isPassable( next )) {
+                    continue;
+                }
+                int nextLocal = localOf[next];
+                double tentative = dist[cur] + grid.getDistance( node, next );
+                if (stamp[nextLocal] != generation || tentative < dist[nextLocal]) {
+                    stamp[nextLocal] = generation;
+                    dist[nextLocal] = tentative;
+                    parent[nextLocal] = cur;
+                    cell[nextLocal] = next;
+                    root[nextLocal] = root[cur];
+                    heap.add( nextLocal, toward == -1 ? tentative
+                            : tentative + grid.getHeuristics( next, toward ) );
+                }
+            }
+            return node;
+        }
+
+        private int mark( int localIndex ) {
+            if (target[localIndex] == generation) {
+                return 0;
+            }
+            target[localIndex] = generation;
+            return 1;
+        }
+
+        /**
+         * @return cost of the current search to the given node or positive
+         * infinity if it wasn't reached
+         */
+        double getCost( int node ) {
+            int index = localOf[node];
+            return stamp[index] == generation ? dist[index] : Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * @return what the node the search reached the given node from was seeded with
+         */
+        int getRoot( int node ) {
+            return root[localOf[node]];
+        }
+
+        /**
+         * @return amount of nodes in the path to the given node
+         */
+        int getLength( int node ) {
+            int length = 0;
+            for (int i = localOf[node]; i != -1; i = parent[i]) {
+                length ++;
+            }
+            return length;
+        }
+
+        /**
+         * Write the indexes inside of the cluster of the nodes of the path
+         * to the given node, ending right before the given position
+         *
+         * @param node last node of the path
+         * @param out array to write to
+         * @param end position after the last node of the path
+         */
+        void getLocalPath( int node, char[] out, int end ) {
+            for (int i = localOf[node]; i != -1; i = parent[i]) {
+                end --;
+                out[end] = (char) i;
+            }
+        }
+
+        /**
+         * Add the nodes of the path to the given node to the end of the
+         * list, from the node back to the first one and skipping the first one
+         *
+         * @return what the first node was seeded with
+         */
+        int addPath( List<Node> list, int node ) {
+            int i = localOf[node];
+            while (parent[i] != -1) {
+                list.add( grid.getNode( cell[i] ) );
+                i = parent[i];
+            }
+            return root[i];
+        }
+    }
+
+    /**
+     * Entrances of a cluster with the costs and the paths between them
+     */
+    private final class Cluster {
+        final int[] origin = new int[size.length];
+        final int[] extent = new int[size.length];
+        final int[] entrances;
+        final double[] costs;
+        /** Where the path between each pair of entrances starts in <code>steps</code>, only set for the lower entrance first */
+        final int[] pathStart;
+        /** Indexes inside of the cluster of the nodes of every path */
+        char[] steps;
+
+        Cluster( int entranceCount ) {
+            entrances = new int[entranceCount];
+            costs = new double[entranceCount * entranceCount];
+            pathStart = new int[entranceCount * entranceCount + 1];
+        }
+
+        /**
+         * @return index in the map of the node at the given index inside of the cluster
+         */
+        int getNode( int localIndex ) {
+            int[] dims = new int[origin.length];
+            for (int d = 0; d < dims.length; d++) {
+                dims[d] = origin[d] + localIndex % extent[d];
+                localIndex /= extent[d];
+            }
+            return grid.toIndex( dims );
+        }
+    }
+}
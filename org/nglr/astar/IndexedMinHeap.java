@@ -0,0 +1,337 @@
+package org.nglr.astar;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary min-heap of node indexes ordered by a <code>double</code> key.<br>
+ * Every index in the range <code>[0, capacity)</code> can be in the heap
+ * at most once and its position is tracked, so checking if an index is
+ * in the heap is O(1) and lowering its key (decrease-key) is O(log n)
+ * instead of having to search and re-insert it.<br>
+ * Indexes can also be given a second key that orders the ones with
+ * equal keys, the second keys are only stored once one is given.
+ *
+ * @author J
+ * @see AStar
+ */
+public class IndexedMinHeap implements Serializable {
+
+    private int[] heap;
+    private int[] position;
+    private double[] keys;
+    private double[] ties;
+    private int size;
+
+    /**
+     * Instance a new heap that can hold the indexes from 0 up to
+     * <code>capacity - 1</code>
+     *
+     * @param capacity amount of possible indexes
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[Math.max(capacity, 1)];
+        position = new int[Math.max(capacity, 1)];
+        keys = new double[Math.max(capacity, 1)];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    /**
+     * @return amount of indexes that the heap is able to hold
+     */
+    public int capacity() {
+        return position.length;
+    }
+
+    /**
+     * Grow the heap so it can hold the indexes from 0 up to at least
+     * <code>capacity - 1</code>, keeping the indexes it holds
+     *
+     * @param capacity amount of possible indexes
+     */
+    public void ensureCapacity(int capacity) {
+        int old = position.length;
+        if (capacity <= old) {
+            return;
+        }
+        heap = Arrays.copyOf(heap, capacity);
+        position = Arrays.copyOf(position, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        if (ties != null) {
+            ties = Arrays.copyOf(ties, capacity);
+        }
+        Arrays.fill(position, old, capacity, -1);
+    }
+
+    /**
+     * @return amount of indexes currently in the heap
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return if there are no indexes in the heap
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check if the index is currently in the heap
+     *
+     * @param index index to check
+     * @return true if the index is in the heap
+     */
+    public boolean contains(int index) {
+        return position[index] != -1;
+    }
+
+    /**
+     * Get the key the index was last added or updated with
+     *
+     * @param index index in the heap
+     * @return key of the index
+     */
+    public double getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Get the second key the index was last added or updated with
+     *
+     * @param index index in the heap
+     * @return second key of the index, 0 if it was given none
+     */
+    public double getSecondKey(int index) {
+        return ties == null ? 0 : ties[index];
+    }
+
+    /**
+     * Add the index to the heap with the given key or, if it's already
+     * in the heap, update its key to the new value
+     *
+     * @param index index to add
+     * @param key key of the index
+     */
+    public void add(int index, double key) {
+        if (contains(index)) {
+            update(index, key);
+            return;
+        }
+        keys[index] = key;
+        if (ties != null) {
+            ties[index] = 0;
+        }
+        heap[size] = index;
+        position[index] = size;
+        size ++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Add the index to the heap with the given keys or, if it's already
+     * in the heap, update its keys to the new values. Indexes with equal
+     * keys are ordered by their second key
+     *
+     * @param index index to add
+     * @param key key of the index
+     * @param secondKey key used when the keys are equal
+     */
+    public void add(int index, double key, double secondKey) {
+        if (ties == null) {
+            ties = new double[keys.length];
+        }
+        if (contains(index)) {
+            update(index, key, secondKey);
+            return;
+        }
+        keys[index] = key;
+        ties[index] = secondKey;
+        heap[size] = index;
+        position[index] = size;
+        size ++;
+        siftUp(size - 1);
+    }
+
+    /**
+     * Change the key of an index that's already in the heap
+     *
+     * @param index index in the heap
+     * @param key new key of the index
+     * @throws NoSuchElementException if the index is not in the heap
+     */
+    public void update(int index, double key) {
+        update(index, key, getSecondKey(index));
+    }
+
+    /**
+     * Change the keys of an index that's already in the heap
+     *
+     * @param index index in the heap
+     * @param key new key of the index
+     * @param secondKey new key used when the keys are equal
+     * @throws NoSuchElementException if the index is not in the heap
+     */
+    public void update(int index, double key, double secondKey) {
+        int pos = position[index];
+        if (pos == -1) {
+            throw new NoSuchElementException("Index " + index + " is not in the heap");
+        }
+        double old = keys[index];
+        double oldTie = getSecondKey(index);
+        keys[index] = key;
+        if (ties != null) {
+            ties[index] = secondKey;
+        } else if (secondKey != 0) {
+            ties = new double[keys.length];
+            ties[index] = secondKey;
+        }
+        if (key < old || (key == old && secondKey < oldTie)) {
+            siftUp(pos);
+        } else {
+            siftDown(pos);
+        }
+    }
+
+    /**
+     * @return index with the lowest key without removing it
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException("The heap is empty");
+        }
+        return heap[0];
+    }
+
+    /**
+     * @return the lowest key in the heap or positive infinity if empty
+     */
+    public double peekKey() {
+        if (size == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return keys[heap[0]];
+    }
+
+    /**
+     * @return the second key of the index with the lowest key or
+     * positive infinity if empty
+     */
+    public double peekSecondKey() {
+        if (size == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return getSecondKey(heap[0]);
+    }
+
+    /**
+     * Remove and return the index with the lowest key
+     *
+     * @return index with the lowest key
+     * @throws NoSuchElementException if the heap is empty
+     */
+    public int poll() {
+        int min = peek();
+        removeAt(0);
+        return min;
+    }
+
+    /**
+     * Remove the index from the heap if it's in it
+     *
+     * @param index index to remove
+     * @return true if the index was in the heap
+     */
+    public boolean remove(int index) {
+        int pos = position[index];
+        if (pos == -1) {
+            return false;
+        }
+        removeAt(pos);
+        return true;
+    }
+
+    /**
+     * Copy the indexes in the heap to a new array, in no particular order
+     *
+     * @return indexes in the heap
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(heap, size);
+    }
+
+    /**
+     * Remove all indexes from the heap. Only touches the indexes
+     * that are in the heap so its cost depends on the heap size
+     * and not on its capacity
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void removeAt(int pos) {
+        int index = heap[pos];
+        size --;
+        position[index] = -1;
+        if (pos == size) {
+            return;
+        }
+        int last = heap[size];
+        heap[pos] = last;
+        position[last] = pos;
+        siftDown(pos);
+        siftUp(position[last]);
+    }
+
+    /**
+     * @return if the index goes before the other one in the heap
+     */
+    private boolean less(int index, int other) {
+        double key = keys[index];
+        double otherKey = keys[other];
+        return key < otherKey || (key == otherKey && ties != null && ties[index] < ties[other]);
+    }
+
+    private void siftUp(int pos) {
+        int index = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (!less(index, parent)) {
+                break;
+            }
+            heap[pos] = parent;
+            position[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = index;
+        position[index] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int index = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && less(heap[right], heap[child])) {
+                child = right;
+            }
+            if (!less(heap[child], index)) {
+                break;
+            }
+            heap[pos] = heap[child];
+            position[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = index;
+        position[index] = pos;
+    }
+}
@@ -0,0 +1,413 @@
+package org.nglr.astar;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Landmark (ALT) estimate of the cost between two nodes of a
+ * {@link Grid}, much tighter than the heuristics of the
+ * <code>Grid</code> on maze-like "worlds".<br>
+ * A few nodes are picked as landmarks and the cost of the path from
+ * each of them to every node is kept. By the triangle inequality the
+ * cost between two nodes is at least the difference of their costs to
+ * any landmark, and the estimate is the highest of those differences
+ * and of {@link Grid#getHeuristics(int, int)}. The differences are
+ * lowered by the rounding error of the floats, so the estimate never
+ * overestimates, but the rounding can make the estimates of two
+ * neighbors differ by slightly more than the cost between them, about
+ * <code>1e-7</code> times the costs, so it isn't strictly consistent.
+ * {@link SearchContext} opens a closed node again when it finds a
+ * cheaper path to it, so its searches, Jump Point Search and
+ * bidirectional ones included, still find optimal paths with it.
+ * Each landmark is the node farthest from the ones
+ * already picked, starting from the node farthest from the first
+ * passable one, so nodes in other isolated areas don't get a better
+ * estimate.<br>
+ * The tables are floats interleaved by node, so an estimate reads two
+ * cache lines, and take <code>4 * landmarks</code> bytes per node.
+ * Building them runs a full search per landmark, so they can be saved
+ * with {@link #save(OutputStream)} and loaded at startup instead. The
+ * estimate stays admissible while the changes of the "world" only block
+ * nodes, see {@link #isAdmissible()}. Instances are immutable and
+ * thread-safe.
+ *
+ * @author J
+ * @see Heuristic
+ * @see AStar#setHeuristic(Heuristic)
+ */
+public class LandmarkHeuristic implements Heuristic {
+    /** First bytes of the saved tables, "ALT2" */
+    private static final int MAGIC = 0x414C5432;
+    /** Bound of the relative error of a cost rounded to a float */
+    private static final double FLOAT_ERROR = 1e-7;
+    /** Floats written or read at a time */
+    private static final int CHUNK = 8192;
+
+    private final Grid grid;
+    private final int[] landmarks;
+    /** Cost from each landmark to each node, the ones of a node together */
+    private final float[] table;
+    private final long version;
+
+    /**
+     * Pick the given amount of landmarks and build their tables
+     *
+     * @param grid the "world" to estimate the costs in
+     * @param landmarkCount most landmarks to pick, less are picked if
+     * there aren't enough passable nodes
+     * @throws IllegalArgumentException if <code>grid</code> is null or
+     * <code>landmarkCount</code> isn't positive
+     */
+    public LandmarkHeuristic( Grid grid, int landmarkCount ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        if (landmarkCount < 1) {
+            throw new IllegalArgumentException("There must be at least 1 landmark");
+        }
+        this.grid = grid;
+        version = grid.getVersion();
+        int count = grid.getNodeCount();
+        int[] picked = new int[landmarkCount];
+        float[][] fields = new float[landmarkCount][];
+        int found = 0;
+        int seed = 0;
+        while (seed < count && !grid.isPassable( seed )) {
+            seed ++;
+        }
+        if (seed < count) {
+            // Closest distance of each node to the picked landmarks
+            float[] closest = field( seed );
+            while (found < landmarkCount) {
+                int farthest = -1;
+                float most = 0;
+                for (int i = 0; i < count; i++) {
+                    float d = closest[i];
+                    if (d > most && d != Float.POSITIVE_INFINITY) {
+                        most = d;
+                        farthest = i;
+                    }
+                }
+                if (farthest == -1) {
+                    break;
+                }
+                float[] distances = field( farthest );
+                picked[found] = farthest;
+                fields[found] = distances;
+                found ++;
+                if (found == 1) {
+                    // The seed isn't a landmark, only the way to find the first one
+                    closest = distances.clone();
+                } else {
+                    for (int i = 0; i < count; i++) {
+                        closest[i] = Math.min( closest[i], distances[i] );
+                    }
+                }
+            }
+        }
+        landmarks = new int[found];
+        System.arraycopy( picked, 0, landmarks, 0, found );
+        table = interleave( fields, found, count );
+    }
+
+    /**
+     * Build the tables of the given landmarks
+     *
+     * @param grid the "world" to estimate the costs in
+     * @param landmarks indexes of the landmark nodes
+     * @throws IllegalArgumentException if <code>grid</code> or <code>landmarks</code> is null
+     */
+    public LandmarkHeuristic( Grid grid, int[] landmarks ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        if (landmarks == null) {
+            throw new IllegalArgumentException("The \"landmarks\" can't be null");
+        }
+        this.grid = grid;
+        this.landmarks = landmarks.clone();
+        version = grid.getVersion();
+        float[][] fields = new float[landmarks.length][];
+        for (int l = 0; l < landmarks.length; l++) {
+            fields[l] = field( landmarks[l] );
+        }
+        table = interleave( fields, landmarks.length, grid.getNodeCount() );
+    }
+
+    private LandmarkHeuristic( Grid grid, int[] landmarks, float[] table ) {
+        this.grid = grid;
+        this.landmarks = landmarks;
+        this.table = table;
+        version = grid.getVersion();
+    }
+
+    /**
+     * Costs of the paths from the node at the given index to every node,
+     * positive infinity where it can't be reached
+     */
+    private float[] field( int landmark ) {
+        FlowField field = new FlowField( grid, landmark );
+        float[] distances = new float[grid.getNodeCount()];
+        for (int i = 0; i < distances.length; i++) {
+            distances[i] = (float) field.getDistance( i );
+        }
+        return distances;
+    }
+
+    private static float[] interleave( float[][] fields, int landmarkCount, int count ) {
+        float[] table = new float[count * landmarkCount];
+        for (int l = 0; l < landmarkCount; l++) {
+            float[] distances = fields[l];
+            for (int i = 0; i < count; i++) {
+                table[i * landmarkCount + l] = distances[i];
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public double estimate( int index, int goal ) {
+        double best = grid.getHeuristics( index, goal );
+        int count = landmarks.length;
+        int from = index * count;
+        int to = goal * count;
+        for (int l = 0; l < count; l++) {
+            float a = table[from + l];
+            float b = table[to + l];
+            if (a == Float.POSITIVE_INFINITY || b == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            // Lowered by the rounding of the floats so it never overestimates
+            double difference = Math.abs( (double) a - b ) - (a + b) * FLOAT_ERROR;
+            if (difference > best) {
+                best = difference;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Check if the estimate still never overestimates in the current
+     * version of the "world", which is the case while the changes since
+     * the tables were built only blocked nodes
+     *
+     * @return if the estimate is still admissible, when not the tables
+     * have to be built again
+     * @see Grid#getChangesSince(long)
+     */
+    public boolean isAdmissible() {
+        if (version == grid.getVersion()) {
+            return true;
+        }
+        List<DirtyRegion> changes = grid.getChangesSince( version );
+        if (changes == null) {
+            return false;
+        }
+        for (DirtyRegion region : changes) {
+            if (region.isPassable()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the tables to the given stream, to be read back with
+     * {@link #load(Grid, InputStream)}. The stream isn't closed
+     *
+     * @param out stream to write to
+     * @throws IOException if the stream can't be written
+     */
+    public void save( OutputStream out ) throws IOException {
+        DataOutputStream data = new DataOutputStream( out );
+        data.writeInt( MAGIC );
+        writeHeader( data, grid );
+        data.writeInt( landmarks.length );
+        for (int landmark : landmarks) {
+            data.writeInt( landmark );
+        }
+        byte[] bytes = new byte[CHUNK * Float.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        for (int offset = 0; offset < table.length; offset += CHUNK) {
+            int length = Math.min( CHUNK, table.length - offset );
+            buffer.clear();
+            buffer.asFloatBuffer().put( table, offset, length );
+            data.write( bytes, 0, length * Float.BYTES );
+        }
+        data.flush();
+    }
+
+    /**
+     * Write the tables to the given file
+     *
+     * @param file file to write to
+     * @throws IOException if the file can't be written
+     */
+    public void save( File file ) throws IOException {
+        try (OutputStream out = new BufferedOutputStream( new FileOutputStream( file ) )) {
+            save( out );
+        }
+    }
+
+    /**
+     * Read tables written by {@link #save(OutputStream)} for the given
+     * "world". The stream isn't closed
+     *
+     * @param grid the "world" the tables were built for
+     * @param in stream to read from
+     * @return estimate with the read tables
+     * @throws IOException if the stream can't be read, isn't tables or
+     * the tables were built for a "world" of another type, size, distance
+     * metric, node seperation or passable nodes
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public static LandmarkHeuristic load( Grid grid, InputStream in ) throws IOException {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        DataInputStream data = new DataInputStream( in );
+        if (data.readInt() != MAGIC) {
+            throw new IOException("The stream doesn't hold landmark tables");
+        }
+        readHeader( data, grid );
+        int count = grid.getNodeCount();
+        int landmarkCount = data.readInt();
+        if (landmarkCount < 0 || (long) landmarkCount * count > Integer.MAX_VALUE) {
+            throw new IOException("The landmark tables are corrupted");
+        }
+        int[] landmarks = new int[landmarkCount];
+        for (int l = 0; l < landmarkCount; l++) {
+            landmarks[l] = data.readInt();
+            if (landmarks[l] < 0 || landmarks[l] >= count) {
+                throw new IOException("The landmark tables are corrupted");
+            }
+        }
+        float[] table = new float[landmarkCount * count];
+        byte[] bytes = new byte[CHUNK * Float.BYTES];
+        ByteBuffer buffer = ByteBuffer.wrap( bytes );
+        for (int offset = 0; offset < table.length; offset += CHUNK) {
+            int length = Math.min( CHUNK, table.length - offset );
+            data.readFully( bytes, 0, length * Float.BYTES );
+            buffer.clear();
+            buffer.asFloatBuffer().get( table, offset, length );
+        }
+        return new LandmarkHeuristic( grid, landmarks, table );
+    }
+
+    /**
+     * Read tables written by {@link #save(File)} for the given "world"
+     *
+     * @param grid the "world" the tables were built for
+     * @param file file to read from
+     * @return estimate with the read tables
+     * @throws IOException if the file can't be read or doesn't hold
+     * tables for the "world"
+     */
+    public static LandmarkHeuristic load( Grid grid, File file ) throws IOException {
+        try (InputStream in = new BufferedInputStream( new FileInputStream( file ) )) {
+            return load( grid, in );
+        }
+    }
+
+    /**
+     * Write what the tables depend on besides the landmarks: the type,
+     * size, distance metric and node separation of the "world" and its
+     * passable nodes
+     */
+    private static void writeHeader( DataOutputStream data, Grid grid ) throws IOException {
+        data.writeUTF( grid.getClass().getName() );
+        int[] size = grid.getSize();
+        data.writeInt( size.length );
+        for (int length : size) {
+            data.writeInt( length );
+        }
+        data.writeUTF( grid.getDistanceMetric().name() );
+        data.writeDouble( getSeperation( grid ) );
+        data.writeInt( grid.getNodeCount() );
+        data.writeLong( checksum( grid ) );
+    }
+
+    /**
+     * Read what {@link #writeHeader(DataOutputStream, Grid)} wrote and
+     * check it matches the given "world"
+     *
+     * @throws IOException if the tables were built for another "world"
+     */
+    private static void readHeader( DataInputStream data, Grid grid ) throws IOException {
+        String type = data.readUTF();
+        if (!type.equals( grid.getClass().getName() )) {
+            throw new IOException("The landmark tables were built for a " + type
+                    + ", not a " + grid.getClass().getName());
+        }
+        int[] size = grid.getSize();
+        boolean sameSize = data.readInt() == size.length;
+        for (int d = 0; d < size.length && sameSize; d++) {
+            sameSize = data.readInt() == size[d];
+        }
+        if (!sameSize) {
+            throw new IOException("The landmark tables were built for a map of another size");
+        }
+        String metric = data.readUTF();
+        if (!metric.equals( grid.getDistanceMetric().name() )) {
+            throw new IOException("The landmark tables were built for " + metric
+                    + " distances, not " + grid.getDistanceMetric().name());
+        }
+        if (data.readDouble() != getSeperation( grid )) {
+            throw new IOException("The landmark tables were built for another node seperation");
+        }
+        int count = data.readInt();
+        long checksum = data.readLong();
+        if (count != grid.getNodeCount() || checksum != checksum( grid )) {
+            throw new IOException("The landmark tables were built for another map");
+        }
+    }
+
+    private static double getSeperation( Grid grid ) {
+        return grid.getNIPC() == null ? 1 : grid.getNIPC().getSeperation();
+    }
+
+    /**
+     * Checksum of the passable nodes, to tell if saved tables are for
+     * the same map
+     */
+    private static long checksum( Grid grid ) {
+        CRC32 crc = new CRC32();
+        int count = grid.getNodeCount();
+        int bits = 0;
+        for (int i = 0; i < count; i++) {
+            if (grid.isPassable( i )) {
+                bits |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7 || i == count - 1) {
+                crc.update( bits );
+                bits = 0;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * @return indexes of the landmark nodes
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * @return the "world" the costs are estimated in
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+}
@@ -18,6 +18,16 @@ public interface Node extends Serializable {
      * @return Node's position
      */
     public abstract double[] getPos();
+    /**
+     * Get a single coordinate of the Node's position, which unlike
+     * {@link #getPos()} doesn't need to allocate an array
+     * 
+     * @param dimension index of the dimension
+     * @return Node's position in the dimension
+     */
+    public default double getPos(int dimension) {
+        return getPos()[dimension];
+    }
     /**
      * Set the Node's position
      * 
@@ -25,10 +35,29 @@ public interface Node extends Serializable {
      */
     public abstract void setPos(double ...pos);
     
+    /**
+     * @return Node's index in the map of the <code>Grid</code> it's in
+     */
+    public int getIndex();
+    /**
+     * Set the Node's index in the map of the <code>Grid</code> it's in
+     * 
+     * @param index index in the map
+     */
+    public void setIndex(int index);
+    
     /**
      * @return if Node is passable
      */
     public boolean isPassable();
+    /**
+     * Set if the Node is passable. The <code>Grid</code> the Node is in
+     * isn't told about the change, use {@link Grid#setPassable(int, boolean)}
+     * to also change the version of the "world"
+     * 
+     * @param passable if the Node is passable
+     */
+    public void setPassable(boolean passable);
     public boolean usesDiagonals();
     
     /**
@@ -59,18 +88,27 @@ public interface Node extends Serializable {
     
     /**
      * @return the path take to reach this node
+     * @deprecated <code>AStar</code> no longer sets the parents of the nodes,
+     * use {@link SearchContext#getPath(int)} to get the path of a search
      */
+    @Deprecated
     public Node[] getPath();
     
     /**
      * @return Node from where this one was reached from
+     * @deprecated <code>AStar</code> no longer sets the parents of the nodes,
+     * use {@link SearchContext#getParent(int)} to get them
      */
+    @Deprecated
     public Node getParent();
     /**
      * Set the parent node which is the node use to acces this one
      * 
      * @param node node used to access current one
+     * @deprecated parents are kept by the {@link SearchContext} of
+     * each search so the nodes can be shared between searches
      */
+    @Deprecated
     public void setParent(Node node);
     
     /**
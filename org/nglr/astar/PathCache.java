@@ -0,0 +1,228 @@
+package org.nglr.astar;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of path query results over a single {@link Grid}.<br>
+ * Results are kept by their start and goal indexes for the version of
+ * the <code>Grid</code> they were found in. Once the
+ * {@link Grid#getVersion() version} changes, the results the changes could
+ * have affected are dropped: if the changes only blocked nodes, only the
+ * paths through those nodes and the unsolvable results, else every result.
+ * When full, the least recently used result is evicted. The kept paths
+ * are shared between everyone asking for them, so they must not be
+ * modified. Instances are thread-safe, so one cache can be shared by
+ * various {@link AStar} instances and a {@link PathfindingService}.
+ *
+ * @author J
+ * @see AStar#setPathCache(PathCache)
+ * @see PathfindingService#setPathCache(PathCache)
+ */
+public class PathCache {
+    private final Grid grid;
+    private final int maxSize;
+    private final LinkedHashMap<Long, PathResult> results;
+    private long version;
+    private long hits, misses, evictions;
+
+    /**
+     * Instance a new cache of the results of the given "world"
+     *
+     * @param grid the "world" the results are found in
+     * @param maxSize most results to keep
+     * @throws IllegalArgumentException if <code>grid</code> is null or <code>maxSize</code> isn't positive
+     */
+    public PathCache( Grid grid, int maxSize ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The cache must be able to hold at least 1 result");
+        }
+        this.grid = grid;
+        this.maxSize = maxSize;
+        version = grid.getVersion();
+        results = new LinkedHashMap<Long, PathResult>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( Map.Entry<Long, PathResult> eldest ) {
+                if (size() > PathCache.this.maxSize) {
+                    evictions ++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get the kept result of a query between the nodes at the given
+     * indexes of the map
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @return kept result or <code>null</code> if there's none for the
+     * current version of the "world"
+     */
+    public synchronized PathResult get( int start, int goal ) {
+        checkVersion();
+        PathResult result = results.get( key( start, goal ) );
+        if (result == null) {
+            misses ++;
+        } else {
+            hits ++;
+        }
+        return result;
+    }
+
+    /**
+     * Keep the result of a query between the nodes at the given indexes
+     * of the map, found in the current version of the "world". Use
+     * {@link #put(int, int, PathResult, long)} if the "world" could have
+     * changed during the search
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param result result of the query
+     */
+    public void put( int start, int goal, PathResult result ) {
+        put( start, goal, result, grid.getVersion() );
+    }
+
+    /**
+     * Keep the result of a query between the nodes at the given indexes
+     * of the map if the "world" is still in the version the search
+     * started in, a result found while the "world" changed may not be the
+     * one of any version so it's dropped
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param result result of the query
+     * @param version {@link Grid#getVersion() version} of the "world" taken before the search started
+     * @return if the result was kept
+     */
+    public synchronized boolean put( int start, int goal, PathResult result, long version ) {
+        checkVersion();
+        if (version != this.version) {
+            return false;
+        }
+        results.put( key( start, goal ), result );
+        return true;
+    }
+
+    /**
+     * Drop every kept result, the statistics are kept
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * Drop the kept results that could have changed if they were found
+     * in an older version of the "world"
+     */
+    private void checkVersion() {
+        long current = grid.getVersion();
+        if (current == version) {
+            return;
+        }
+        List<DirtyRegion> changes = grid.getChangesSince( version );
+        version = current;
+        if (changes == null) {
+            results.clear();
+            return;
+        }
+        BitSet blocked = new BitSet();
+        for (DirtyRegion region : changes) {
+            if (region.isPassable()) {
+                // Opened nodes can make any path cheaper
+                results.clear();
+                return;
+            }
+            for (int node : region.getNodes()) {
+                blocked.set( node );
+            }
+        }
+        Iterator<PathResult> it = results.values().iterator();
+        while (it.hasNext()) {
+            if (!isUnaffected( it.next(), blocked )) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Check if a result is still right after the given nodes got blocked,
+     * which is the case for solvable paths that don't go through them
+     */
+    private static boolean isUnaffected( PathResult result, BitSet blocked ) {
+        if (!result.isSolvable()) {
+            return false;
+        }
+        for (Node node : result.getPath()) {
+            if (blocked.get( node.getIndex() )) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long key( int start, int goal ) {
+        return ((long) start << 32) | (goal & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return the "world" the results are found in
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return most results kept
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return amount of results kept for the current version of the "world"
+     */
+    public synchronized int size() {
+        checkVersion();
+        return results.size();
+    }
+
+    /**
+     * @return times a kept result was found
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return times no kept result was found
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return results dropped to make room for newer ones
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return fraction of the lookups that found a kept result, 0 if
+     * there has been none
+     */
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,74 @@
+package org.nglr.astar;
+
+import java.util.Arrays;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a query calculated by
+ * {@link AStar#calculateAll(SearchBudget)}, to tell which queries cause
+ * latency spikes.<br>
+ * Disabled by default, enable it in the recording settings with
+ * <code>org.nglr.astar.PathQuery#enabled=true</code>. While disabled
+ * the fields are never filled.
+ *
+ * @author J
+ * @see GridBuildEvent
+ */
+@Name("org.nglr.astar.PathQuery")
+@Label("Path Query")
+@Category("Pathfinding")
+@Description("Search of a path between two nodes")
+@Enabled(false)
+@StackTrace(false)
+final class PathQueryEvent extends Event {
+    @Label("Grid")
+    Class<?> gridClass;
+
+    @Label("Size")
+    @Description("Amount of nodes along each dimension of the \"world\"")
+    String size;
+
+    @Label("Start")
+    String start;
+
+    @Label("Goal")
+    String goal;
+
+    @Label("Epsilon")
+    double epsilon;
+
+    @Label("Expanded")
+    long expanded;
+
+    @Label("Status")
+    String status;
+
+    @Label("Solvable")
+    boolean solvable;
+
+    @Label("Cached")
+    @Description("If the result was taken from the path cache")
+    boolean cached;
+
+    /**
+     * Fill the fields with the query of the given search
+     */
+    void set( SearchContext context, boolean cached ) {
+        Grid grid = context.getGrid();
+        gridClass = grid.getClass();
+        size = Arrays.toString( grid.getSize() );
+        start = Arrays.toString( grid.toDimIndexes( context.getStart() ) );
+        goal = Arrays.toString( grid.toDimIndexes( context.getGoal() ) );
+        epsilon = context.getEpsilon();
+        expanded = context.getStatistics().getExpanded();
+        status = context.getStatus().name();
+        solvable = context.isSolvable();
+        this.cached = cached;
+    }
+}
@@ -0,0 +1,63 @@
+package org.nglr.astar;
+
+/**
+ * Outcome of a single path query
+ *
+ * @author J
+ * @see PathfindingService
+ */
+public class PathResult {
+    private final Node[] path;
+    private final boolean solvable;
+    private final SearchStatus status;
+
+    /**
+     * Instance a new result of a search that ended on its own
+     *
+     * @param path path to the goal or best try if unreachable, from
+     * the last node back to the start
+     * @param solvable if the path truly reaches the goal
+     */
+    public PathResult( Node[] path, boolean solvable ) {
+        this( path, solvable ? SearchStatus.FOUND : SearchStatus.UNREACHABLE );
+    }
+
+    /**
+     * Instance a new result with the found path and how the search ended
+     *
+     * @param path path to the goal or best try if it wasn't reached,
+     * from the last node back to the start
+     * @param status how the search ended
+     */
+    public PathResult( Node[] path, SearchStatus status ) {
+        this.path = path;
+        this.solvable = status == SearchStatus.FOUND;
+        this.status = status;
+    }
+
+    /**
+     * Get the path to the goal if it was reachable, else the best try
+     * for reaching it. Like {@link AStar#calculateAll()} the path goes
+     * from the last node back to the start
+     *
+     * @return found path
+     */
+    public Node[] getPath() {
+        return path;
+    }
+
+    /**
+     * @return if the path truly reaches the goal
+     */
+    public boolean isSolvable() {
+        return solvable;
+    }
+
+    /**
+     * @return how the search ended, a result that isn't
+     * {@link SearchStatus#isConclusive() conclusive} only has a best try
+     */
+    public SearchStatus getStatus() {
+        return status;
+    }
+}
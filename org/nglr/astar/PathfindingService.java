@@ -0,0 +1,316 @@
+package org.nglr.astar;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe facade for running many path queries at the same time
+ * over a single shared {@link Grid}.<br>
+ * Each query runs in the given executor using a {@link SearchContext}
+ * taken from a pool, so the search buffers are reused between queries
+ * instead of being allocated for each one. The <code>Grid</code> is only
+ * read by the searches and must not be modified while queries are running.
+ *
+ * @author J
+ * @see SearchContext
+ * @see AStar
+ */
+public class PathfindingService implements AutoCloseable {
+    private final Grid grid;
+    private final ExecutorService executor;
+    private final ConcurrentLinkedQueue<SearchContext> pool;
+    private final AtomicInteger pooled;
+    private final int maxPooled;
+    private volatile PathCache cache;
+    private volatile Heuristic heuristic;
+
+    /**
+     * Instance a new service that runs the queries in the given executor
+     * and keeps at most <code>maxPooled</code> idle search contexts
+     *
+     * @param grid the "world" to search in
+     * @param executor executor to run the queries in
+     * @param maxPooled most idle search contexts to keep for reuse
+     * @throws IllegalArgumentException if <code>grid</code> or <code>executor</code> is null
+     */
+    public PathfindingService( Grid grid, ExecutorService executor, int maxPooled ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("The \"executor\" can't be null");
+        }
+        this.grid = grid;
+        this.executor = executor;
+        this.maxPooled = Math.max(maxPooled, 0);
+        pool = new ConcurrentLinkedQueue<>();
+        pooled = new AtomicInteger();
+    }
+
+    /**
+     * Instance a new service that runs the queries in a fixed pool of
+     * the given amount of threads
+     *
+     * @param grid the "world" to search in
+     * @param threads amount of threads
+     * @return new service
+     */
+    public static PathfindingService create( Grid grid, int threads ) {
+        return new PathfindingService( grid, Executors.newFixedThreadPool( threads ), threads );
+    }
+
+    /**
+     * Instance a new service that runs the queries in a fixed pool with
+     * a thread per available processor
+     *
+     * @param grid the "world" to search in
+     * @return new service
+     */
+    public static PathfindingService create( Grid grid ) {
+        return create( grid, Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Instance a new service that runs each query in its own virtual
+     * thread. Only the given amount of idle search contexts are kept
+     * for reuse as there can be far more virtual threads than processors
+     *
+     * @param grid the "world" to search in
+     * @param maxPooled most idle search contexts to keep for reuse
+     * @return new service
+     * @throws UnsupportedOperationException if the running Java version has no virtual threads
+     */
+    public static PathfindingService createWithVirtualThreads( Grid grid, int maxPooled ) {
+        ExecutorService executor;
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            executor = (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported by this Java version", e);
+        }
+        return new PathfindingService( grid, executor, maxPooled );
+    }
+
+    /**
+     * @return if virtual threads can be used in the running Java version
+     */
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Find the path between the points at the given dimensional indexes
+     *
+     * @param start dimensional indexes for start position
+     * @param goal dimensional indexes for end position
+     * @return future that completes with the found path
+     */
+    public CompletableFuture<PathResult> submit( int[] start, int[] goal ) {
+        return submit( grid.toIndex( start ), grid.toIndex( goal ) );
+    }
+
+    /**
+     * Find the path between the nodes at the given indexes of the map
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @return future that completes with the found path
+     */
+    public CompletableFuture<PathResult> submit( final int start, final int goal ) {
+        return CompletableFuture.supplyAsync(() -> find( start, goal ), executor);
+    }
+
+    /**
+     * Find a path between the nodes at the given indexes of the map
+     * costing at most <code>1 + epsilon</code> times the optimal one
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param epsilon how much more than the optimal cost the path can cost
+     * @return future that completes with the found path
+     * @see SearchContext#prepare(int, int, double)
+     */
+    public CompletableFuture<PathResult> submit( final int start, final int goal, final double epsilon ) {
+        return CompletableFuture.supplyAsync(() -> find( start, goal, epsilon ), executor);
+    }
+
+    /**
+     * Find a path between the nodes at the given indexes of the map
+     * costing at most <code>1 + epsilon</code> times the optimal one,
+     * stopping once the given budget runs out
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param epsilon how much more than the optimal cost the path can cost
+     * @param budget limits of the search, the time limit counts from
+     * when the query starts running and not from when it's submitted
+     * @return future that completes with the found path
+     * @see SearchBudget
+     */
+    public CompletableFuture<PathResult> submit( final int start, final int goal, final double epsilon,
+            final SearchBudget budget ) {
+        return CompletableFuture.supplyAsync(() -> find( start, goal, epsilon, budget ), executor);
+    }
+
+    /**
+     * Find the path between the nodes at the given indexes of the map
+     * in the calling thread, still using the pooled search contexts
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @return the found path
+     */
+    public PathResult find( int start, int goal ) {
+        return find( start, goal, 0 );
+    }
+
+    /**
+     * Find a path between the nodes at the given indexes of the map
+     * costing at most <code>1 + epsilon</code> times the optimal one in
+     * the calling thread. Only the optimal queries use the path cache
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param epsilon how much more than the optimal cost the path can cost
+     * @return the found path
+     * @see SearchContext#prepare(int, int, double)
+     */
+    public PathResult find( int start, int goal, double epsilon ) {
+        return find( start, goal, epsilon, SearchBudget.UNLIMITED );
+    }
+
+    /**
+     * Find a path between the nodes at the given indexes of the map
+     * costing at most <code>1 + epsilon</code> times the optimal one in
+     * the calling thread, stopping once the given budget runs out. Only
+     * the optimal queries that end on their own use the path cache
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param epsilon how much more than the optimal cost the path can cost
+     * @param budget limits of the search
+     * @return the found path, or the best try with the reason it stopped
+     * @throws IllegalArgumentException if <code>budget</code> is null
+     * @see SearchBudget
+     */
+    public PathResult find( int start, int goal, double epsilon, SearchBudget budget ) {
+        PathCache cache = epsilon == 0 ? this.cache : null;
+        if (cache != null) {
+            PathResult cached = cache.get( start, goal );
+            if (cached != null) {
+                return cached;
+            }
+        }
+        SearchContext context = acquire();
+        try {
+            long version = grid.getVersion();
+            context.setHeuristic( heuristic );
+            context.prepare( start, goal, epsilon );
+            Node[] path = context.run( budget );
+            PathResult result = new PathResult( path, context.getStatus() );
+            if (cache != null && result.getStatus().isConclusive()) {
+                cache.put( start, goal, result, version );
+            }
+            return result;
+        } finally {
+            release( context );
+        }
+    }
+
+    /**
+     * Keep the results of the queries in the given cache and take them
+     * from it when the same query is asked again in the same version of
+     * the "world"
+     *
+     * @param cache cache of the results or <code>null</code> to not use one
+     * @throws IllegalArgumentException if the cache is for another <code>Grid</code>
+     */
+    public void setPathCache( PathCache cache ) {
+        if (cache != null && cache.getGrid() != grid) {
+            throw new IllegalArgumentException("The path cache must be for the same grid");
+        }
+        this.cache = cache;
+    }
+
+    /**
+     * @return cache of the results or <code>null</code> if none is used
+     */
+    public PathCache getPathCache() {
+        return cache;
+    }
+
+    /**
+     * Guide the following queries with the given estimate instead of
+     * the heuristics of the <code>Grid</code>
+     *
+     * @param heuristic estimate of the cost to the goal or <code>null</code>
+     * to use the one of the <code>Grid</code>
+     * @see LandmarkHeuristic
+     */
+    public void setHeuristic( Heuristic heuristic ) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * @return estimate that guides the queries or <code>null</code> if
+     * the one of the <code>Grid</code> is used
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    private SearchContext acquire() {
+        SearchContext context = pool.poll();
+        if (context == null) {
+            return new SearchContext( grid );
+        }
+        pooled.decrementAndGet();
+        return context;
+    }
+
+    private void release( SearchContext context ) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            pool.offer( context );
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the "world" being searched
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Stop accepting queries and wait for the running ones to finish
+     *
+     * @param timeout most time to wait
+     * @param unit unit of the timeout
+     * @return true if all queries finished before the timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown( long timeout, TimeUnit unit ) throws InterruptedException {
+        executor.shutdown();
+        return executor.awaitTermination( timeout, unit );
+    }
+
+    /**
+     * Stop accepting queries, already submitted ones still finish
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,116 @@
+package org.nglr.astar;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits of a single path query: the most nodes to expand, the most
+ * time to run for and a token to cancel it.<br>
+ * A search that runs out of budget stops with the path that gets the
+ * closest to the goal and a {@link SearchStatus} telling why, so a query
+ * towards an unreachable goal in a large "world" can't expand every node.
+ * Instances are immutable, so one budget can be shared by many queries;
+ * the time limit counts from the start of each query.
+ *
+ * @author J
+ * @see SearchContext#run(SearchBudget)
+ * @see AStar#calculateAll(SearchBudget)
+ */
+public class SearchBudget {
+    /** Budget with no limits */
+    public static final SearchBudget UNLIMITED = new SearchBudget( Long.MAX_VALUE, Long.MAX_VALUE, null );
+
+    private final long maxExpansions;
+    private final long maxNanos;
+    private final CancellationToken token;
+
+    /**
+     * Instance a new budget with the given limits
+     *
+     * @param maxExpansions most nodes to expand
+     * @param maxNanos most nanoseconds to run for
+     * @param token token to cancel the search or <code>null</code> for none
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public SearchBudget( long maxExpansions, long maxNanos, CancellationToken token ) {
+        if (maxExpansions < 0 || maxNanos < 0) {
+            throw new IllegalArgumentException("The limits of a budget can't be negative");
+        }
+        this.maxExpansions = maxExpansions;
+        this.maxNanos = maxNanos;
+        this.token = token;
+    }
+
+    /**
+     * Instance a new budget that only limits the expanded nodes
+     *
+     * @param maxExpansions most nodes to expand
+     * @return new budget
+     */
+    public static SearchBudget ofExpansions( long maxExpansions ) {
+        return new SearchBudget( maxExpansions, Long.MAX_VALUE, null );
+    }
+
+    /**
+     * Instance a new budget that only limits the running time
+     *
+     * @param timeout most time to run for
+     * @param unit unit of the timeout
+     * @return new budget
+     */
+    public static SearchBudget ofTime( long timeout, TimeUnit unit ) {
+        return new SearchBudget( Long.MAX_VALUE, unit.toNanos( timeout ), null );
+    }
+
+    /**
+     * @param maxExpansions most nodes to expand
+     * @return copy of this budget with the given expansion limit
+     */
+    public SearchBudget withMaxExpansions( long maxExpansions ) {
+        return new SearchBudget( maxExpansions, maxNanos, token );
+    }
+
+    /**
+     * @param timeout most time to run for
+     * @param unit unit of the timeout
+     * @return copy of this budget with the given time limit
+     */
+    public SearchBudget withTimeout( long timeout, TimeUnit unit ) {
+        return new SearchBudget( maxExpansions, unit.toNanos( timeout ), token );
+    }
+
+    /**
+     * @param token token to cancel the search or <code>null</code> for none
+     * @return copy of this budget with the given cancellation token
+     */
+    public SearchBudget withToken( CancellationToken token ) {
+        return new SearchBudget( maxExpansions, maxNanos, token );
+    }
+
+    /**
+     * @return most nodes to expand
+     */
+    public long getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    /**
+     * @return most nanoseconds to run for
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return token to cancel the search or <code>null</code> if none
+     */
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * @return if the budget has no limits
+     */
+    public boolean isUnlimited() {
+        return maxExpansions == Long.MAX_VALUE && maxNanos == Long.MAX_VALUE && token == null;
+    }
+}
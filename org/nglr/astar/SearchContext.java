@@ -0,0 +1,784 @@
+package org.nglr.astar;
+
+import java.util.Arrays;
+
+/**
+ * State of a single A* query over a {@link Grid}.<br>
+ * Owns the scores, parent links and open set of the search so the
+ * <code>Grid</code> and its nodes are only read while searching, which
+ * allows many contexts (one per thread) to search the same
+ * <code>Grid</code> at the same time. The state is kept between queries
+ * and lazily invalidated, so preparing a new query doesn't depend on the
+ * size of the "world".<br><br>
+ * A query can be given an epsilon to search as weighted A*, which
+ * inflates the heuristics by <code>1 + epsilon</code>. The search then
+ * expands fewer nodes and the cost of the found path is at most
+ * <code>1 + epsilon</code> times the optimal one.<br><br>
+ * A query can also be run with a {@link SearchBudget}, which stops it
+ * with the best try once it expands too many nodes, runs for too long or
+ * is cancelled, telling why in its {@link #getStatus() status}.<br><br>
+ * The work done by each query is counted in its
+ * {@link #getStatistics() statistics}, and a {@link SearchListener} can
+ * follow every expanded node.<br><br>
+ * The scores are kept in arrays as big as the "world", about 44 bytes
+ * per node, unless it has more than {@link #SPARSE_NODES} nodes or the
+ * context is created sparse. Then the search only keeps the nodes it
+ * reaches, each one given a slot in the arrays the first time it's
+ * reached, so the memory used depends on the size of the search and not
+ * on the size of the "world", about 56 bytes per slot.
+ *
+ * @author J
+ * @see AStar
+ * @see Grid
+ */
+public class SearchContext {
+    /** Expansions between checks of the time limit and the cancellation token */
+    static final int BUDGET_CHECK = 64;
+    /** Most nodes a "world" can have to keep the scores of every node */
+    public static final int SPARSE_NODES = 1 << 24;
+    /** Slots of a sparse search before it has to grow */
+    private static final int INITIAL_SLOTS = 1 << 10;
+
+    private final Grid grid;
+    private Node[] path, bestTry;
+    private int cur;
+    private boolean tested;
+    private boolean solvable;
+    private SearchStatus status = SearchStatus.SEARCHING;
+
+    /*
+     * The arrays are indexed by the slot of each node, which is the
+     * node index unless the search is sparse
+     */
+    private double[] fScore = null;
+    private double[] gScore = null;
+    /** Index of the node each node was reached from */
+    private int[] parents = null;
+    /** Generation in which each node's scores were last written */
+    private int[] stamps = null;
+    /** Generation in which each node was last expanded */
+    private int[] closed = null;
+    private boolean sparse;
+    /** If the search is sparse whatever the size of the "world" */
+    private final boolean alwaysSparse;
+    /** Node index of each slot of a sparse search */
+    private int[] slotNodes = null;
+    private int slotCount;
+    /** Open addressing table of the slots by node index, -1 where empty */
+    private int[] slotTable = null;
+    private int generation = 0;
+    private IndexedMinHeap openSet = null;
+    private final int[] neighbors = new int[Grid.MAX_NEIGHBORS];
+    private int startIndex = -1, goalIndex = -1;
+    private double epsilon;
+    /** Factor the heuristics are inflated by, <code>1 + epsilon</code> */
+    private double weight = 1;
+    private Heuristic heuristic;
+    private int closest;
+    private double closestHeuristics;
+    private SearchListener listener;
+    /** If the time spent in the heuristics and the open set is measured */
+    private boolean timed;
+    private long expanded, relaxations, improvements, reopened;
+    private int peakOpenSetSize;
+    private long heuristicNanos, queueNanos;
+
+    /**
+     * Instance a new <code>SearchContext</code> to search in the given
+     * "world"
+     *
+     * @param grid the "world" to search in
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public SearchContext( Grid grid ) {
+        this( grid, false );
+    }
+
+    /**
+     * Instance a new <code>SearchContext</code> to search in the given
+     * "world", choosing if it only keeps the nodes its searches reach.
+     * Sparse searches are slower but many of them can be kept at once
+     * over a big "world"
+     *
+     * @param grid the "world" to search in
+     * @param sparse if the searches are sparse even when the "world" has
+     * fewer than {@link #SPARSE_NODES} nodes
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public SearchContext( Grid grid, boolean sparse ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        this.grid = grid;
+        this.alwaysSparse = sparse;
+    }
+
+    /**
+     * @return the "world" being searched
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Setup a new query between the nodes at the given indexes of the
+     * map that finds the optimal path
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     */
+    public final void prepare( int start, int goal ) {
+        prepare( start, goal, 0 );
+    }
+
+    /**
+     * Setup a new query between the nodes at the given indexes of the
+     * map that finds a path costing at most <code>1 + epsilon</code>
+     * times the optimal one
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param epsilon how much more than the optimal cost the path can cost, 0 for the optimal path
+     * @throws IllegalArgumentException if <code>epsilon</code> is negative or not a number
+     */
+    public void prepare( int start, int goal, double epsilon ) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("The epsilon can't be negative");
+        }
+        this.epsilon = epsilon;
+        weight = 1 + epsilon;
+        tested = false;
+        solvable = false;
+        status = SearchStatus.SEARCHING;
+        path = null;
+        bestTry = null;
+        expanded = 0;
+        relaxations = 0;
+        improvements = 0;
+        reopened = 0;
+        peakOpenSetSize = 0;
+        heuristicNanos = 0;
+        queueNanos = 0;
+        int count = grid.getNodeCount();
+        if (count > SPARSE_NODES || alwaysSparse) {
+            if (!sparse || openSet == null) {
+                allocate( INITIAL_SLOTS );
+                slotNodes = new int[INITIAL_SLOTS];
+                slotTable = new int[INITIAL_SLOTS * 2];
+                Arrays.fill( slotTable, -1 );
+                sparse = true;
+            } else {
+                openSet.clear();
+                clearSlots();
+            }
+        } else if (sparse || openSet == null || openSet.capacity() != count) {
+            allocate( count );
+            slotNodes = null;
+            slotTable = null;
+            sparse = false;
+        } else {
+            openSet.clear();
+        }
+        nextGeneration();
+        startIndex = start;
+        goalIndex = goal;
+        int slot = slotOf( startIndex );
+        touch( slot );
+        gScore[slot] = 0.0;
+        fScore[slot] = weight * heuristics( startIndex );
+        push( slot, fScore[slot] );
+        closest = startIndex;
+        closestHeuristics = fScore[slot];
+        cur = -1;
+    }
+
+    /**
+     * Calculate one step of the search, expanding the open node with
+     * the lowest score
+     *
+     * @throws NullPointerException if no query has been prepared
+     */
+    public void step() {
+        if (tested) {
+            return;
+        }
+        if (openSet.isEmpty()) {
+            finish( null );
+            return;
+        }
+        int slot;
+        if (timed) {
+            long begin = System.nanoTime();
+            slot = openSet.poll();
+            queueNanos += System.nanoTime() - begin;
+        } else {
+            slot = openSet.poll();
+        }
+        cur = sparse ? slotNodes[slot] : slot;
+        if ( cur == goalIndex ) {
+            finish( getPath( cur ) );
+            return;
+        }
+
+        closed[slot] = generation;
+        expanded ++;
+        double heuristics = fScore[slot] - gScore[slot];
+        if ( heuristics < closestHeuristics ) {
+            closest = cur;
+            closestHeuristics = heuristics;
+        }
+        int count = getSuccessors( cur, parents[slot], neighbors );
+        relaxations += count;
+        for (int i = 0; i < count; i++) {
+            int neighbor = neighbors[i];
+            double tentativeScore = gScore[slot] + grid.getDistance( cur, neighbor );
+            int next = slotOf( neighbor );
+            if ( stamps[next] != generation ) {
+                touch( next );
+            }
+            if ( tentativeScore < gScore[next] ) {
+                parents[next] = cur;
+                gScore[next] = tentativeScore;
+                fScore[next] = tentativeScore + weight * heuristics( neighbor );
+                improvements ++;
+                if ( closed[next] == generation ) {
+                    reopened ++;
+                    closed[next] = 0;
+                }
+                push( next, fScore[next] );
+                onImproved( neighbor, tentativeScore );
+            }
+        }
+        if (listener != null) {
+            listener.onExpand( this, cur );
+        }
+    }
+
+    /**
+     * Estimate the cost from the node at the given index to the goal
+     */
+    private double heuristics( int index ) {
+        if (timed) {
+            long begin = System.nanoTime();
+            double estimate = estimate( index );
+            heuristicNanos += System.nanoTime() - begin;
+            return estimate;
+        }
+        return estimate( index );
+    }
+
+    private double estimate( int index ) {
+        return heuristic == null ? grid.getHeuristics( index, goalIndex )
+                : heuristic.estimate( index, goalIndex );
+    }
+
+    /**
+     * Add a node to the open set or lower its score, keeping the
+     * largest size the open set reached
+     */
+    private void push( int slot, double score ) {
+        if (timed) {
+            long begin = System.nanoTime();
+            openSet.add( slot, score );
+            queueNanos += System.nanoTime() - begin;
+        } else {
+            openSet.add( slot, score );
+        }
+        if (openSet.size() > peakOpenSetSize) {
+            peakOpenSetSize = openSet.size();
+        }
+    }
+
+    /**
+     * Set the estimate that guides the following queries. A tighter
+     * estimate than the one of the <code>Grid</code>, like a
+     * {@link LandmarkHeuristic}, makes the search expand fewer nodes
+     *
+     * @param heuristic estimate of the cost to the goal or <code>null</code>
+     * to use {@link Grid#getHeuristics(int, int)}
+     */
+    public void setHeuristic( Heuristic heuristic ) {
+        this.heuristic = heuristic;
+    }
+
+    /**
+     * @return estimate that guides the queries or <code>null</code> if
+     * the one of the <code>Grid</code> is used
+     */
+    public Heuristic getHeuristic() {
+        return heuristic;
+    }
+
+    /**
+     * Set who follows the searches of the following queries. It's called
+     * from the thread running the search after each expanded node and
+     * once each query is over
+     *
+     * @param listener listener of the searches or <code>null</code> for none
+     */
+    public void setSearchListener( SearchListener listener ) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return listener of the searches or <code>null</code> if none
+     */
+    public SearchListener getSearchListener() {
+        return listener;
+    }
+
+    /**
+     * Choose if the following queries measure the time spent estimating
+     * the heuristics and in the open set. Reading the clock around each
+     * of them slows the search down, so it's off by default
+     *
+     * @param timed if the time is measured
+     */
+    public void setTimed( boolean timed ) {
+        this.timed = timed;
+    }
+
+    /**
+     * @return if the time spent estimating the heuristics and in the
+     * open set is measured
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    /**
+     * Get the work done by the search of the current query so far
+     *
+     * @return statistics of the current query
+     */
+    public SearchStatistics getStatistics() {
+        return new SearchStatistics( expanded, relaxations, improvements, reopened, peakOpenSetSize,
+                timed ? heuristicNanos : -1, timed ? queueNanos : -1 );
+    }
+
+    /**
+     * Write the indexes of the nodes that can be reached from the node
+     * being expanded into <code>out</code>. By default those are the
+     * passable neighbors of the node, subclasses can change it to prune
+     * or skip nodes as long as the cost of reaching a successor is
+     * {@link Grid#getDistance(int, int)}
+     *
+     * @param index index of the node being expanded
+     * @param parent index of the node it was reached from or -1 if it's the start
+     * @param out array to write the successors to, able to hold {@link Grid#MAX_NEIGHBORS} values
+     * @return amount of successors written
+     */
+    protected int getSuccessors( int index, int parent, int[] out ) {
+        int count = grid.getNeighbors( index, out );
+        int passable = 0;
+        for (int i = 0; i < count; i++) {
+            if ( grid.isPassable( out[i] ) ) {
+                out[passable] = out[i];
+                passable ++;
+            }
+        }
+        return passable;
+    }
+
+    /**
+     * Called when a cheaper path to the node at the given index is
+     * found. Does nothing by default
+     *
+     * @param index node index
+     * @param gScore cost of the path from the start to the node
+     */
+    protected void onImproved( int index, double gScore ) {
+    }
+
+    /**
+     * End the current query with the given path
+     *
+     * @param found path to the goal, from the goal back to the start,
+     * or <code>null</code> if the goal can't be reached
+     */
+    protected void finish( Node[] found ) {
+        tested = true;
+        solvable = found != null;
+        status = solvable ? SearchStatus.FOUND : SearchStatus.UNREACHABLE;
+        path = found;
+        bestTry = solvable ? found : getPath( closest );
+        if (listener != null) {
+            listener.onFinish( this );
+        }
+    }
+
+    /**
+     * End the current query before the search is over, keeping the
+     * path that gets the closest to the goal as the best try
+     *
+     * @param reason why the search stopped
+     */
+    protected void stop( SearchStatus reason ) {
+        tested = true;
+        solvable = false;
+        status = reason;
+        path = null;
+        bestTry = getPath( closest );
+        if (listener != null) {
+            listener.onFinish( this );
+        }
+    }
+
+    /**
+     * End the current query with an already known result, like one
+     * kept from an earlier query between the same nodes
+     *
+     * @param result result of a query between the start and goal of
+     * the current one
+     */
+    public void restore( PathResult result ) {
+        tested = true;
+        solvable = result.isSolvable();
+        status = result.getStatus();
+        path = solvable ? result.getPath() : null;
+        bestTry = result.getPath();
+    }
+
+    /**
+     * Keep stepping until the search is over
+     *
+     * @return the path to the goal or the best try if unreachable
+     */
+    public Node[] run() {
+        return run( SearchBudget.UNLIMITED );
+    }
+
+    /**
+     * Keep stepping until the search is over or the given budget runs
+     * out. Each step counts as an expansion
+     *
+     * @param budget limits of the search
+     * @return the path to the goal or the best try if unreachable or
+     * stopped, see {@link #getStatus()}
+     * @throws IllegalArgumentException if <code>budget</code> is null
+     */
+    public Node[] run( SearchBudget budget ) {
+        if (budget == null) {
+            throw new IllegalArgumentException("The \"budget\" can't be null");
+        }
+        if (budget.isUnlimited()) {
+            while (!tested) {
+                step();
+            }
+            return solvable ? path : bestTry;
+        }
+        long maxExpansions = budget.getMaxExpansions();
+        long maxNanos = budget.getMaxNanos();
+        CancellationToken token = budget.getToken();
+        long begin = System.nanoTime();
+        long steps = 0;
+        while (!tested) {
+            if (steps % BUDGET_CHECK == 0) {
+                if (token != null && token.isCancelled()) {
+                    stop( SearchStatus.CANCELLED );
+                    break;
+                }
+                if (maxNanos != Long.MAX_VALUE && System.nanoTime() - begin >= maxNanos) {
+                    stop( SearchStatus.TIMEOUT );
+                    break;
+                }
+            }
+            if (steps == maxExpansions) {
+                stop( SearchStatus.EXPANSION_LIMIT );
+                break;
+            }
+            step();
+            steps ++;
+        }
+        return solvable ? path : bestTry;
+    }
+
+    /**
+     * Instance the arrays of the search with room for the given amount
+     * of slots
+     */
+    private void allocate( int capacity ) {
+        openSet = new IndexedMinHeap( capacity );
+        gScore = new double[capacity];
+        fScore = new double[capacity];
+        parents = new int[capacity];
+        stamps = new int[capacity];
+        closed = new int[capacity];
+        generation = 0;
+    }
+
+    /**
+     * Get the slot of the node at the given index, giving it one if it
+     * hasn't been reached in the current query
+     */
+    private int slotOf( int index ) {
+        if (!sparse) {
+            return index;
+        }
+        int mask = slotTable.length - 1;
+        int i = hash( index ) & mask;
+        int slot;
+        while ((slot = slotTable[i]) != -1) {
+            if (slotNodes[slot] == index) {
+                return slot;
+            }
+            i = (i + 1) & mask;
+        }
+        if (slotCount == slotNodes.length) {
+            growSlots();
+            return slotOf( index );
+        }
+        slot = slotCount ++;
+        slotNodes[slot] = index;
+        slotTable[i] = slot;
+        return slot;
+    }
+
+    /**
+     * Get the slot of the node at the given index
+     *
+     * @return the slot or -1 if the node hasn't been reached in the
+     * current query
+     */
+    private int findSlot( int index ) {
+        if (!sparse) {
+            return index;
+        }
+        int mask = slotTable.length - 1;
+        int i = hash( index ) & mask;
+        int slot;
+        while ((slot = slotTable[i]) != -1) {
+            if (slotNodes[slot] == index) {
+                return slot;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static int hash( int index ) {
+        int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Double the slots of a sparse search, keeping the ones in use
+     */
+    private void growSlots() {
+        int capacity = slotNodes.length * 2;
+        gScore = Arrays.copyOf( gScore, capacity );
+        fScore = Arrays.copyOf( fScore, capacity );
+        parents = Arrays.copyOf( parents, capacity );
+        stamps = Arrays.copyOf( stamps, capacity );
+        closed = Arrays.copyOf( closed, capacity );
+        slotNodes = Arrays.copyOf( slotNodes, capacity );
+        openSet.ensureCapacity( capacity );
+        slotTable = new int[capacity * 2];
+        Arrays.fill( slotTable, -1 );
+        int mask = slotTable.length - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int i = hash( slotNodes[slot] ) & mask;
+            while (slotTable[i] != -1) {
+                i = (i + 1) & mask;
+            }
+            slotTable[i] = slot;
+        }
+    }
+
+    /**
+     * Free every slot of a sparse search, the cost depends on the slots
+     * used and not on the size of the table
+     */
+    private void clearSlots() {
+        int mask = slotTable.length - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int i = hash( slotNodes[slot] ) & mask;
+            while (slotTable[i] != -1) {
+                slotTable[i] = -1;
+                i = (i + 1) & mask;
+            }
+        }
+        slotCount = 0;
+    }
+
+    /**
+     * Start a new search generation, which makes the scores of every
+     * node written by previous searches count as unset without having
+     * to walk through all the nodes
+     */
+    private void nextGeneration() {
+        generation ++;
+        if (generation == Integer.MAX_VALUE) {
+            // Wrapped around, old stamps could be mistaken as current ones
+            Arrays.fill( stamps, 0 );
+            Arrays.fill( closed, 0 );
+            generation = 1;
+        }
+    }
+
+    /**
+     * Reset the scores of a node that hasn't been reached in the
+     * current generation
+     *
+     * @param slot slot of the node
+     */
+    private void touch( int slot ) {
+        stamps[slot] = generation;
+        gScore[slot] = Double.POSITIVE_INFINITY;
+        fScore[slot] = Double.POSITIVE_INFINITY;
+        parents[slot] = -1;
+    }
+
+    /**
+     * Build the path taken in the current query to reach the node at
+     * the given index, going from it back to the start
+     *
+     * @param index index of the last node of the path
+     * @return path from the node to the start or <code>null</code> if
+     * the node hasn't been reached
+     */
+    public Node[] getPath( int index ) {
+        if (!isReached( index )) {
+            return null;
+        }
+        int length = 0;
+        for (int i = index; i != -1; i = parents[findSlot( i )]) {
+            length ++;
+        }
+        Node[] nodes = new Node[length];
+        length = 0;
+        for (int i = index; i != -1; i = parents[findSlot( i )]) {
+            nodes[length] = grid.getNode( i );
+            length ++;
+        }
+        return nodes;
+    }
+
+    /**
+     * Check if the node at the given index has been reached in the
+     * current query
+     *
+     * @param index node index
+     * @return if the node has a score in the current query
+     */
+    public boolean isReached( int index ) {
+        if (stamps == null) {
+            return false;
+        }
+        int slot = findSlot( index );
+        return slot != -1 && stamps[slot] == generation
+                && gScore[slot] != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Get the index of the node from where the given one was reached
+     * in the current query
+     *
+     * @param index node index
+     * @return parent index or -1 if it has no parent
+     */
+    public int getParent( int index ) {
+        return isReached( index ) ? parents[findSlot( index )] : -1;
+    }
+
+    /**
+     * Get the cost of the best known path from the start to the node
+     * at the given index in the current query
+     *
+     * @param index node index
+     * @return cost or positive infinity if it hasn't been reached
+     */
+    public double getGScore( int index ) {
+        return isReached( index ) ? gScore[findSlot( index )] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @return lowest score in the open set or positive infinity if it's
+     * empty, the scores use the inflated heuristics
+     */
+    public double getLowestScore() {
+        return openSet.peekKey();
+    }
+
+    /**
+     * @return if the search only keeps the nodes it reaches, because the
+     * "world" has more than {@link #SPARSE_NODES} nodes or the context
+     * was created sparse
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * @return amount of nodes in the open set
+     */
+    public int getOpenSetSize() {
+        return openSet.size();
+    }
+
+    /**
+     * @return how much more than the optimal cost the path of the query
+     * can cost, 0 if it's the optimal one
+     */
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    /**
+     * @return index of the start node of the query
+     */
+    public int getStart() {
+        return startIndex;
+    }
+
+    /**
+     * @return index of the goal node of the query
+     */
+    public int getGoal() {
+        return goalIndex;
+    }
+
+    /**
+     * @return index of the last expanded node or -1 if none
+     */
+    public int getCurrent() {
+        return cur;
+    }
+
+    /**
+     * @return the path to the goal or <code>null</code> if it wasn't found yet
+     */
+    public Node[] getPath() {
+        return path;
+    }
+
+    /**
+     * @return the path that gets the closest to the goal or
+     * <code>null</code> if the search hasn't ended
+     */
+    public Node[] getBestTry() {
+        return bestTry;
+    }
+
+    /**
+     * @return if the search of the current query is over
+     */
+    public boolean isTested() {
+        return tested;
+    }
+
+    /**
+     * @return how the current query ended or
+     * {@link SearchStatus#SEARCHING} if it hasn't
+     */
+    public SearchStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return if the goal was reached in the current query
+     */
+    public boolean isSolvable() {
+        return solvable;
+    }
+}
@@ -0,0 +1,31 @@
+package org.nglr.astar;
+
+/**
+ * Receives the progress of the searches of a {@link SearchContext}.<br>
+ * It's called from the thread running the search on every expanded node,
+ * so it must be quick and must not modify the context. Left unset the
+ * searches only pay for checking that there's no listener.
+ *
+ * @author J
+ * @see SearchContext#setSearchListener(SearchListener)
+ * @see AStar#setSearchListener(SearchListener)
+ */
+@FunctionalInterface
+public interface SearchListener {
+    /**
+     * Called when a node is expanded
+     *
+     * @param context search expanding the node
+     * @param index index of the expanded node
+     */
+    void onExpand( SearchContext context, int index );
+
+    /**
+     * Called once the search of a query is over, including when its
+     * budget runs out. Does nothing by default
+     *
+     * @param context search that is over, its status tells how it ended
+     */
+    default void onFinish( SearchContext context ) {
+    }
+}
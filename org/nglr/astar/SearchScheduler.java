@@ -0,0 +1,267 @@
+package org.nglr.astar;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs many path queries cooperatively, a few expansions at a time,
+ * within a budget per frame.<br>
+ * Each call to {@link #runFrame(SearchBudget)} steps the queries in
+ * flight until the budget of the frame runs out, so a game loop can
+ * spread the searches over frames instead of having one long search
+ * stall a frame. The queries take turns in slices of a few expansions:
+ * the one that has used the least of its share runs next and a query
+ * with a higher priority gets a bigger share, so queries with the same
+ * priority advance at the same pace and none is starved. The results
+ * are given through futures completed in the thread running the frames,
+ * and cancelling a future drops its query. Instances are not thread-safe,
+ * and the <code>Grid</code> must not be modified while queries are in
+ * flight.<br><br>
+ * Each query in flight has its own {@link SearchContext}, which is reused
+ * by later queries once it's over. A dense context keeps the scores of
+ * every node of the "world", about 44 bytes per node, which for hundreds
+ * of queries over a big "world" doesn't fit in memory: a 2048x2048 one
+ * takes about 185 MB per query. So by default, over "worlds" with more
+ * than {@link #DENSE_NODES} nodes the contexts are sparse and only keep
+ * the nodes their searches reach, about 56 bytes per reached node, which
+ * is slower per expansion but lets many queries be in flight at once.
+ *
+ * @author J
+ * @see SearchContext#step()
+ * @see AStar#calculateStep()
+ */
+public class SearchScheduler {
+    /** Share of a query with priority 1, higher priorities get a smaller stride */
+    private static final long STRIDE = 1 << 20;
+    /** Most nodes a "world" can have for the scheduler to use dense contexts by default */
+    public static final int DENSE_NODES = 1 << 16;
+
+    private final Grid grid;
+    private final boolean sparse;
+    private final PriorityQueue<Task> tasks;
+    private final ArrayDeque<SearchContext> idle;
+    private int sliceSize = 32;
+    private long sequence;
+    /** Pass of the last task that ran, new tasks start from it */
+    private long pass;
+
+    /**
+     * Instance a new scheduler of queries in the given "world", whose
+     * contexts are sparse if it has more than {@link #DENSE_NODES} nodes
+     *
+     * @param grid the "world" to search in
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     */
+    public SearchScheduler( Grid grid ) {
+        this( grid, grid != null && grid.getNodeCount() > DENSE_NODES );
+    }
+
+    /**
+     * Instance a new scheduler of queries in the given "world"
+     *
+     * @param grid the "world" to search in
+     * @param sparse if the contexts of the queries only keep the nodes
+     * their searches reach
+     * @throws IllegalArgumentException if <code>grid</code> is null
+     * @see SearchContext#SearchContext(Grid, boolean)
+     */
+    public SearchScheduler( Grid grid, boolean sparse ) {
+        if (grid == null) {
+            throw new IllegalArgumentException("The \"grid\" can't be null");
+        }
+        this.grid = grid;
+        this.sparse = sparse;
+        tasks = new PriorityQueue<>();
+        idle = new ArrayDeque<>();
+    }
+
+    /**
+     * Add a query between the points at the given dimensional indexes
+     *
+     * @param start dimensional indexes for start position
+     * @param goal dimensional indexes for end position
+     * @param priority share of the frames the query gets, 1 or more
+     * @return future that completes with the found path
+     */
+    public CompletableFuture<PathResult> submit( int[] start, int[] goal, int priority ) {
+        return submit( grid.toIndex( start ), grid.toIndex( goal ), 0, priority );
+    }
+
+    /**
+     * Add a query between the nodes at the given indexes of the map
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param priority share of the frames the query gets, 1 or more
+     * @return future that completes with the found path
+     */
+    public CompletableFuture<PathResult> submit( int start, int goal, int priority ) {
+        return submit( start, goal, 0, priority );
+    }
+
+    /**
+     * Add a query between the nodes at the given indexes of the map for
+     * a path costing at most <code>1 + epsilon</code> times the optimal one
+     *
+     * @param start index of the start node
+     * @param goal index of the goal node
+     * @param epsilon how much more than the optimal cost the path can cost
+     * @param priority share of the frames the query gets, 1 or more
+     * @return future that completes with the found path
+     * @throws IllegalArgumentException if <code>priority</code> isn't positive
+     * @see SearchContext#prepare(int, int, double)
+     */
+    public CompletableFuture<PathResult> submit( int start, int goal, double epsilon, int priority ) {
+        if (priority < 1 || priority > STRIDE) {
+            throw new IllegalArgumentException("The priority must be between 1 and " + STRIDE);
+        }
+        SearchContext context = idle.poll();
+        if (context == null) {
+            context = new SearchContext( grid, sparse );
+        }
+        context.prepare( start, goal, epsilon );
+        Task task = new Task( context, STRIDE / priority, pass, sequence ++ );
+        tasks.add( task );
+        return task.future;
+    }
+
+    /**
+     * Step the queries in flight, in turns, until every one of them is
+     * over or the given amount of nodes has been expanded
+     *
+     * @param maxExpansions most nodes to expand in the frame
+     * @return amount of queries completed in the frame
+     */
+    public int runFrame( long maxExpansions ) {
+        return runFrame( SearchBudget.ofExpansions( maxExpansions ) );
+    }
+
+    /**
+     * Step the queries in flight, in turns, until every one of them is
+     * over or the given budget of the frame runs out. The time limit and
+     * the token are checked between slices, so the frame can run over
+     * its time by a slice
+     *
+     * @param budget limits of the frame
+     * @return amount of queries completed in the frame
+     * @throws IllegalArgumentException if <code>budget</code> is null
+     */
+    public int runFrame( SearchBudget budget ) {
+        if (budget == null) {
+            throw new IllegalArgumentException("The \"budget\" can't be null");
+        }
+        long begin = System.nanoTime();
+        long left = budget.getMaxExpansions();
+        long maxNanos = budget.getMaxNanos();
+        CancellationToken token = budget.getToken();
+        int completed = 0;
+        while (left > 0 && !tasks.isEmpty()) {
+            if (token != null && token.isCancelled()) {
+                break;
+            }
+            if (maxNanos != Long.MAX_VALUE && System.nanoTime() - begin >= maxNanos) {
+                break;
+            }
+            Task task = tasks.poll();
+            pass = task.pass;
+            if (task.future.isDone()) {
+                // Cancelled by whoever submitted it
+                release( task.context );
+                continue;
+            }
+            SearchContext context = task.context;
+            long slice = Math.min( sliceSize, left );
+            for (long i = 0; i < slice && !context.isTested(); i++) {
+                context.step();
+                left --;
+            }
+            if (context.isTested()) {
+                Node[] path = context.isSolvable() ? context.getPath() : context.getBestTry();
+                PathResult result = new PathResult( path, context.getStatus() );
+                release( context );
+                task.future.complete( result );
+                completed ++;
+            } else {
+                task.pass += task.stride;
+                tasks.add( task );
+            }
+        }
+        return completed;
+    }
+
+    private void release( SearchContext context ) {
+        idle.push( context );
+    }
+
+    /**
+     * Set how many nodes a query expands in each of its turns, 32 by
+     * default. Smaller slices switch between the queries more often
+     *
+     * @param sliceSize expansions per turn
+     * @throws IllegalArgumentException if <code>sliceSize</code> isn't positive
+     */
+    public void setSliceSize( int sliceSize ) {
+        if (sliceSize < 1) {
+            throw new IllegalArgumentException("The slice size must be positive");
+        }
+        this.sliceSize = sliceSize;
+    }
+
+    /**
+     * @return how many nodes a query expands in each of its turns
+     */
+    public int getSliceSize() {
+        return sliceSize;
+    }
+
+    /**
+     * @return amount of queries in flight
+     */
+    public int getPendingCount() {
+        return tasks.size();
+    }
+
+    /**
+     * @return the "world" being searched
+     */
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return if the contexts of the queries only keep the nodes their
+     * searches reach
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * Query in flight with its share of the turns
+     */
+    private static class Task implements Comparable<Task> {
+        private final SearchContext context;
+        private final CompletableFuture<PathResult> future;
+        private final long stride;
+        private final long sequence;
+        /** Turns used so far, weighted by the stride */
+        private long pass;
+
+        private Task( SearchContext context, long stride, long pass, long sequence ) {
+            this.context = context;
+            this.future = new CompletableFuture<>();
+            this.stride = stride;
+            this.pass = pass;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo( Task other ) {
+            if (pass != other.pass) {
+                return pass < other.pass ? -1 : 1;
+            }
+            return Long.compare( sequence, other.sequence );
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.nglr.astar;
+
+/**
+ * Counters of the work done by the search of a single query, to tell
+ * why a query is slow.<br>
+ * The counters are always kept since they cost an increment each. The
+ * time spent estimating the heuristics and in the open set is only
+ * measured when the search is {@link SearchContext#setTimed(boolean) timed},
+ * as reading the clock around each of them costs more than the work itself.
+ *
+ * @author J
+ * @see SearchContext#getStatistics()
+ * @see AStar#getStatistics()
+ */
+public class SearchStatistics {
+    /** Statistics of a query that did no work */
+    public static final SearchStatistics EMPTY = new SearchStatistics( 0, 0, 0, 0, 0, -1, -1 );
+
+    private final long expanded;
+    private final long relaxations;
+    private final long improvements;
+    private final long reopened;
+    private final int peakOpenSetSize;
+    private final long heuristicNanos;
+    private final long queueNanos;
+
+    /**
+     * Instance new statistics with the given counters
+     *
+     * @param expanded nodes taken out of the open set
+     * @param relaxations edges to successors evaluated
+     * @param improvements times a cheaper path to a node was found
+     * @param reopened times an expanded node got a cheaper path and went back to the open set
+     * @param peakOpenSetSize most nodes in the open set at once
+     * @param heuristicNanos nanoseconds estimating the heuristics, -1 if not timed
+     * @param queueNanos nanoseconds adding to and taking from the open set, -1 if not timed
+     */
+    public SearchStatistics( long expanded, long relaxations, long improvements, long reopened,
+            int peakOpenSetSize, long heuristicNanos, long queueNanos ) {
+        this.expanded = expanded;
+        this.relaxations = relaxations;
+        this.improvements = improvements;
+        this.reopened = reopened;
+        this.peakOpenSetSize = peakOpenSetSize;
+        this.heuristicNanos = heuristicNanos;
+        this.queueNanos = queueNanos;
+    }
+
+    /**
+     * Add the counters of another search, like the other direction of
+     * a bidirectional search
+     *
+     * @param other statistics of the other search
+     * @return statistics with the counters of both searches
+     */
+    public SearchStatistics plus( SearchStatistics other ) {
+        return new SearchStatistics( expanded + other.expanded, relaxations + other.relaxations,
+                improvements + other.improvements, reopened + other.reopened,
+                peakOpenSetSize + other.peakOpenSetSize,
+                heuristicNanos < 0 || other.heuristicNanos < 0 ? -1 : heuristicNanos + other.heuristicNanos,
+                queueNanos < 0 || other.queueNanos < 0 ? -1 : queueNanos + other.queueNanos );
+    }
+
+    /**
+     * @return nodes taken out of the open set
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+
+    /**
+     * @return edges to successors evaluated
+     */
+    public long getRelaxations() {
+        return relaxations;
+    }
+
+    /**
+     * @return times a cheaper path to a node was found
+     */
+    public long getImprovements() {
+        return improvements;
+    }
+
+    /**
+     * @return times an expanded node got a cheaper path and went back
+     * to the open set, which only happens with inconsistent heuristics
+     * or with an epsilon
+     */
+    public long getReopened() {
+        return reopened;
+    }
+
+    /**
+     * @return most nodes in the open set at once
+     */
+    public int getPeakOpenSetSize() {
+        return peakOpenSetSize;
+    }
+
+    /**
+     * @return nanoseconds estimating the heuristics or -1 if the search wasn't timed
+     */
+    public long getHeuristicNanos() {
+        return heuristicNanos;
+    }
+
+    /**
+     * @return nanoseconds adding to and taking from the open set or -1
+     * if the search wasn't timed
+     */
+    public long getQueueNanos() {
+        return queueNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "expanded=" + expanded + " relaxations=" + relaxations + " improvements=" + improvements
+                + " reopened=" + reopened + " peakOpenSet=" + peakOpenSetSize
+                + (heuristicNanos < 0 ? "" : " heuristicNanos=" + heuristicNanos + " queueNanos=" + queueNanos);
+    }
+}
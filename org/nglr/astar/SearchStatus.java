@@ -0,0 +1,33 @@
+package org.nglr.astar;
+
+/**
+ * How a path query ended, or that it hasn't yet
+ *
+ * @author J
+ * @see SearchContext#getStatus()
+ * @see SearchBudget
+ */
+public enum SearchStatus {
+    /** The search hasn't ended */
+    SEARCHING,
+    /** The goal was reached */
+    FOUND,
+    /** Every reachable node was expanded without reaching the goal */
+    UNREACHABLE,
+    /** The search was stopped after expanding the most nodes its budget allowed */
+    EXPANSION_LIMIT,
+    /** The search was stopped after running for the most time its budget allowed */
+    TIMEOUT,
+    /** The search was stopped by its cancellation token */
+    CANCELLED;
+
+    /**
+     * Check if the search ended on its own, so its result is known to be
+     * right and can be kept. A stopped search only has a best try
+     *
+     * @return if the status is <code>FOUND</code> or <code>UNREACHABLE</code>
+     */
+    public boolean isConclusive() {
+        return this == FOUND || this == UNREACHABLE;
+    }
+}
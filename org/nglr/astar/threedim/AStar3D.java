@@ -35,7 +35,11 @@ public class AStar3D extends AStar {
     }
     
     /**
-     * Create a duplicate instance of an AStar3D instance
+     * Create a duplicate instance of an AStar3D instance.<br>
+     * Searching doesn't modify the <code>Grid</code>, so to search the
+     * same "world" from various threads use
+     * <code>new AStar3D((BaseGrid3D) aStar.getGrid())</code> instead
+     * of duplicating the whole "world"
      *
      * @param aStar AStar3D instance to duplicate
      */
@@ -51,14 +55,51 @@ public class AStar3D extends AStar {
      * @return A copy of the Grid instance the AStar class is using
      */
     public Grid instanceGridCopy() {
-        if (getGrid().getMap()[0].usesDiagonals()) {
-            return new Grid3DNoDiagonal( (Grid3DNoDiagonal) getGrid());
-        } else {
+        if (getGrid() instanceof MortonGrid3D) {
+            return new MortonGrid3D( (MortonGrid3D) getGrid());
+        } else if (getGrid() instanceof ChunkedGrid3D) {
+            return new ChunkedGrid3D( (ChunkedGrid3D) getGrid());
+        } else if (getGrid() instanceof Grid3D) {
             return new Grid3D( (Grid3D) getGrid());
+        } else {
+            return new Grid3DNoDiagonal( (Grid3DNoDiagonal) getGrid());
         }
     }
     
     public static AStar3D createNoDiagonals(int width, int height, int depth) {
         return new AStar3D(new Grid3DNoDiagonal(width, height, depth));
     }
+    
+    /**
+     * Instance an AStar3D that uses a {@link MortonGrid3D}, which doesn't
+     * keep a node for each voxel, for big "worlds"
+     *
+     * @param width "world" width
+     * @param height "world" height
+     * @param depth "world" depth
+     * @param diagonals if diagonal voxels are neighbors
+     * @return new AStar3D
+     */
+    public static AStar3D createCompact(int width, int height, int depth, boolean diagonals) {
+        return new AStar3D(new MortonGrid3D(width, height, depth, diagonals));
+    }
+    
+    /**
+     * Instance an AStar3D that uses a {@link ChunkedGrid3D}, which only
+     * keeps in memory the chunks of the "world" being searched, for
+     * "worlds" too big to fit in memory
+     *
+     * @param width "world" width
+     * @param height "world" height
+     * @param depth "world" depth
+     * @param diagonals if diagonal voxels are neighbors
+     * @param provider source of the passability of the chunks or
+     * <code>null</code> if every voxel is passable
+     * @param memoryBudget most bytes the loaded chunks can take
+     * @return new AStar3D
+     */
+    public static AStar3D createChunked(int width, int height, int depth, boolean diagonals,
+            ChunkedGrid3D.ChunkProvider provider, long memoryBudget) {
+        return new AStar3D(new ChunkedGrid3D(width, height, depth, diagonals, provider, memoryBudget));
+    }
 }
@@ -6,6 +6,7 @@
 package org.nglr.astar.threedim;
 
 import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
 
 /**
  * Label class for 3D Grids
@@ -28,4 +29,60 @@ public abstract class BaseGrid3D extends Grid<Node3D> {
      * @return the "world" depth
      */
     public abstract int getDepth();
+    
+    /**
+     * Get the 1 dimensional index of the dimensional indexes
+     * 
+     * @param x X-dimension of the array position
+     * @param y Y-dimension of the array position
+     * @param z Z-dimension of the array position
+     * @return 1D array index
+     */
+    public abstract int getIndex( int x, int y, int z );
+    
+    @Override
+    public double getDistance( Node p, Node q ) {
+        Node3D from = (Node3D) p;
+        Node3D to = (Node3D) q;
+        return getDistanceMetric().distance( to.getX() - from.getX(), to.getY() - from.getY(),
+                to.getZ() - from.getZ() );
+    }
+    
+    @Override
+    public double getHeuristics( Node node, Node goal ) {
+        Node3D from = (Node3D) node;
+        Node3D to = (Node3D) goal;
+        return getHeuristicMetric().distance( to.getX() - from.getX(), to.getY() - from.getY(),
+                to.getZ() - from.getZ() );
+    }
+    
+    /**
+     * Set if the voxel at the given position can be walked through
+     * 
+     * @param x X-dimension index of the voxel
+     * @param y Y-dimension index of the voxel
+     * @param z Z-dimension index of the voxel
+     * @param passable if the voxel is passable
+     * @return if the passability of the voxel changed
+     */
+    public boolean setPassable( int x, int y, int z, boolean passable ) {
+        return setPassable( getIndex( x, y, z ), passable );
+    }
+    
+    /**
+     * Set if the voxels inside of a box can be walked through,
+     * changing the version of the "world" once for all of them
+     * 
+     * @param x X-dimension index of the lowest corner
+     * @param y Y-dimension index of the lowest corner
+     * @param z Z-dimension index of the lowest corner
+     * @param width width of the box
+     * @param height height of the box
+     * @param depth depth of the box
+     * @param passable if the voxels are passable
+     * @return amount of voxels whose passability changed
+     */
+    public int setPassable( int x, int y, int z, int width, int height, int depth, boolean passable ) {
+        return setPassable( new int[] {x, y, z}, new int[] {width, height, depth}, passable );
+    }
 }
@@ -0,0 +1,630 @@
+package org.nglr.astar.threedim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import org.nglr.astar.DistanceMetric;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+import org.nglr.astar.SearchContext;
+
+/**
+ * A {@link org.nglr.astar.Grid} class that manages a three dimensional
+ * world split in cubic chunks of {@link #CHUNK_SIZE} voxels per side,
+ * which are only kept in memory while they're being used.<br>
+ * The passability of a chunk is loaded from a {@link ChunkProvider} the
+ * first time one of its voxels is read, usually by a search reaching it,
+ * so "worlds" far bigger than what fits in memory can be searched as long
+ * as the searches only reach a part of them. Once more chunks than the
+ * memory budget allows are loaded, the ones that haven't been read lately
+ * are dropped, picked by a clock sweep, and loaded again if they're read
+ * later. The provider must give the same passability every time it loads
+ * a chunk, and chunks changed with <code>setPassable</code> are kept in
+ * memory for good so the changes aren't lost.<br><br>
+ * The voxels are numbered chunk by chunk, so voxels that are close in
+ * space are also close in their indexes. Chunks on the border of the
+ * "world" are filled up with voxels that are never passable, so
+ * {@link #getNodeCount()} can be bigger than
+ * <code>width * height * depth</code>.<br>
+ * Like every <code>Grid</code>, voxels are numbered with an
+ * <code>int</code>, so the "world" can have at most
+ * <code>Integer.MAX_VALUE</code> voxels counting the filling of the
+ * border chunks, which is 1280 voxels per side for a cubic one or
+ * 2048x2048x256. Bigger "worlds" have to be split in several grids, one
+ * per region, as the searches, their contexts and the paths all address
+ * the nodes by <code>int</code>. Searches over it are sparse, see
+ * {@link SearchContext#SPARSE_NODES}. Nodes are only created when asked
+ * for, like for the nodes of a found path. Loading and dropping chunks is
+ * thread-safe, so any amount of searches can read the "world" at the same
+ * time, and a chunk is loaded without holding up the searches reading
+ * the other ones.
+ *
+ * @author J
+ * @see Grid
+ * @see MortonGrid3D
+ * @see AStar3D#createChunked(int, int, int, boolean, ChunkProvider, long)
+ */
+public class ChunkedGrid3D extends BaseGrid3D {
+
+    /** Voxels along each side of a chunk */
+    public static final int CHUNK_SIZE = 16;
+    /** Bits of a voxel index that tell its position in the chunk */
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_VOLUME = 1 << CHUNK_BITS;
+    /** Bytes of memory taken by a loaded chunk */
+    public static final int CHUNK_BYTES = CHUNK_VOLUME / 8 + 16;
+
+    /**
+     * Source of the passability of the chunks. Different chunks can be
+     * loaded by several threads at the same time, but each chunk is only
+     * loaded by one thread at a time
+     */
+    @FunctionalInterface
+    public interface ChunkProvider {
+        /**
+         * Mark the voxels of a chunk that can't be walked through
+         *
+         * @param x X-dimension index of the lowest corner of the chunk
+         * @param y Y-dimension index of the lowest corner of the chunk
+         * @param z Z-dimension index of the lowest corner of the chunk
+         * @param blocked empty set where the bit
+         * <code>dx + CHUNK_SIZE * (dy + CHUNK_SIZE * dz)</code> has to be
+         * set for each blocked voxel at <code>(x + dx, y + dy, z + dz)</code>
+         */
+        void load( int x, int y, int z, BitSet blocked );
+    }
+
+    /** the "world" width */
+    private int width;
+    /** the "world" height */
+    private int height;
+    /** the "world" depth */
+    private int depth;
+    /** amount of chunks along each dimension */
+    private int chunksX, chunksY, chunksZ;
+    /** if diagonal voxels are neighbors */
+    private final boolean diagonals;
+    private final ChunkProvider provider;
+    private final int maxChunks;
+
+    /** Blocked voxels of each loaded chunk, <code>null</code> if not loaded */
+    private AtomicReferenceArray<long[]> chunks;
+    /** If each chunk has been read since the clock hand last passed it */
+    private boolean[] referenced;
+    /** If each chunk has been changed, so it can't be dropped */
+    private boolean[] pinned;
+    /** Loaded chunks, in the order the clock hand passes them */
+    private int[] resident;
+    private int residentCount;
+    private int hand;
+    private long loads, evictions;
+    /** Guards the clock, the counters and the changes to the chunks */
+    private final Object lock = new Object();
+    /** Placeholder of a chunk being loaded, reserved by the loading thread */
+    private static final long[] LOADING = new long[0];
+
+    /**
+     * Instance a new <code>ChunkedGrid3D</code> that holds a "world"
+     * with the given width, height and depth
+     *
+     * @param width the "world" width
+     * @param height the "world" height
+     * @param depth the "world" depth
+     * @param diagonals if diagonal voxels are neighbors
+     * @param provider source of the passability of the chunks or
+     * <code>null</code> if every voxel is passable
+     * @param memoryBudget most bytes the loaded chunks can take, at
+     * least one chunk is always kept
+     * @throws IllegalArgumentException if a dimension isn't positive or
+     * the "world" has more than <code>Integer.MAX_VALUE</code> voxels
+     * counting the filling of the border chunks
+     */
+    public ChunkedGrid3D( int width, int height, int depth, boolean diagonals,
+            ChunkProvider provider, long memoryBudget ) {
+        this.diagonals = diagonals;
+        this.provider = provider;
+        maxChunks = (int) Math.max( 1, Math.min( Integer.MAX_VALUE, memoryBudget / CHUNK_BYTES ) );
+        setNIPC( new NodeIndexPosConverter( 20 ) );
+        create( new int[] {width, height, depth} );
+    }
+
+    /**
+     * Create a duplicate <code>ChunkedGrid3D</code> of the passed
+     * <code>ChunkedGrid3D</code> instance, with the same provider and
+     * budget. Only the changed chunks are copied, the rest are loaded
+     * again when read
+     *
+     * @param grid3D <code>ChunkedGrid3D</code> to duplicate
+     */
+    public ChunkedGrid3D( ChunkedGrid3D grid3D ) {
+        diagonals = grid3D.diagonals;
+        provider = grid3D.provider;
+        maxChunks = grid3D.maxChunks;
+        setNIPC( grid3D.getNIPC() );
+        create( grid3D.getSize() );
+        synchronized (grid3D.lock) {
+            for (int i = 0; i < grid3D.residentCount; i++) {
+                int id = grid3D.resident[i];
+                if (grid3D.pinned[id]) {
+                    synchronized (lock) {
+                        long[] chunk = grid3D.chunks.get( id ).clone();
+                        admit( id );
+                        chunks.set( id, chunk );
+                        pinned[id] = true;
+                    }
+                }
+            }
+        }
+        if (grid3D.getStart() != null && grid3D.getGoal() != null) {
+            setup( grid3D.getStart().getIndex(), grid3D.getGoal().getIndex() );
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return if diagonal voxels are neighbors
+     */
+    public boolean usesDiagonals() {
+        return diagonals;
+    }
+
+    @Override
+    protected void create( int[] size ) {
+        for (int s : size) {
+            if (s < 1) {
+                throw new IllegalArgumentException("Dimensions must be positive");
+            }
+        }
+        long cx = (size[0] + (long) CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long cy = (size[1] + (long) CHUNK_SIZE - 1) / CHUNK_SIZE;
+        long cz = (size[2] + (long) CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (cx * cy * cz > Integer.MAX_VALUE >> CHUNK_BITS) {
+            throw new IllegalArgumentException("The \"world\" can't have more than "
+                    + Integer.MAX_VALUE + " voxels");
+        }
+        width = size[0];
+        height = size[1];
+        depth = size[2];
+        chunksX = (int) cx;
+        chunksY = (int) cy;
+        chunksZ = (int) cz;
+        start = null;
+        goal = null;
+        map = null;
+        int count = chunksX * chunksY * chunksZ;
+        chunks = new AtomicReferenceArray<>( count );
+        referenced = new boolean[count];
+        pinned = new boolean[count];
+        resident = new int[Math.min( maxChunks, count )];
+        residentCount = 0;
+        hand = 0;
+    }
+
+    @Override
+    protected void setup( int[] p, int[] q ) {
+        setup( getIndex( p[0], p[1], p[2] ), getIndex( q[0], q[1], q[2] ) );
+    }
+
+    @Override
+    public int[] getSize() {
+        return new int[] {width, height, depth};
+    }
+
+    /**
+     * Get the blocked voxels of a chunk, loading it if it isn't loaded
+     *
+     * @param id chunk number
+     * @return bits of the blocked voxels of the chunk
+     */
+    private long[] chunk( int id ) {
+        long[] chunk = chunks.get( id );
+        if (chunk == null || chunk == LOADING) {
+            chunk = load( id );
+        }
+        referenced[id] = true;
+        return chunk;
+    }
+
+    /**
+     * Load a chunk from the provider. The slot of the chunk is reserved
+     * so only one thread loads it, the provider is called without holding
+     * the lock so searches reading other chunks aren't held up by it, and
+     * the chunk is then published in its slot. Threads that need a chunk
+     * being loaded wait for it
+     *
+     * @param id chunk number
+     * @return bits of the blocked voxels of the chunk
+     */
+    private long[] load( int id ) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                long[] chunk = chunks.get( id );
+                if (chunk != null && chunk != LOADING) {
+                    return chunk;
+                }
+                if (chunk == null && chunks.compareAndSet( id, null, LOADING )) {
+                    break;
+                }
+                synchronized (lock) {
+                    while (chunks.get( id ) == LOADING) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long[] chunk;
+        try {
+            chunk = read( id );
+        } catch (RuntimeException | Error e) {
+            synchronized (lock) {
+                chunks.set( id, null );
+                lock.notifyAll();
+            }
+            throw e;
+        }
+        synchronized (lock) {
+            admit( id );
+            chunks.compareAndSet( id, LOADING, chunk );
+            loads ++;
+            lock.notifyAll();
+        }
+        return chunk;
+    }
+
+    /**
+     * Get the blocked voxels of a chunk from the provider, with the ones
+     * that fall outside of the "world" blocked
+     */
+    private long[] read( int id ) {
+        int x = (id % chunksX) * CHUNK_SIZE;
+        int y = (id / chunksX % chunksY) * CHUNK_SIZE;
+        int z = (id / chunksX / chunksY) * CHUNK_SIZE;
+        BitSet blocked = new BitSet( CHUNK_VOLUME );
+        if (provider != null) {
+            provider.load( x, y, z, blocked );
+        }
+        long[] chunk = Arrays.copyOf( blocked.toLongArray(), CHUNK_VOLUME / Long.SIZE );
+        if (x + CHUNK_SIZE > width || y + CHUNK_SIZE > height || z + CHUNK_SIZE > depth) {
+            // Voxels of the chunk that fall outside of the "world"
+            for (int local = 0; local < CHUNK_VOLUME; local++) {
+                if (x + (local & 15) >= width || y + (local >>> 4 & 15) >= height
+                        || z + (local >>> 8) >= depth) {
+                    chunk[local >>> 6] |= 1L << local;
+                }
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Make room for a chunk about to be published, dropping the first
+     * chunk the clock hand finds that hasn't been read since it last
+     * passed if there's no room
+     */
+    private void admit( int id ) {
+        if (residentCount < resident.length) {
+            resident[residentCount ++] = id;
+        } else {
+            int passes = 0;
+            while (true) {
+                int victim = resident[hand];
+                if (!pinned[victim] && !referenced[victim]) {
+                    chunks.set( victim, null );
+                    resident[hand] = id;
+                    hand = (hand + 1) % residentCount;
+                    evictions ++;
+                    break;
+                }
+                referenced[victim] = false;
+                hand = (hand + 1) % residentCount;
+                passes ++;
+                if (passes > 2 * residentCount) {
+                    // Every chunk has been changed, they must all be kept
+                    resident = Arrays.copyOf( resident, residentCount * 2 );
+                    resident[residentCount ++] = id;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void storePassable( int index, boolean passable ) {
+        int id = index >>> CHUNK_BITS;
+        while (true) {
+            // Loaded outside of the lock, then changed if it wasn't dropped meanwhile
+            long[] chunk = chunk( id );
+            synchronized (lock) {
+                if (chunks.get( id ) == chunk) {
+                    pinned[id] = true;
+                    if (passable) {
+                        chunk[(index & (CHUNK_VOLUME - 1)) >>> 6] &= ~(1L << index);
+                    } else {
+                        chunk[(index & (CHUNK_VOLUME - 1)) >>> 6] |= 1L << index;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if the voxel at the given position can be walked through
+     *
+     * @param x X-dimension index of the voxel
+     * @param y Y-dimension index of the voxel
+     * @param z Z-dimension index of the voxel
+     * @return if the voxel is passable
+     */
+    public boolean isPassable( int x, int y, int z ) {
+        return isPassable( getIndex( x, y, z ) );
+    }
+
+    @Override
+    public boolean isPassable( int index ) {
+        long[] chunk = chunk( index >>> CHUNK_BITS );
+        return (chunk[(index & (CHUNK_VOLUME - 1)) >>> 6] & (1L << index)) == 0;
+    }
+
+    @Override
+    public int getNodeCount() {
+        return (chunksX * chunksY * chunksZ) << CHUNK_BITS;
+    }
+
+    /**
+     * Creates a new {@link Node3D} for the voxel at the given index.
+     * The node has no neighbors set, use {@link #getNeighbors(int, int[])}
+     * to get them
+     *
+     * @param index voxel index
+     * @return node of the voxel
+     */
+    @Override
+    public Node getNode( int index ) {
+        return createNode( index, isPassable( index ) );
+    }
+
+    private Node createNode( int index, boolean passable ) {
+        double[] coords = nipc.toMapPosition( decodeX( index ), decodeY( index ), decodeZ( index ) );
+        Node3D node = new Node3D( coords[0], coords[1], coords[2], diagonals, passable );
+        node.setIndex( index );
+        return node;
+    }
+
+    /**
+     * Creates a new node for every voxel of the "world" in the chunks
+     * loaded at the moment, ordered by their indexes, without loading
+     * any other chunk. A node for every voxel of a big "world" doesn't
+     * fit in memory, so the position of a node in the array isn't its
+     * index, use {@link #getNode(int)} for the voxels of the chunks that
+     * aren't loaded
+     *
+     * @return the loaded part of the "world"
+     */
+    @Override
+    public Node[] getMap() {
+        int[] ids;
+        long[][] loaded;
+        synchronized (lock) {
+            ids = Arrays.copyOf( resident, residentCount );
+            Arrays.sort( ids );
+            loaded = new long[ids.length][];
+            for (int i = 0; i < ids.length; i++) {
+                // Copied as changed chunks can change while the nodes are created
+                loaded[i] = chunks.get( ids[i] ).clone();
+            }
+        }
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            for (int local = 0; local < CHUNK_VOLUME; local++) {
+                int index = ids[i] << CHUNK_BITS | local;
+                if (decodeX( index ) < width && decodeY( index ) < height && decodeZ( index ) < depth) {
+                    nodes.add( createNode( index, (loaded[i][local >>> 6] & (1L << local)) == 0 ) );
+                }
+            }
+        }
+        return nodes.toArray( new Node[nodes.size()] );
+    }
+
+    /**
+     * Sends every voxel of the "world" to the action, which loads every
+     * chunk one after the other
+     */
+    @Override
+    public void forAllNodes( Consumer<Node> action ) {
+        for (int z = 0; z < depth; z ++) {
+            for (int y = 0; y < height; y ++) {
+                for (int x = 0; x < width; x ++) {
+                    action.accept( getNode( getIndex( x, y, z ) ) );
+                }
+            }
+        }
+    }
+
+    @Override
+    public int getNeighbors( int index, int[] out ) {
+        int x = decodeX( index );
+        int y = decodeY( index );
+        int z = decodeZ( index );
+        int count = 0;
+        for (int dz = -1; dz <= 1; dz ++) {
+            int nz = z + dz;
+            if (nz < 0 || nz >= depth) {
+                continue;
+            }
+            for (int dy = -1; dy <= 1; dy ++) {
+                int ny = y + dy;
+                if (ny < 0 || ny >= height) {
+                    continue;
+                }
+                for (int dx = -1; dx <= 1; dx ++) {
+                    int nx = x + dx;
+                    if (nx < 0 || nx >= width) {
+                        continue;
+                    }
+                    int moved = (dx == 0 ? 0 : 1) + (dy == 0 ? 0 : 1) + (dz == 0 ? 0 : 1);
+                    if (moved == 0 || (!diagonals && moved > 1)) {
+                        continue;
+                    }
+                    out[count ++] = getIndex( nx, ny, nz );
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Straight steps cost 1 and, if diagonal voxels are neighbors,
+     * diagonal steps cost their straight-line length
+     *
+     * @return Euclidean if diagonal voxels are neighbors, else Manhattan
+     */
+    @Override
+    public DistanceMetric getDistanceMetric() {
+        return diagonals ? DistanceMetric.EUCLIDEAN : DistanceMetric.MANHATTAN;
+    }
+
+    @Override
+    public double getDistance( int p, int q ) {
+        return getDistanceMetric().distance( decodeX( p ) - decodeX( q ), decodeY( p ) - decodeY( q ),
+                decodeZ( p ) - decodeZ( q ) ) * nipc.getSeperation();
+    }
+
+    @Override
+    public double getHeuristics( int index, int goal ) {
+        return getHeuristicMetric().distance( decodeX( index ) - decodeX( goal ), decodeY( index ) - decodeY( goal ),
+                decodeZ( index ) - decodeZ( goal ) ) * nipc.getSeperation();
+    }
+
+    /**
+     * Does nothing as the nodes are created when asked for
+     */
+    @Override
+    protected void generateMap() {
+    }
+
+    /**
+     * Does nothing as the neighbors are calculated when asked for
+     */
+    @Override
+    protected void generateNeighbors() {
+    }
+
+    /**
+     * Does nothing as the neighbors are calculated when asked for
+     */
+    @Override
+    protected void generateNeighbors( Node node, int... dimIndexes ) {
+    }
+
+    @Override
+    protected int getIndex( int... dimIndexes ) {
+        return getIndex( dimIndexes[0], dimIndexes[1], dimIndexes[2] );
+    }
+
+    /**
+     * Get the index of the voxel at the dimensional indexes, made of the
+     * number of its chunk followed by its position in the chunk
+     *
+     * @param x X-dimension of the voxel
+     * @param y Y-dimension of the voxel
+     * @param z Z-dimension of the voxel
+     * @return voxel index
+     */
+    @Override
+    public int getIndex( int x, int y, int z ) {
+        int id = (x >>> 4) + chunksX * ((y >>> 4) + chunksY * (z >>> 4));
+        return (id << CHUNK_BITS) | (x & 15) | (y & 15) << 4 | (z & 15) << 8;
+    }
+
+    @Override
+    public int[] toDimIndexes( int index ) {
+        return new int[] { decodeX( index ), decodeY( index ), decodeZ( index ) };
+    }
+
+    /**
+     * @param index voxel index
+     * @return X-dimension of the voxel at the index
+     */
+    public int decodeX( int index ) {
+        return ((index >>> CHUNK_BITS) % chunksX) << 4 | (index & 15);
+    }
+
+    /**
+     * @param index voxel index
+     * @return Y-dimension of the voxel at the index
+     */
+    public int decodeY( int index ) {
+        return ((index >>> CHUNK_BITS) / chunksX % chunksY) << 4 | (index >>> 4 & 15);
+    }
+
+    /**
+     * @param index voxel index
+     * @return Z-dimension of the voxel at the index
+     */
+    public int decodeZ( int index ) {
+        return ((index >>> CHUNK_BITS) / chunksX / chunksY) << 4 | (index >>> 8 & 15);
+    }
+
+    /**
+     * @return most chunks kept loaded at once, unless more of them are
+     * changed
+     */
+    public int getMaxChunks() {
+        return maxChunks;
+    }
+
+    /**
+     * @return amount of chunks currently loaded
+     */
+    public int getLoadedChunkCount() {
+        synchronized (lock) {
+            return residentCount;
+        }
+    }
+
+    /**
+     * @return times a chunk has been loaded from the provider, including
+     * the ones loaded again after being dropped
+     */
+    public long getLoadCount() {
+        synchronized (lock) {
+            return loads;
+        }
+    }
+
+    /**
+     * @return times a chunk has been dropped to stay within the budget
+     */
+    public long getEvictionCount() {
+        synchronized (lock) {
+            return evictions;
+        }
+    }
+}
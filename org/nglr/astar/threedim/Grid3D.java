@@ -2,6 +2,7 @@
 package org.nglr.astar.threedim;
 
 import java.io.Serializable;
+import org.nglr.astar.DistanceMetric;
 import org.nglr.astar.Node;
 
 /**
@@ -16,6 +17,20 @@ import org.nglr.astar.Node;
  */
 public class Grid3D extends Grid3DNoDiagonal implements Serializable {
 
+    /** Neighboring positions indexed by <code>(dx + 1) + (dy + 1) * 3 + (dz + 1) * 9</code> */
+    private static final Node.Neighborings[] OFFSET_NEIGHBORINGS = new Node.Neighborings[27];
+    static {
+        for (int dz = -1; dz <= 1; dz ++) {
+            for (int dy = -1; dy <= 1; dy ++) {
+                for (int dx = -1; dx <= 1; dx ++) {
+                    if (dx != 0 || dy != 0 || dz != 0) {
+                        OFFSET_NEIGHBORINGS[(dx + 1) + (dy + 1) * 3 + (dz + 1) * 9] = toNeighboring( dx, dy, dz );
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Instance a new <code>Grid3D</code> that holds
      * a "world" with the given width, height and depth
@@ -38,6 +53,16 @@ public class Grid3D extends Grid3DNoDiagonal implements Serializable {
         super(grid3D);
     }
 
+    /**
+     * Diagonal steps cost their straight-line length
+     * 
+     * @return Euclidean
+     */
+    @Override
+    public DistanceMetric getDistanceMetric() {
+        return DistanceMetric.EUCLIDEAN;
+    }
+
     @Override
     protected Node3D createNode(double x, double y, double z) {
         return new Node3D(x, y, z, true);
@@ -49,119 +74,39 @@ public class Grid3D extends Grid3DNoDiagonal implements Serializable {
         int x = dimIndexes[0];
         int y = dimIndexes[1];
         int z = dimIndexes[2];
-        twoDimNeighbors(n, x, y);
-        threeDimNeighbors(n, x, y, z);
-    }
-    
-    private void twoDimNeighbors(Node n, int x, int y) {
-        if (x > 0 && y > 0) {
-            n.setNeighbor( Node.Neighborings.UpLeft, map[getIndex(x - 1, y - 1)]);
-        }
-        if (x < getWidth() - 1 && y > 0) {
-            n.setNeighbor( Node.Neighborings.UpRight, map[getIndex(x + 1, y - 1)]);
-        }
-        if (x > 0 && y < getHeight() - 1) {
-            n.setNeighbor( Node.Neighborings.DownLeft, map[getIndex(x - 1, y + 1)]);
-        }
-        if (x < getWidth() - 1 && y < getHeight() - 1) {
-            n.setNeighbor( Node.Neighborings.DownRight, map[getIndex(x + 1, y + 1)]);
-        }
-    }
-    
-    private void threeDimNeighbors(Node n, int x, int y, int z) {
-        if (y > 0) {
-            if (z > 0) {
-                n.setNeighbor( Node.Neighborings.FrontUp, map[getIndex(x, y - 1, z - 1)]);
-            } else {
-                n.setNeighbor( Node.Neighborings.FrontUp, null);
-            }
-            if (z < getDepth() - 1) {
-                n.setNeighbor( Node.Neighborings.BackUp, map[getIndex(x, y - 1, z + 1)]);
-            } else {
-                n.setNeighbor( Node.Neighborings.BackUp, null);
-            }
-        } else {
-            n.setNeighbor( Node.Neighborings.FrontUp, null);
-            n.setNeighbor( Node.Neighborings.BackUp, null);
-        }
-        if (x > 0) {
-            if (y > 0) {
-                if (z > 0) {
-                    n.setNeighbor( Node.Neighborings.FrontUpLeft, map[getIndex(x - 1, y - 1, z - 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.FrontUpLeft, null);
-                }
-                if (z < getDepth() - 1) {
-                    n.setNeighbor( Node.Neighborings.BackUpLeft, map[getIndex(x - 1, y - 1, z + 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.BackUpLeft, null);
-                }
-            } else {
-                n.setNeighbor( Node.Neighborings.FrontUpLeft, null);
-                n.setNeighbor( Node.Neighborings.BackUpLeft, null);
-            }
-            if (y < getHeight() - 1) {
-                if (z > 0) {
-                    n.setNeighbor( Node.Neighborings.FrontDownLeft, map[getIndex(x - 1, y - 1, z - 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.FrontDownLeft, null);
-                }
-                if (z < getDepth() - 1) {
-                    n.setNeighbor( Node.Neighborings.BackDownLeft, map[getIndex(x - 1, y - 1, z + 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.BackDownLeft, null);
+        for (int dz = -1; dz <= 1; dz ++) {
+            for (int dy = -1; dy <= 1; dy ++) {
+                for (int dx = -1; dx <= 1; dx ++) {
+                    if ((dx == 0 ? 0 : 1) + (dy == 0 ? 0 : 1) + (dz == 0 ? 0 : 1) < 2) {
+                        // Straight neighbors are already set by the super class
+                        continue;
+                    }
+                    Node.Neighborings type = OFFSET_NEIGHBORINGS[(dx + 1) + (dy + 1) * 3 + (dz + 1) * 9];
+                    int nx = x + dx, ny = y + dy, nz = z + dz;
+                    if (nx < 0 || ny < 0 || nz < 0 || nx >= getWidth() || ny >= getHeight() || nz >= getDepth()) {
+                        n.setNeighbor( type, null );
+                    } else {
+                        n.setNeighbor( type, map[getIndex( nx, ny, nz )] );
+                    }
                 }
-            } else {
-                n.setNeighbor( Node.Neighborings.FrontDownLeft, null);
-                n.setNeighbor( Node.Neighborings.BackDownLeft, null);
-            }
-        }
-        if (y < getHeight() - 1) {
-            if (z > 0) {
-                n.setNeighbor( Node.Neighborings.FrontDown, map[getIndex(x, y - 1, z - 1)]);
-            } else {
-                n.setNeighbor( Node.Neighborings.FrontDown, null);
-            }
-            if (z < getDepth() - 1) {
-                n.setNeighbor( Node.Neighborings.BackDown, map[getIndex(x, y - 1, z + 1)]);
-            } else {
-                n.setNeighbor( Node.Neighborings.BackDown, null);
-            }
-        } else {
-            n.setNeighbor( Node.Neighborings.FrontDown, null);
-            n.setNeighbor( Node.Neighborings.BackDown, null);
-        }
-        if (x < getWidth() - 1) {
-            if (y > 0) {
-                if (z > 0) {
-                    n.setNeighbor( Node.Neighborings.FrontUpRight, map[getIndex(x + 1, y - 1, z - 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.FrontUpRight, null);
-                }
-                if (z < getDepth() - 1) {
-                    n.setNeighbor( Node.Neighborings.BackUpRight, map[getIndex(x + 1, y - 1, z + 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.BackUpRight, null);
-                }
-            } else {
-                n.setNeighbor( Node.Neighborings.FrontUpRight, null);
-                n.setNeighbor( Node.Neighborings.BackUpRight, null);
-            }
-            if (y < getHeight() - 1) {
-                if (z > 0) {
-                    n.setNeighbor( Node.Neighborings.FrontDownRight, map[getIndex(x + 1, y - 1, z - 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.FrontDownRight, null);
-                }
-                if (z < getDepth() - 1) {
-                    n.setNeighbor( Node.Neighborings.BackDownRight, map[getIndex(x + 1, y - 1, z + 1)]);
-                } else {
-                    n.setNeighbor( Node.Neighborings.BackDownRight, null);
-                }
-            } else {
-                n.setNeighbor( Node.Neighborings.FrontDownRight, null);
-                n.setNeighbor( Node.Neighborings.BackDownRight, null);
             }
         }
     }
+    
+    /**
+     * Get the neighboring position that's found by moving in the given
+     * directions, where up is negative Y, left is negative X
+     * and front is negative Z
+     * 
+     * @param dx X-direction (-1, 0 or 1)
+     * @param dy Y-direction (-1, 0 or 1)
+     * @param dz Z-direction (-1, 0 or 1)
+     * @return neighboring position
+     */
+    private static Node.Neighborings toNeighboring(int dx, int dy, int dz) {
+        String name = (dz < 0 ? "Front" : dz > 0 ? "Back" : "")
+                + (dy < 0 ? "Up" : dy > 0 ? "Down" : "")
+                + (dx < 0 ? "Left" : dx > 0 ? "Right" : "");
+        return Node.Neighborings.valueOf( name );
+    }
 }
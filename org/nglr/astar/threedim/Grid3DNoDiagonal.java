@@ -1,6 +1,7 @@
 package org.nglr.astar.threedim;
 
 import java.io.Serializable;
+import org.nglr.astar.DistanceMetric;
 import org.nglr.astar.Grid;
 import org.nglr.astar.Node;
 
@@ -53,9 +54,11 @@ public class Grid3DNoDiagonal extends BaseGrid3D implements Serializable {
         for(int i = 0; i < map.length; i++) {
             map[i] = new Node3D( (Node3D) grid3D.getMap()[i]);
         }
+        indexNodes();
+        generateNeighbors();
         if (grid3D.getStart() != null && grid3D.getGoal() != null) {
-            int i = nipc.toMapIndex( grid3D.getStart().getX(), grid3D.getStart().getY());
-            int j = nipc.toMapIndex( grid3D.getGoal().getX(), grid3D.getGoal().getY());
+            int i = grid3D.getStart().getIndex();
+            int j = grid3D.getGoal().getIndex();
             setup(i, j);
         }
     }
@@ -129,25 +132,25 @@ public class Grid3DNoDiagonal extends BaseGrid3D implements Serializable {
 
     @Override
     protected void generateMap() {
-        for (int y = 0; y < height; y ++) {
-            for (int x = 0; x < width; x ++) {
-                for (int z = 0; z < depth; z ++) {
+        forEachSlice( depth, z -> {
+            for (int y = 0; y < height; y ++) {
+                for (int x = 0; x < width; x ++) {
                     double[] coords = nipc.toMapPosition( x, y, z );
-                    map[getIndex( x, y )] = createNode( coords[0], coords[1], coords[2] );
+                    map[getIndex( x, y, z )] = createNode( coords[0], coords[1], coords[2] );
                 }
             }
-        }
+        });
     }
 
     @Override
     protected void generateNeighbors() {
-        for (int z = 0; z < depth; z ++) {
+        forEachSlice( depth, z -> {
             for (int y = 0; y < height; y ++) {
                 for (int x = 0; x < width; x ++) {
                     generateNeighbors( map[getIndex( x, y, z )], x, y, z );
                 }
             }
-        }
+        });
     }
 
     @Override
@@ -187,19 +190,19 @@ public class Grid3DNoDiagonal extends BaseGrid3D implements Serializable {
         }
     }
 
+    /**
+     * Only straight steps, each costing 1
+     * 
+     * @return Manhattan
+     */
     @Override
-    public double getDistance( Node p, Node q ) {
-        return Grid.EucledianDist( p.getPos(), q.getPos() );
-    }
-
-    @Override
-    public double getHeuristics( Node node ) {
-        return getDistance( node, goal );
+    public DistanceMetric getDistanceMetric() {
+        return DistanceMetric.MANHATTAN;
     }
 
     @Override
     protected int getIndex( int... dimIndexes ) {
-        return dimIndexes[0] + width * (dimIndexes[1] + depth * dimIndexes[2]);
+        return dimIndexes[0] + width * (dimIndexes[1] + height * dimIndexes[2]);
     }
 
     /**
@@ -210,7 +213,13 @@ public class Grid3DNoDiagonal extends BaseGrid3D implements Serializable {
      * @param z Z-dimension of the array position
      * @return 1D array index
      */
+    @Override
     public int getIndex( int x, int y, int z ) {
-        return getIndex( new int[] {x, y, z} );
+        return x + width * (y + height * z);
+    }
+
+    @Override
+    public int[] toDimIndexes( int index ) {
+        return new int[] { index % width, (index / width) % height, index / (width * height) };
     }
 }
@@ -0,0 +1,421 @@
+package org.nglr.astar.threedim;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import org.nglr.astar.DistanceMetric;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+
+/**
+ * A {@link org.nglr.astar.Grid} class that manages a three dimensional
+ * world without keeping a {@link Node3D} for each voxel.<br>
+ * Passability is stored as one bit per voxel and the voxels are
+ * numbered in Morton (Z-order) so voxels that are close in space are
+ * also close in memory, which keeps searches cache friendly. The 6 or 26
+ * neighbors of a voxel are calculated from its index and
+ * <code>Node3D</code> objects are only created when asked for, like for
+ * the nodes of a found path.<br><br>
+ * Each dimension is padded on its own to a power of two and the Morton
+ * numbering interleaves the bits of the three dimensions while each one
+ * still has them, so {@link #getNodeCount()} is less than
+ * <code>8 * width * height * depth</code> and voxels outside the "world"
+ * are never passable. Each dimension can hold up to 1024 voxels.<br><br>
+ * A search keeps its scores in arrays as big as {@link #getNodeCount()},
+ * about 44 bytes per node, unless there are more than
+ * {@link org.nglr.astar.SearchContext#SPARSE_NODES} nodes, where it only
+ * keeps the nodes it reaches. A 256 x 256 x 256 "world" takes 704 MB per
+ * search in its worst case, a 1024 x 1024 x 32 one is sparse.
+ *
+ * @author J
+ * @see Grid
+ * @see Grid3D
+ * @see Grid3DNoDiagonal
+ * @see AStar3D
+ */
+public class MortonGrid3D extends BaseGrid3D implements Serializable {
+
+    /** Most voxels a dimension can hold */
+    public static final int MAX_SIZE = 1 << 10;
+
+    /** the "world" width */
+    private int width;
+    /** the "world" height */
+    private int height;
+    /** the "world" depth */
+    private int depth;
+    /** amount of nodes of the Morton numbering, a power of two */
+    private int nodeCount;
+    /** dimension (0 for X, 1 for Y, 2 for Z) of each bit of a Morton index */
+    private int[] bitOwners;
+    /** Morton bits of each X, Y and Z dimension index */
+    private int[][] spreadTables;
+    /** dimension index given by each byte of a Morton index, 256 entries per byte */
+    private int[][] compactTables;
+    /** if diagonal voxels are neighbors */
+    private final boolean diagonals;
+    /** voxels that can't be walked through */
+    private BitSet blocked;
+
+    /**
+     * Instance a new <code>MortonGrid3D</code> that holds a "world"
+     * with the given width, height and depth where all voxels are passable
+     *
+     * @param width the "world" width
+     * @param height the "world" height
+     * @param depth the "world" depth
+     * @param diagonals if diagonal voxels are neighbors
+     * @throws IllegalArgumentException if a dimension is bigger than {@link #MAX_SIZE}
+     */
+    public MortonGrid3D( int width, int height, int depth, boolean diagonals ) {
+        this.diagonals = diagonals;
+        setNIPC( new NodeIndexPosConverter( 20 ) );
+        create( new int[] {width, height, depth} );
+    }
+
+    /**
+     * Create a duplicate <code>MortonGrid3D</code> of the passed
+     * <code>MortonGrid3D</code> instance
+     *
+     * @param grid3D <code>MortonGrid3D</code> to duplicate
+     */
+    public MortonGrid3D( MortonGrid3D grid3D ) {
+        diagonals = grid3D.usesDiagonals();
+        setNIPC( grid3D.getNIPC() );
+        width = grid3D.getWidth();
+        height = grid3D.getHeight();
+        depth = grid3D.getDepth();
+        nodeCount = grid3D.nodeCount;
+        bitOwners = grid3D.bitOwners;
+        spreadTables = grid3D.spreadTables;
+        compactTables = grid3D.compactTables;
+        blocked = (BitSet) grid3D.blocked.clone();
+        if (grid3D.getStart() != null && grid3D.getGoal() != null) {
+            setup( grid3D.getStart().getIndex(), grid3D.getGoal().getIndex() );
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return if diagonal voxels are neighbors
+     */
+    public boolean usesDiagonals() {
+        return diagonals;
+    }
+
+    @Override
+    protected void create( int[] size ) {
+        for (int s : size) {
+            if (s < 1 || s > MAX_SIZE) {
+                throw new IllegalArgumentException("Dimensions must be between 1 and " + MAX_SIZE);
+            }
+        }
+        width = size[0];
+        height = size[1];
+        depth = size[2];
+        start = null;
+        goal = null;
+        map = null;
+        int[] bits = new int[size.length];
+        int total = 0;
+        for (int d = 0; d < size.length; d++) {
+            bits[d] = 32 - Integer.numberOfLeadingZeros( size[d] - 1 );
+            total += bits[d];
+        }
+        // Round robin over the dimensions that still have bits left
+        bitOwners = new int[total];
+        int[][] positions = new int[size.length][];
+        for (int d = 0; d < size.length; d++) {
+            positions[d] = new int[bits[d]];
+        }
+        int bit = 0;
+        for (int level = 0; bit < total; level++) {
+            for (int d = 0; d < size.length; d++) {
+                if (level < bits[d]) {
+                    positions[d][level] = bit;
+                    bitOwners[bit ++] = d;
+                }
+            }
+        }
+        nodeCount = 1 << total;
+        spreadTables = new int[size.length][];
+        compactTables = new int[size.length][4 * 256];
+        for (int d = 0; d < size.length; d++) {
+            spreadTables[d] = new int[size[d]];
+            for (int v = 0; v < size[d]; v++) {
+                for (int level = 0; level < bits[d]; level++) {
+                    spreadTables[d][v] |= ((v >>> level) & 1) << positions[d][level];
+                }
+            }
+            for (int level = 0; level < bits[d]; level++) {
+                int position = positions[d][level];
+                int chunk = (position >>> 3) * 256;
+                for (int b = 0; b < 256; b++) {
+                    if ((b & (1 << (position & 7))) != 0) {
+                        compactTables[d][chunk + b] |= 1 << level;
+                    }
+                }
+            }
+        }
+        blocked = new BitSet( nodeCount );
+        blockOutside( 0, total, bits[0], bits[1], bits[2] );
+    }
+
+    /**
+     * Block the voxels outside of the "world" among the Morton indexes
+     * from the given one that share all but their lowest bits, which
+     * are a box with a power of two size on each dimension. Boxes fully
+     * inside are skipped and boxes fully outside are blocked as a whole,
+     * so only the boxes crossing the edge of the "world" are split.
+     *
+     * @param from first Morton index of the box
+     * @param bits amount of lowest bits the indexes of the box don't share
+     * @param xBits X-dimension bits among them
+     * @param yBits Y-dimension bits among them
+     * @param zBits Z-dimension bits among them
+     */
+    private void blockOutside( int from, int bits, int xBits, int yBits, int zBits ) {
+        int x = decodeX( from );
+        int y = decodeY( from );
+        int z = decodeZ( from );
+        if (x >= width || y >= height || z >= depth) {
+            blocked.set( from, from + (1 << bits) );
+            return;
+        }
+        if (x + (1 << xBits) <= width && y + (1 << yBits) <= height && z + (1 << zBits) <= depth) {
+            return;
+        }
+        int owner = bitOwners[bits - 1];
+        xBits -= owner == 0 ? 1 : 0;
+        yBits -= owner == 1 ? 1 : 0;
+        zBits -= owner == 2 ? 1 : 0;
+        blockOutside( from, bits - 1, xBits, yBits, zBits );
+        blockOutside( from + (1 << (bits - 1)), bits - 1, xBits, yBits, zBits );
+    }
+
+    @Override
+    protected void setup( int[] p, int[] q ) {
+        setup( getIndex( p[0], p[1], p[2] ), getIndex( q[0], q[1], q[2] ) );
+    }
+
+    @Override
+    public int[] getSize() {
+        return new int[] {width, height, depth};
+    }
+
+    @Override
+    protected void storePassable( int index, boolean passable ) {
+        blocked.set( index, !passable );
+    }
+
+    /**
+     * Check if the voxel at the given position can be walked through
+     *
+     * @param x X-dimension index of the voxel
+     * @param y Y-dimension index of the voxel
+     * @param z Z-dimension index of the voxel
+     * @return if the voxel is passable
+     */
+    public boolean isPassable( int x, int y, int z ) {
+        return !blocked.get( getIndex( x, y, z ) );
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Creates a new {@link Node3D} for the voxel at the given index.
+     * The node has no neighbors set, use {@link #getNeighbors(int, int[])}
+     * to get them
+     *
+     * @param index voxel index
+     * @return node of the voxel
+     */
+    @Override
+    public Node getNode( int index ) {
+        double[] coords = nipc.toMapPosition( decodeX( index ), decodeY( index ), decodeZ( index ) );
+        Node3D node = new Node3D( coords[0], coords[1], coords[2], diagonals, isPassable( index ) );
+        node.setIndex( index );
+        return node;
+    }
+
+    /**
+     * Creates a new node for every voxel of the Morton numbering, which takes
+     * away the memory savings of this class so it should be avoided
+     * for big "worlds"
+     *
+     * @return the "world"
+     */
+    @Override
+    public Node[] getMap() {
+        Node[] nodes = new Node[getNodeCount()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = getNode( i );
+        }
+        return nodes;
+    }
+
+    @Override
+    public void forAllNodes( Consumer<Node> action ) {
+        for (int z = 0; z < depth; z ++) {
+            for (int y = 0; y < height; y ++) {
+                for (int x = 0; x < width; x ++) {
+                    action.accept( getNode( getIndex( x, y, z ) ) );
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean isPassable( int index ) {
+        return !blocked.get( index );
+    }
+
+    @Override
+    public int getNeighbors( int index, int[] out ) {
+        int x = decodeX( index );
+        int y = decodeY( index );
+        int z = decodeZ( index );
+        int count = 0;
+        for (int dz = -1; dz <= 1; dz ++) {
+            int nz = z + dz;
+            if (nz < 0 || nz >= depth) {
+                continue;
+            }
+            for (int dy = -1; dy <= 1; dy ++) {
+                int ny = y + dy;
+                if (ny < 0 || ny >= height) {
+                    continue;
+                }
+                for (int dx = -1; dx <= 1; dx ++) {
+                    int nx = x + dx;
+                    if (nx < 0 || nx >= width) {
+                        continue;
+                    }
+                    int moved = (dx == 0 ? 0 : 1) + (dy == 0 ? 0 : 1) + (dz == 0 ? 0 : 1);
+                    if (moved == 0 || (!diagonals && moved > 1)) {
+                        continue;
+                    }
+                    out[count ++] = getIndex( nx, ny, nz );
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Straight steps cost 1 and, if diagonal voxels are neighbors,
+     * diagonal steps cost their straight-line length
+     *
+     * @return Euclidean if diagonal voxels are neighbors, else Manhattan
+     */
+    @Override
+    public DistanceMetric getDistanceMetric() {
+        return diagonals ? DistanceMetric.EUCLIDEAN : DistanceMetric.MANHATTAN;
+    }
+
+    @Override
+    public double getDistance( int p, int q ) {
+        return getDistanceMetric().distance( decodeX( p ) - decodeX( q ), decodeY( p ) - decodeY( q ),
+                decodeZ( p ) - decodeZ( q ) ) * nipc.getSeperation();
+    }
+
+    @Override
+    public double getHeuristics( int index, int goal ) {
+        return getHeuristicMetric().distance( decodeX( index ) - decodeX( goal ), decodeY( index ) - decodeY( goal ),
+                decodeZ( index ) - decodeZ( goal ) ) * nipc.getSeperation();
+    }
+
+    /**
+     * Does nothing as the nodes are created when asked for
+     */
+    @Override
+    protected void generateMap() {
+    }
+
+    /**
+     * Does nothing as the neighbors are calculated when asked for
+     */
+    @Override
+    protected void generateNeighbors() {
+    }
+
+    /**
+     * Does nothing as the neighbors are calculated when asked for
+     */
+    @Override
+    protected void generateNeighbors( Node node, int... dimIndexes ) {
+    }
+
+    @Override
+    protected int getIndex( int... dimIndexes ) {
+        return getIndex( dimIndexes[0], dimIndexes[1], dimIndexes[2] );
+    }
+
+    /**
+     * Get the Morton index of the dimensional indexes
+     *
+     * @param x X-dimension of the voxel
+     * @param y Y-dimension of the voxel
+     * @param z Z-dimension of the voxel
+     * @return Morton index
+     */
+    @Override
+    public int getIndex( int x, int y, int z ) {
+        return spreadTables[0][x] | spreadTables[1][y] | spreadTables[2][z];
+    }
+
+    @Override
+    public int[] toDimIndexes( int index ) {
+        return new int[] { decodeX( index ), decodeY( index ), decodeZ( index ) };
+    }
+
+    /**
+     * @param index Morton index
+     * @return X-dimension of the voxel at the index
+     */
+    public int decodeX( int index ) {
+        return compact( 0, index );
+    }
+
+    /**
+     * @param index Morton index
+     * @return Y-dimension of the voxel at the index
+     */
+    public int decodeY( int index ) {
+        return compact( 1, index );
+    }
+
+    /**
+     * @param index Morton index
+     * @return Z-dimension of the voxel at the index
+     */
+    public int decodeZ( int index ) {
+        return compact( 2, index );
+    }
+
+    /**
+     * Gather the bits of a dimension from a Morton index, a byte at a time
+     */
+    private int compact( int dimension, int index ) {
+        int[] table = compactTables[dimension];
+        return table[index & 0xFF] | table[256 + ((index >>> 8) & 0xFF)]
+                | table[512 + ((index >>> 16) & 0xFF)] | table[768 + (index >>> 24)];
+    }
+}
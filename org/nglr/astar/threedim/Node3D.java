@@ -19,6 +19,7 @@ public class Node3D implements Node, Serializable {
     private final boolean diagonals;
     private HashMap<Neighborings, Node> neighbors;
     private Node parent;
+    private int index = -1;
     
     /**
      * Instance a new Node2D that's at position
@@ -77,6 +78,16 @@ public class Node3D implements Node, Serializable {
         return new double[] { x, y, z };
     }
 
+    @Override
+    public double getPos( int dimension ) {
+        switch (dimension) {
+            case 0: return x;
+            case 1: return y;
+            case 2: return z;
+            default: throw new IndexOutOfBoundsException("Dimension " + dimension + " of a 3D node");
+        }
+    }
+
     @Override
     public void setPos( double... pos ) {
         if (pos.length > 2) {
@@ -112,11 +123,26 @@ public class Node3D implements Node, Serializable {
         return z;
     }
 
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void setIndex( int index ) {
+        this.index = index;
+    }
+
     @Override
     public boolean isPassable() {
         return passable;
     }
 
+    @Override
+    public void setPassable( boolean passable ) {
+        this.passable = passable;
+    }
+
     @Override
     public boolean usesDiagonals() {
         return diagonals;
@@ -148,13 +174,14 @@ public class Node3D implements Node, Serializable {
         neighbors.values().forEach( action );
     }
 
+    @Deprecated
     @Override
     public Node[] getPath() {
         ArrayList<Node> path = new ArrayList<>();
         Node temp = this;
-        while ( temp.getParent() != null ) {
+        while ( temp instanceof Node3D && ((Node3D) temp).parent != null ) {
             path.add( temp );
-            temp = temp.getParent();
+            temp = ((Node3D) temp).parent;
         }
         if (  ! path.contains( temp ) ) {
             path.add( temp );
@@ -164,11 +191,13 @@ public class Node3D implements Node, Serializable {
         return totalPath;
     }
 
+    @Deprecated
     @Override
     public Node getParent() {
         return parent;
     }
 
+    @Deprecated
     @Override
     public void setParent( Node node ) {
         parent = node;
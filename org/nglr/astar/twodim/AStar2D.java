@@ -3,6 +3,7 @@ package org.nglr.astar.twodim;
 
 import org.nglr.astar.AStar;
 import org.nglr.astar.Grid;
+import org.nglr.astar.SearchContext;
 
 /**
  * AStar class that works under a 2D "world" plane using Node2D as points
@@ -35,7 +36,11 @@ public class AStar2D extends AStar {
     }
 
     /**
-     * Create a duplicate instance of an AStar2D instance
+     * Create a duplicate instance of an AStar2D instance.<br>
+     * Searching doesn't modify the <code>Grid</code>, so to search the
+     * same "world" from various threads use
+     * <code>new AStar2D((BaseGrid2D) aStar.getGrid())</code> instead
+     * of duplicating the whole "world"
      *
      * @param aStar AStar2D instance to duplicate
      */
@@ -53,18 +58,59 @@ public class AStar2D extends AStar {
         super(grid2D);
     }
     
+    /**
+     * Choose if the following queries use Jump Point Search, which
+     * finds paths as short as plain A* while expanding far fewer nodes
+     * on open uniform-cost "worlds"
+     * 
+     * @param enabled if Jump Point Search should be used
+     * @see JumpPointSearchContext
+     */
+    public void setJumpPointSearch(boolean enabled) {
+        if (enabled == usesJumpPointSearch()) {
+            return;
+        }
+        if (enabled) {
+            setSearchContext(new JumpPointSearchContext((BaseGrid2D) getGrid()));
+        } else {
+            setSearchContext(new SearchContext(getGrid()));
+        }
+    }
+    
+    /**
+     * @return if the queries use Jump Point Search
+     */
+    public boolean usesJumpPointSearch() {
+        return getSearchContext() instanceof JumpPointSearchContext;
+    }
+    
     /**
      * @return A copy of the Grid instance the AStar class is using
      */
     public Grid instanceGridCopy() {
-        if (getGrid().getMap()[0].usesDiagonals()) {
-            return new Grid2DNoDiagonal( (Grid2DNoDiagonal) getGrid());
-        } else {
+        if (getGrid() instanceof CompactGrid2D) {
+            return new CompactGrid2D( (CompactGrid2D) getGrid());
+        } else if (getGrid() instanceof Grid2D) {
             return new Grid2D( (Grid2D) getGrid());
+        } else {
+            return new Grid2DNoDiagonal( (Grid2DNoDiagonal) getGrid());
         }
     }
 
     public static AStar2D createNoDiagonals(int width, int height) {
         return new AStar2D(new Grid2DNoDiagonal(width, height));
     }
+
+    /**
+     * Instance an AStar2D that uses a {@link CompactGrid2D}, which doesn't
+     * keep a node for each cell, for big "worlds"
+     *
+     * @param width "world" width
+     * @param height "world" height
+     * @param diagonals if diagonal cells are neighbors
+     * @return new AStar2D
+     */
+    public static AStar2D createCompact(int width, int height, boolean diagonals) {
+        return new AStar2D(new CompactGrid2D(width, height, diagonals));
+    }
 }
@@ -1,7 +1,9 @@
 
 package org.nglr.astar.twodim;
 
+import org.nglr.astar.DistanceMetric;
 import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
 
 /**
  * Label class for 2D Grids
@@ -23,4 +25,91 @@ public abstract class BaseGrid2D extends Grid<Node2D> {
      */
     public abstract int getHeight();
     
+    /**
+     * @return if diagonal cells are neighbors
+     */
+    public abstract boolean usesDiagonals();
+    
+    /**
+     * Get the 1 dimensional index of the dimensional indexes
+     * 
+     * @param x X-dimension of the array position
+     * @param y Y-dimension of the array position
+     * @return 1D array index
+     */
+    public abstract int getIndex( int x, int y );
+    
+    /**
+     * @param index 1D array index
+     * @return X-dimension of the array position
+     */
+    public int getX( int index ) {
+        return index % getWidth();
+    }
+    
+    /**
+     * @param index 1D array index
+     * @return Y-dimension of the array position
+     */
+    public int getY( int index ) {
+        return index / getWidth();
+    }
+    
+    /**
+     * Straight steps cost 1 and, if diagonal cells are neighbors,
+     * diagonal steps cost their straight-line length
+     * 
+     * @return Euclidean if diagonal cells are neighbors, else Manhattan
+     */
+    @Override
+    public DistanceMetric getDistanceMetric() {
+        return usesDiagonals() ? DistanceMetric.EUCLIDEAN : DistanceMetric.MANHATTAN;
+    }
+    
+    @Override
+    public double getDistance( Node p, Node q ) {
+        Node2D from = (Node2D) p;
+        Node2D to = (Node2D) q;
+        return getDistanceMetric().distance( to.getX() - from.getX(), to.getY() - from.getY() );
+    }
+    
+    @Override
+    public double getHeuristics( Node n, Node goal ) {
+        Node2D from = (Node2D) n;
+        Node2D to = (Node2D) goal;
+        return getHeuristicMetric().distance( to.getX() - from.getX(), to.getY() - from.getY() );
+    }
+    
+    @Override
+    public int[] toDimIndexes( int index ) {
+        return new int[] { getX( index ), getY( index ) };
+    }
+    
+    /**
+     * Set if the cell at the given position can be walked through
+     * 
+     * @param x X-dimension index of the cell
+     * @param y Y-dimension index of the cell
+     * @param passable if the cell is passable
+     * @return if the passability of the cell changed
+     */
+    public boolean setPassable( int x, int y, boolean passable ) {
+        return setPassable( getIndex( x, y ), passable );
+    }
+    
+    /**
+     * Set if the cells inside of a rectangle can be walked through,
+     * changing the version of the "world" once for all of them
+     * 
+     * @param x X-dimension index of the lowest corner
+     * @param y Y-dimension index of the lowest corner
+     * @param width width of the rectangle
+     * @param height height of the rectangle
+     * @param passable if the cells are passable
+     * @return amount of cells whose passability changed
+     */
+    public int setPassable( int x, int y, int width, int height, boolean passable ) {
+        return setPassable( new int[] {x, y}, new int[] {width, height}, passable );
+    }
+    
 }
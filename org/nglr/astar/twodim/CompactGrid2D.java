@@ -0,0 +1,250 @@
+package org.nglr.astar.twodim;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.function.Consumer;
+import org.nglr.astar.Grid;
+import org.nglr.astar.Node;
+
+/**
+ * A {@link org.nglr.astar.Grid} class that manages a two dimensional
+ * world without keeping a {@link Node2D} for each cell.<br>
+ * Passability is stored as one bit per cell and the neighbors of a cell
+ * are calculated from its index, so a "world" costs about a bit per cell
+ * instead of a <code>Node2D</code> with its neighbors map. Searches work
+ * on the node indexes and <code>Node2D</code> objects are only created
+ * when asked for, like for the nodes of a found path.
+ *
+ * @author J
+ * @see Grid
+ * @see Grid2D
+ * @see Grid2DNoDiagonal
+ * @see AStar2D
+ */
+public class CompactGrid2D extends BaseGrid2D implements Serializable {
+
+    /** the "world" width */
+    private int width;
+    /** the "world" height */
+    private int height;
+    /** if diagonal cells are neighbors */
+    private final boolean diagonals;
+    /** cells that can't be walked through */
+    private BitSet blocked;
+
+    /**
+     * Instance a new <code>CompactGrid2D</code> that holds a
+     * "world" with the given width and height where all cells
+     * are passable
+     * 
+     * @param width the "world" width
+     * @param height the "world" height
+     * @param diagonals if diagonal cells are neighbors
+     */
+    public CompactGrid2D( int width, int height, boolean diagonals ) {
+        this.diagonals = diagonals;
+        nipc = new NodeIndexPosConverter( 20 );
+        create( new int[] {width, height} );
+    }
+
+    /**
+     * Create a duplicate <code>CompactGrid2D</code> of the passed
+     * <code>CompactGrid2D</code> instance
+     * 
+     * @param grid2D <code>CompactGrid2D</code> to duplicate
+     */
+    public CompactGrid2D( CompactGrid2D grid2D ) {
+        diagonals = grid2D.usesDiagonals();
+        setNIPC( grid2D.getNIPC() );
+        width = grid2D.getWidth();
+        height = grid2D.getHeight();
+        blocked = (BitSet) grid2D.blocked.clone();
+        if (grid2D.getStart() != null && grid2D.getGoal() != null) {
+            setup( grid2D.getStart().getIndex(), grid2D.getGoal().getIndex() );
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public boolean usesDiagonals() {
+        return diagonals;
+    }
+
+    @Override
+    protected void create( int[] size ) {
+        width = size[0];
+        height = size[1];
+        start = null;
+        goal = null;
+        map = null;
+        blocked = new BitSet( width * height );
+    }
+
+    @Override
+    protected void setup( int[] p, int[] q ) {
+        setup( getIndex( p[0], p[1] ), getIndex( q[0], q[1] ) );
+    }
+
+    @Override
+    public int[] getSize() {
+        return new int[] {width, height};
+    }
+
+    @Override
+    protected void storePassable( int index, boolean passable ) {
+        blocked.set( index, !passable );
+    }
+
+    /**
+     * Check if the cell at the given position can be walked through
+     * 
+     * @param x X-dimension index of the cell
+     * @param y Y-dimension index of the cell
+     * @return if the cell is passable
+     */
+    public boolean isPassable( int x, int y ) {
+        return !blocked.get( getIndex( x, y ) );
+    }
+
+    @Override
+    public int getNodeCount() {
+        return width * height;
+    }
+
+    /**
+     * Creates a new {@link Node2D} for the cell at the given index.
+     * The node has no neighbors set, use {@link #getNeighbors(int, int[])}
+     * to get them
+     * 
+     * @param index cell index
+     * @return node of the cell
+     */
+    @Override
+    public Node getNode( int index ) {
+        double[] coords = nipc.toMapPosition( index % width, index / width );
+        Node2D node = new Node2D( coords[0], coords[1], diagonals, isPassable( index ) );
+        node.setIndex( index );
+        return node;
+    }
+
+    /**
+     * Creates a new node for every cell of the "world", which takes
+     * away the memory savings of this class so it should be avoided
+     * for big "worlds"
+     * 
+     * @return the "world"
+     */
+    @Override
+    public Node[] getMap() {
+        Node[] nodes = new Node[getNodeCount()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = getNode( i );
+        }
+        return nodes;
+    }
+
+    @Override
+    public void forAllNodes( Consumer<Node> action ) {
+        for (int i = 0; i < getNodeCount(); i++) {
+            action.accept( getNode( i ) );
+        }
+    }
+
+    @Override
+    public boolean isPassable( int index ) {
+        return !blocked.get( index );
+    }
+
+    @Override
+    public int getNeighbors( int index, int[] out ) {
+        int x = index % width;
+        int y = index / width;
+        int count = 0;
+        if (x > 0) {
+            out[count ++] = index - 1;
+        }
+        if (x < width - 1) {
+            out[count ++] = index + 1;
+        }
+        if (y > 0) {
+            out[count ++] = index - width;
+        }
+        if (y < height - 1) {
+            out[count ++] = index + width;
+        }
+        if (diagonals) {
+            if (x > 0 && y > 0) {
+                out[count ++] = index - width - 1;
+            }
+            if (x < width - 1 && y > 0) {
+                out[count ++] = index - width + 1;
+            }
+            if (x > 0 && y < height - 1) {
+                out[count ++] = index + width - 1;
+            }
+            if (x < width - 1 && y < height - 1) {
+                out[count ++] = index + width + 1;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double getDistance( int p, int q ) {
+        return getDistanceMetric().distance( p % width - q % width, p / width - q / width )
+                * nipc.getSeperation();
+    }
+
+    @Override
+    public double getHeuristics( int index, int goal ) {
+        return getHeuristicMetric().distance( index % width - goal % width, index / width - goal / width )
+                * nipc.getSeperation();
+    }
+
+    /**
+     * Does nothing as the nodes are created when asked for
+     */
+    @Override
+    protected void generateMap() {
+    }
+
+    /**
+     * Does nothing as the neighbors are calculated when asked for
+     */
+    @Override
+    protected void generateNeighbors() {
+    }
+
+    /**
+     * Does nothing as the neighbors are calculated when asked for
+     */
+    @Override
+    protected void generateNeighbors( Node node, int... dimIndexes ) {
+    }
+
+    @Override
+    protected int getIndex( int... params ) {
+        return params[0] + params[1] * width;
+    }
+
+    /**
+     * Get the 1 dimensional index of the dimensional indexes
+     * 
+     * @param x X-dimension of the array position
+     * @param y Y-dimension of the array position
+     * @return 1D array index
+     */
+    @Override
+    public int getIndex( int x, int y ) {
+        return x + y * width;
+    }
+}
@@ -38,6 +38,11 @@ public class Grid2D extends Grid2DNoDiagonal implements Serializable {
         super(grid2D);
     }
      
+    @Override
+    public boolean usesDiagonals() {
+        return true;
+    }
+
     @Override
     protected Node2D createNode(double x, double y) {
         return new Node2D(x, y, true);
@@ -62,9 +67,4 @@ public class Grid2D extends Grid2DNoDiagonal implements Serializable {
         }
     }
 
-    @Override
-    public double getHeuristics( Node n ) {
-        return Grid.EucledianDist(n.getPos(), goal.getPos() );
-    }
-
 }
@@ -44,6 +44,8 @@ public class Grid2DNoDiagonal extends BaseGrid2D implements Serializable {
         for(int i = 0; i < map.length; i++) {
             map[i] = new Node2D( (Node2D) grid2D.getMap()[i]);
         }
+        indexNodes();
+        generateNeighbors();
         if (grid2D.getStart() != null && grid2D.getGoal() != null) {
             int i = nipc.toMapIndex( grid2D.getStart().getX(), grid2D.getStart().getY());
             int j = nipc.toMapIndex( grid2D.getGoal().getX(), grid2D.getGoal().getY());
@@ -67,6 +69,11 @@ public class Grid2DNoDiagonal extends BaseGrid2D implements Serializable {
     public int getHeight() {
         return height;
     }
+
+    @Override
+    public boolean usesDiagonals() {
+        return false;
+    }
     
     /**
      * Creates the "world" with the given width and height
@@ -97,12 +104,12 @@ public class Grid2DNoDiagonal extends BaseGrid2D implements Serializable {
 
     @Override
     protected void generateMap() {
-        for (int y = 0; y < height; y ++) {
+        forEachSlice( height, y -> {
             for (int x = 0; x < width; x ++) {
                 double[] coords = nipc.toMapPosition( x, y );
                 map[getIndex( x, y )] = createNode( coords[0], coords[1] );
             }
-        }
+        });
     }
     
     /**
@@ -118,11 +125,11 @@ public class Grid2DNoDiagonal extends BaseGrid2D implements Serializable {
 
     @Override
     protected void generateNeighbors() {
-        for (int y = 0; y < height; y ++) {
+        forEachSlice( height, y -> {
             for (int x = 0; x < width; x ++) {
                 generateNeighbors( map[getIndex( x, y )], x, y );
             }
-        }
+        });
     }
 
     @Override
@@ -151,15 +158,6 @@ public class Grid2DNoDiagonal extends BaseGrid2D implements Serializable {
         }
     }
 
-    @Override
-    public double getDistance(Node p, Node q) {
-        return Grid.ManhattanDist( p.getPos(), q.getPos() );
-    }
-    @Override
-    public double getHeuristics( Node n ) {
-        return Grid.ManhattanDist( n.getPos(), goal.getPos() );
-    }
-
     @Override
     protected int getIndex( int... params ) {
         return params[0] + params[1] * width;
@@ -172,8 +170,9 @@ public class Grid2DNoDiagonal extends BaseGrid2D implements Serializable {
      * @param y Y-dimension of the array position
      * @return 1D array index
      */
+    @Override
     public int getIndex( int x, int y ) {
-        return getIndex( new int[] {x, y} );
+        return x + y * width;
     }
 
     @Override
@@ -0,0 +1,261 @@
+package org.nglr.astar.twodim;
+
+import java.util.ArrayList;
+import org.nglr.astar.Node;
+import org.nglr.astar.SearchContext;
+
+/**
+ * {@link SearchContext} that uses Jump Point Search on uniform-cost
+ * two dimensional grids.<br>
+ * Instead of adding every neighbor of an expanded node to the open set
+ * it keeps moving in straight lines and only adds the nodes where the
+ * path could have to turn (jump points), skipping the many symmetric
+ * paths plain A* looks through. Grids with diagonals use the 8-connected
+ * rules, which like {@link Grid2D} allow moving diagonally past corners,
+ * and grids without diagonals use the 4-connected rules. The found paths
+ * are as short as the ones plain A* finds and include every cell, not
+ * only the jump points.
+ *
+ * @author J
+ * @see AStar2D#setJumpPointSearch(boolean)
+ * @see BaseGrid2D
+ */
+public class JumpPointSearchContext extends SearchContext {
+    private final BaseGrid2D grid2D;
+    private final int[] dirX = new int[8];
+    private final int[] dirY = new int[8];
+
+    /**
+     * Instance a new <code>JumpPointSearchContext</code> to search in
+     * the given "world"
+     *
+     * @param grid2D the "world" to search in
+     */
+    public JumpPointSearchContext( BaseGrid2D grid2D ) {
+        super( grid2D );
+        this.grid2D = grid2D;
+    }
+
+    @Override
+    protected int getSuccessors( int index, int parent, int[] out ) {
+        int x = grid2D.getX( index );
+        int y = grid2D.getY( index );
+        int dirs;
+        if (grid2D.usesDiagonals()) {
+            dirs = prunedDirections8( x, y, parent );
+        } else {
+            dirs = prunedDirections4( x, y, parent );
+        }
+        int count = 0;
+        for (int i = 0; i < dirs; i++) {
+            int jumpPoint = grid2D.usesDiagonals()
+                    ? jump8( x, y, dirX[i], dirY[i] )
+                    : jump4( x, y, dirX[i], dirY[i] );
+            if (jumpPoint != -1) {
+                out[count] = jumpPoint;
+                count ++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fill the directions worth moving towards from the given cell
+     * when diagonal moves are allowed
+     *
+     * @return amount of directions
+     */
+    private int prunedDirections8( int x, int y, int parent ) {
+        int count = 0;
+        if (parent == -1) {
+            for (int dy = -1; dy <= 1; dy ++) {
+                for (int dx = -1; dx <= 1; dx ++) {
+                    if (dx != 0 || dy != 0) {
+                        count = addDirection( count, dx, dy );
+                    }
+                }
+            }
+            return count;
+        }
+        int dx = Integer.signum( x - grid2D.getX( parent ) );
+        int dy = Integer.signum( y - grid2D.getY( parent ) );
+        if (dx != 0 && dy != 0) {
+            count = addDirection( count, 0, dy );
+            count = addDirection( count, dx, 0 );
+            count = addDirection( count, dx, dy );
+            if (!isWalkable( x - dx, y )) {
+                count = addDirection( count, -dx, dy );
+            }
+            if (!isWalkable( x, y - dy )) {
+                count = addDirection( count, dx, -dy );
+            }
+        } else if (dx != 0) {
+            count = addDirection( count, dx, 0 );
+            if (!isWalkable( x, y + 1 )) {
+                count = addDirection( count, dx, 1 );
+            }
+            if (!isWalkable( x, y - 1 )) {
+                count = addDirection( count, dx, -1 );
+            }
+        } else {
+            count = addDirection( count, 0, dy );
+            if (!isWalkable( x + 1, y )) {
+                count = addDirection( count, 1, dy );
+            }
+            if (!isWalkable( x - 1, y )) {
+                count = addDirection( count, -1, dy );
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Fill the directions worth moving towards from the given cell
+     * when only straight moves are allowed
+     *
+     * @return amount of directions
+     */
+    private int prunedDirections4( int x, int y, int parent ) {
+        int count = 0;
+        if (parent == -1) {
+            count = addDirection( count, 1, 0 );
+            count = addDirection( count, -1, 0 );
+            count = addDirection( count, 0, 1 );
+            count = addDirection( count, 0, -1 );
+            return count;
+        }
+        int dx = Integer.signum( x - grid2D.getX( parent ) );
+        int dy = Integer.signum( y - grid2D.getY( parent ) );
+        if (dx != 0) {
+            count = addDirection( count, 0, -1 );
+            count = addDirection( count, 0, 1 );
+            count = addDirection( count, dx, 0 );
+        } else {
+            count = addDirection( count, -1, 0 );
+            count = addDirection( count, 1, 0 );
+            count = addDirection( count, 0, dy );
+        }
+        return count;
+    }
+
+    private int addDirection( int count, int dx, int dy ) {
+        dirX[count] = dx;
+        dirY[count] = dy;
+        return count + 1;
+    }
+
+    /**
+     * Move from the given cell in the given direction until a jump
+     * point is found, with diagonal moves allowed
+     *
+     * @return index of the jump point or -1 if there's none
+     */
+    private int jump8( int x, int y, int dx, int dy ) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!isWalkable( x, y )) {
+                return -1;
+            }
+            int index = grid2D.getIndex( x, y );
+            if (index == getGoal()) {
+                return index;
+            }
+            if (dx != 0 && dy != 0) {
+                if ((isWalkable( x - dx, y + dy ) && !isWalkable( x - dx, y ))
+                        || (isWalkable( x + dx, y - dy ) && !isWalkable( x, y - dy ))) {
+                    return index;
+                }
+                // A diagonal move is a jump point if a straight move from it finds one
+                if (jump8( x, y, dx, 0 ) != -1 || jump8( x, y, 0, dy ) != -1) {
+                    return index;
+                }
+            } else if (dx != 0) {
+                if ((isWalkable( x + dx, y + 1 ) && !isWalkable( x, y + 1 ))
+                        || (isWalkable( x + dx, y - 1 ) && !isWalkable( x, y - 1 ))) {
+                    return index;
+                }
+            } else {
+                if ((isWalkable( x + 1, y + dy ) && !isWalkable( x + 1, y ))
+                        || (isWalkable( x - 1, y + dy ) && !isWalkable( x - 1, y ))) {
+                    return index;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move from the given cell in the given direction until a jump
+     * point is found, with only straight moves allowed
+     *
+     * @return index of the jump point or -1 if there's none
+     */
+    private int jump4( int x, int y, int dx, int dy ) {
+        while (true) {
+            x += dx;
+            y += dy;
+            if (!isWalkable( x, y )) {
+                return -1;
+            }
+            int index = grid2D.getIndex( x, y );
+            if (index == getGoal()) {
+                return index;
+            }
+            if (dx != 0) {
+                if ((isWalkable( x, y - 1 ) && !isWalkable( x - dx, y - 1 ))
+                        || (isWalkable( x, y + 1 ) && !isWalkable( x - dx, y + 1 ))) {
+                    return index;
+                }
+            } else {
+                if ((isWalkable( x - 1, y ) && !isWalkable( x - 1, y - dy ))
+                        || (isWalkable( x + 1, y ) && !isWalkable( x + 1, y - dy ))) {
+                    return index;
+                }
+                // A vertical move is a jump point if a horizontal move from it finds one
+                if (jump4( x, y, 1, 0 ) != -1 || jump4( x, y, -1, 0 ) != -1) {
+                    return index;
+                }
+            }
+        }
+    }
+
+    private boolean isWalkable( int x, int y ) {
+        return x >= 0 && y >= 0 && x < grid2D.getWidth() && y < grid2D.getHeight()
+                && grid2D.isPassable( grid2D.getIndex( x, y ) );
+    }
+
+    /**
+     * Build the path taken to reach the node at the given index, filling
+     * in the cells between the jump points
+     *
+     * @param index index of the last node of the path
+     * @return path from the node to the start or <code>null</code> if
+     * the node hasn't been reached
+     */
+    @Override
+    public Node[] getPath( int index ) {
+        if (!isReached( index )) {
+            return null;
+        }
+        ArrayList<Node> nodes = new ArrayList<>();
+        int cur = index;
+        int parent = getParent( cur );
+        while (parent != -1) {
+            int x = grid2D.getX( cur );
+            int y = grid2D.getY( cur );
+            int px = grid2D.getX( parent );
+            int py = grid2D.getY( parent );
+            int dx = Integer.signum( px - x );
+            int dy = Integer.signum( py - y );
+            while (x != px || y != py) {
+                nodes.add( grid2D.getNode( grid2D.getIndex( x, y ) ) );
+                x += dx;
+                y += dy;
+            }
+            cur = parent;
+            parent = getParent( cur );
+        }
+        nodes.add( grid2D.getNode( cur ) );
+        return nodes.toArray( new Node[nodes.size()] );
+    }
+}
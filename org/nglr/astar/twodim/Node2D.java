@@ -20,6 +20,7 @@ public class Node2D implements Node, Serializable {
     private final boolean diagonals;
     private HashMap<Neighborings, Node> neighbors;
     private Node parent;
+    private int index = -1;
     
     /**
      * Instance a new Node2D that's passable at position
@@ -72,13 +73,14 @@ public class Node2D implements Node, Serializable {
         }
     }
     
+    @Deprecated
     @Override
     public Node[] getPath() {
         ArrayList<Node> path = new ArrayList<>();
         Node temp = this;
-        while ( temp.getParent() != null ) {
+        while ( temp instanceof Node2D && ((Node2D) temp).parent != null ) {
             path.add( temp );
-            temp = temp.getParent();
+            temp = ((Node2D) temp).parent;
         }
         if (  ! path.contains( temp ) ) {
             path.add( temp );
@@ -88,11 +90,13 @@ public class Node2D implements Node, Serializable {
         return totalPath;
     }
     
+    @Deprecated
     @Override
     public void setParent(Node n) {
         parent = n;
     }
     
+    @Deprecated
     @Override
     public Node getParent() {
         return parent;
@@ -102,6 +106,15 @@ public class Node2D implements Node, Serializable {
     public double[] getPos() {
         return new double[] { x, y };
     }
+
+    @Override
+    public double getPos( int dimension ) {
+        switch (dimension) {
+            case 0: return x;
+            case 1: return y;
+            default: throw new IndexOutOfBoundsException("Dimension " + dimension + " of a 2D node");
+        }
+    }
     
     /**
      * @return Node's X-position
@@ -150,10 +163,25 @@ public class Node2D implements Node, Serializable {
         neighbors.values().forEach( action );
     }
 
+    @Override
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public void setIndex( int index ) {
+        this.index = index;
+    }
+
     @Override
     public boolean isPassable() {
         return passable;
     }
+
+    @Override
+    public void setPassable( boolean passable ) {
+        this.passable = passable;
+    }
     
     @Override
     public boolean usesDiagonals() {